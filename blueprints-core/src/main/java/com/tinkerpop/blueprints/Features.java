@@ -132,6 +132,10 @@ public class Features {
      * Does the graph implement ThreadedTransactionalGraph?
      */
     public Boolean supportsThreadedTransactions = null;
+    /**
+     * Can a single graph instance be read and mutated by multiple threads without external synchronization?
+     */
+    public Boolean isThreadSafe = null;
 
     /**
      * Checks whether the graph supports both vertex and edge properties
@@ -0,0 +1,16 @@
+package com.tinkerpop.blueprints;
+
+/**
+ * A ProjectableQuery is a query that can return the values of a set of keys of the matching elements instead of the
+ * elements. The queries of DefaultQuery and the wrapper queries are projectable.
+ */
+public interface ProjectableQuery {
+
+    /**
+     * Project the matching elements onto the values of the provided keys instead of returning the elements.
+     *
+     * @param keys the property keys to return the values of, id and label return the identifier and label
+     * @return the projection that executes the query
+     */
+    public Projection properties(String... keys);
+}
@@ -0,0 +1,27 @@
+package com.tinkerpop.blueprints;
+
+import java.util.Map;
+
+/**
+ * A Projection executes a query and returns the values of a set of keys of the matching elements instead of the
+ * elements, so that a graph can read just those keys of each element at once.
+ * The keys id and label project the identifier and the label of an element.
+ */
+public interface Projection {
+
+    /**
+     * Execute the query and return a map of the projected keys to their values for each matching vertex.
+     * Keys without a value are left out of the map.
+     *
+     * @return the projected values of the matching vertices
+     */
+    public Iterable<Map<String, Object>> vertices();
+
+    /**
+     * Execute the query and return a map of the projected keys to their values for each matching edge.
+     * Keys without a value are left out of the map.
+     *
+     * @return the projected values of the matching edges
+     */
+    public Iterable<Map<String, Object>> edges();
+}
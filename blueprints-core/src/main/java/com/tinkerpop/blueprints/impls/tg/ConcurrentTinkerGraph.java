@@ -0,0 +1,43 @@
+package com.tinkerpop.blueprints.impls.tg;
+
+import com.tinkerpop.blueprints.Features;
+import org.apache.commons.configuration.Configuration;
+
+/**
+ * A TinkerGraph that can be shared by multiple threads reading and mutating it without external synchronization.
+ * The vertices, edges, adjacency sets, properties and indices are held in concurrent maps and sets,
+ * so readers never block and writers only contend when they touch the same index entry or element.
+ * Iteration is weakly consistent: an iterable reflects the graph at some point at or after its creation.
+ */
+public class ConcurrentTinkerGraph extends TinkerGraph {
+
+    public ConcurrentTinkerGraph(final Configuration configuration) {
+        super(configuration, true);
+    }
+
+    public ConcurrentTinkerGraph(final String directory, final FileType fileType, final IdType idType) {
+        super(directory, fileType, idType, true);
+    }
+
+    public ConcurrentTinkerGraph(final String directory, final FileType fileType) {
+        this(directory, fileType, IdType.STRING);
+    }
+
+    public ConcurrentTinkerGraph(final String directory) {
+        this(directory, FileType.JAVA);
+    }
+
+    public ConcurrentTinkerGraph(final IdType idType) {
+        this(null, FileType.JAVA, idType);
+    }
+
+    public ConcurrentTinkerGraph() {
+        this(IdType.STRING);
+    }
+
+    public Features getFeatures() {
+        final Features features = super.getFeatures().copyFeatures();
+        features.isThreadSafe = true;
+        return features;
+    }
+}
@@ -0,0 +1,276 @@
+package com.tinkerpop.blueprints.impls.tg;
+
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.util.MultiIterable;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The edges incident to a TinkerVertex in one direction.
+ * Up to COMPACT_DEGREE edges are held in a single array that is walked sequentially and filtered by the
+ * dictionary code of their label, which avoids the map, set and entry objects of a hashed layout for the many
+ * vertices of low degree. Once the degree exceeds COMPACT_DEGREE the edges are grouped by label code into hashed sets.
+ * The adjacency of a concurrent graph is always hashed with concurrent maps and sets.
+ */
+class TinkerAdjacency implements Serializable {
+
+    static final int COMPACT_DEGREE = 16;
+
+    private static final TinkerEdge[] NO_EDGES = new TinkerEdge[0];
+
+    private TinkerEdge[] edges = NO_EDGES;
+    private int size = 0;
+
+    /**
+     * The hashed sets are written with java serialization as a list of edges, because they would be rehashed while
+     * reading before the ids of the edges are read.
+     */
+    private transient Map<Integer, Set<Edge>> labeledEdges = null;
+    private final boolean concurrent;
+    private transient int modCount = 0;
+
+    /**
+     * The edges of the hashed sets read with java serialization until restoreEdges() groups them again.
+     */
+    private transient List<Edge> readEdges;
+
+    public TinkerAdjacency(final boolean concurrent) {
+        this.concurrent = concurrent;
+        if (concurrent)
+            this.labeledEdges = new ConcurrentHashMap<Integer, Set<Edge>>();
+    }
+
+    public void add(final int label, final TinkerEdge edge) {
+        if (null != this.labeledEdges) {
+            this.getEdgeSet(label).add(edge);
+        } else if (this.size < COMPACT_DEGREE) {
+            if (this.size == this.edges.length)
+                this.edges = this.grow();
+            this.edges[this.size++] = edge;
+            this.modCount++;
+        } else {
+            this.labeledEdges = new HashMap<Integer, Set<Edge>>();
+            for (int i = 0; i < this.size; i++) {
+                this.getEdgeSet(this.edges[i].labelCode).add(this.edges[i]);
+            }
+            this.edges = NO_EDGES;
+            this.size = 0;
+            this.modCount++;
+            this.getEdgeSet(label).add(edge);
+        }
+    }
+
+    public void remove(final int label, final TinkerEdge edge) {
+        if (null != this.labeledEdges) {
+            final Set<Edge> edges = this.labeledEdges.get(label);
+            if (null != edges)
+                edges.remove(edge);
+        } else {
+            for (int i = 0; i < this.size; i++) {
+                if (this.edges[i] == edge) {
+                    this.edges[i] = this.edges[--this.size];
+                    this.edges[this.size] = null;
+                    this.modCount++;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param live   whether to walk the adjacency directly instead of copying the edges
+     * @param labels the label codes of the edges to return or none for all edges
+     */
+    public Iterable<Edge> getEdges(final boolean live, final int... labels) {
+        if (null != this.labeledEdges)
+            return live ? this.getLiveLabeledEdges(labels) : this.getLabeledEdges(labels);
+
+        if (live) {
+            return new Iterable<Edge>() {
+                public Iterator<Edge> iterator() {
+                    return new CompactIterator(labels);
+                }
+            };
+        } else {
+            final List<Edge> totalEdges = new ArrayList<Edge>();
+            for (int i = 0; i < this.size; i++) {
+                if (hasLabel(this.edges[i], labels))
+                    totalEdges.add(this.edges[i]);
+            }
+            return totalEdges;
+        }
+    }
+
+    private TinkerEdge[] grow() {
+        final TinkerEdge[] grown = new TinkerEdge[Math.min(COMPACT_DEGREE, Math.max(2, this.edges.length << 1))];
+        System.arraycopy(this.edges, 0, grown, 0, this.size);
+        return grown;
+    }
+
+    private Set<Edge> getEdgeSet(final int label) {
+        Set<Edge> edges = this.labeledEdges.get(label);
+        if (null == edges) {
+            if (this.concurrent) {
+                edges = Collections.newSetFromMap(new ConcurrentHashMap<Edge, Boolean>());
+                final Set<Edge> existing = ((ConcurrentMap<Integer, Set<Edge>>) this.labeledEdges).putIfAbsent(label, edges);
+                if (null != existing)
+                    edges = existing;
+            } else {
+                edges = new HashSet<Edge>();
+                this.labeledEdges.put(label, edges);
+            }
+        }
+        return edges;
+    }
+
+    private Iterable<Edge> getLabeledEdges(final int... labels) {
+        if (labels.length == 0) {
+            final List<Edge> totalEdges = new ArrayList<Edge>();
+            for (final Collection<Edge> edges : this.labeledEdges.values()) {
+                totalEdges.addAll(edges);
+            }
+            return totalEdges;
+        } else if (labels.length == 1) {
+            final Set<Edge> edges = this.labeledEdges.get(labels[0]);
+            if (null == edges) {
+                return Collections.emptyList();
+            } else {
+                return new ArrayList<Edge>(edges);
+            }
+        } else {
+            final List<Edge> totalEdges = new ArrayList<Edge>();
+            for (final int label : labels) {
+                final Set<Edge> edges = this.labeledEdges.get(label);
+                if (null != edges) {
+                    totalEdges.addAll(edges);
+                }
+            }
+            return totalEdges;
+        }
+    }
+
+    /**
+     * Chain the edge sets of the labels without copying the edges themselves.
+     */
+    private Iterable<Edge> getLiveLabeledEdges(final int... labels) {
+        if (labels.length == 1) {
+            final Set<Edge> edges = this.labeledEdges.get(labels[0]);
+            if (null == edges) {
+                return Collections.emptyList();
+            } else {
+                return Collections.unmodifiableSet(edges);
+            }
+        }
+
+        final List<Iterable<Edge>> iterables = new ArrayList<Iterable<Edge>>();
+        if (labels.length == 0) {
+            for (final Set<Edge> edges : this.labeledEdges.values()) {
+                iterables.add(Collections.unmodifiableSet(edges));
+            }
+        } else {
+            for (final int label : labels) {
+                final Set<Edge> edges = this.labeledEdges.get(label);
+                if (null != edges) {
+                    iterables.add(Collections.unmodifiableSet(edges));
+                }
+            }
+        }
+        return new MultiIterable<Edge>(iterables);
+    }
+
+    /**
+     * Group the edges of the hashed sets by label once the whole graph was read with java serialization.
+     */
+    void restoreEdges() {
+        if (this.concurrent)
+            this.labeledEdges = new ConcurrentHashMap<Integer, Set<Edge>>();
+        else if (null != this.readEdges)
+            this.labeledEdges = new HashMap<Integer, Set<Edge>>();
+        if (null != this.readEdges) {
+            for (final Edge edge : this.readEdges) {
+                this.getEdgeSet(((TinkerEdge) edge).labelCode).add(edge);
+            }
+            this.readEdges = null;
+        }
+    }
+
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(null == this.labeledEdges ? null : this.getLabeledEdges());
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.readEdges = (List<Edge>) in.readObject();
+    }
+
+    private static boolean hasLabel(final TinkerEdge edge, final int... labels) {
+        if (labels.length == 0)
+            return true;
+        for (final int label : labels) {
+            if (edge.labelCode == label)
+                return true;
+        }
+        return false;
+    }
+
+    private class CompactIterator implements Iterator<Edge> {
+        private final int[] labels;
+        private final int expectedModCount = modCount;
+        private int next = -1;
+
+        public CompactIterator(final int... labels) {
+            this.labels = labels;
+            this.advance();
+        }
+
+        /**
+         * Fails as well once the adjacency changed, as the edges may have moved to the hashed sets, which would
+         * otherwise end the iteration silently.
+         */
+        public boolean hasNext() {
+            this.checkModCount();
+            return this.next < size;
+        }
+
+        public Edge next() {
+            this.checkModCount();
+            if (this.next >= size)
+                throw new NoSuchElementException();
+            final Edge edge = edges[this.next];
+            this.advance();
+            return edge;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private void checkModCount() {
+            if (this.expectedModCount != modCount)
+                throw new ConcurrentModificationException();
+        }
+
+        private void advance() {
+            do {
+                this.next++;
+            } while (this.next < size && !hasLabel(edges[this.next], this.labels));
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.tinkerpop.blueprints.impls.tg;
+
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Index;
+import com.tinkerpop.blueprints.Vertex;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Reads a TinkerGraph written by TinkerBinaryWriter from an InputStream.
+ * The blocks of elements are read on the calling thread and decoded on worker threads, the decoded elements are
+ * added to the graph in the order of the blocks on the calling thread. Their properties are set directly on the
+ * elements, as the key indices are only created, and so built in one pass over the elements, once all elements
+ * are read.
+ */
+class TinkerBinaryReader {
+
+    private final TinkerGraph graph;
+    private TinkerGraph.IdType idType;
+
+    /**
+     * @param graph the empty graph to populate
+     */
+    public TinkerBinaryReader(final TinkerGraph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Read the TinkerGraph from an InputStream, which is not closed.
+     *
+     * @param inputStream the InputStream to read the TinkerGraph from
+     * @throws IOException thrown if there is an error reading the TinkerGraph or the layout is not supported
+     */
+    public void load(final InputStream inputStream) throws IOException {
+        final DataInputStream reader = new DataInputStream(new BufferedInputStream(inputStream, 1 << 16));
+        if (reader.readInt() != TinkerBinaryWriter.MAGIC)
+            throw new IOException("The stream does not hold a binary TinkerGraph");
+        final byte version = reader.readByte();
+        if (version != TinkerBinaryWriter.VERSION)
+            throw new IOException("Version " + version + " of the binary TinkerGraph layout is not supported");
+        this.idType = TinkerGraph.IdType.values()[reader.readByte()];
+        final long currentId = TinkerCodec.readVarLong(reader);
+
+        // the codes are only the positions in the table if the dictionary of the graph was empty
+        final int[] codes = new int[TinkerCodec.readVarInt(reader)];
+        final String[] strings = new String[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            strings[i] = TinkerCodec.readString(reader);
+            codes[i] = this.graph.dictionary.encode(strings[i]);
+        }
+
+        this.readBlocks(reader, new Decoder<TinkerVertex>() {
+            public TinkerVertex decode(final DataInputStream block) throws IOException {
+                final TinkerVertex vertex = new TinkerVertex(convertId(graph.vertices, readId(block)), graph);
+                readProperties(block, vertex, codes);
+                return vertex;
+            }
+
+            public void load(final TinkerVertex vertex) {
+                graph.loadVertex(vertex);
+            }
+        });
+
+        // the vertices are only read by the workers decoding the edges, the calling thread only links the edges
+        this.readBlocks(reader, new Decoder<TinkerEdge>() {
+            public TinkerEdge decode(final DataInputStream block) throws IOException {
+                final Object id = convertId(graph.edges, readId(block));
+                final Vertex out = getVertex(readId(block), id);
+                final Vertex in = getVertex(readId(block), id);
+                final TinkerEdge edge = new TinkerEdge(id, out, in, strings[TinkerCodec.readVarInt(block)], graph);
+                readProperties(block, edge, codes);
+                return edge;
+            }
+
+            public void load(final TinkerEdge edge) {
+                graph.loadEdge(edge);
+            }
+        });
+
+        this.readKeyIndices(reader, this.graph.vertexKeyIndex);
+        this.readKeyIndices(reader, this.graph.edgeKeyIndex);
+        this.readIndices(reader);
+        this.graph.currentId = currentId;
+    }
+
+    /**
+     * Read a TinkerGraph from an InputStream, which is not closed.
+     *
+     * @param graph       the empty graph to populate
+     * @param inputStream the InputStream to read the TinkerGraph from
+     * @throws IOException thrown if there is an error reading the TinkerGraph or the layout is not supported
+     */
+    public static void load(final TinkerGraph graph, final InputStream inputStream) throws IOException {
+        new TinkerBinaryReader(graph).load(inputStream);
+    }
+
+    /**
+     * Decodes the elements of a block on a worker thread and loads them into the graph on the calling thread.
+     */
+    private interface Decoder<E> {
+        public E decode(final DataInputStream block) throws IOException;
+
+        public void load(final E element);
+    }
+
+    private <E> void readBlocks(final DataInputStream reader, final Decoder<E> decoder) throws IOException {
+        final int blocks = TinkerCodec.readVarInt(reader);
+        TinkerParallel.run(new TinkerParallel.Tasks<List<E>>() {
+            private int read = 0;
+
+            public boolean hasNext() {
+                return this.read < blocks;
+            }
+
+            public Callable<List<E>> next() throws IOException {
+                final byte[] bytes = new byte[TinkerCodec.readVarInt(reader)];
+                reader.readFully(bytes);
+                this.read++;
+                return new Callable<List<E>>() {
+                    public List<E> call() throws IOException {
+                        final DataInputStream block = new DataInputStream(new ByteArrayInputStream(bytes));
+                        final List<E> elements = new ArrayList<E>();
+                        while (block.available() > 0) {
+                            elements.add(decoder.decode(block));
+                        }
+                        return elements;
+                    }
+                };
+            }
+        }, new TinkerParallel.Sink<List<E>>() {
+            public void accept(final List<E> elements) {
+                for (final E element : elements) {
+                    decoder.load(element);
+                }
+            }
+        });
+    }
+
+    private static Object convertId(final TinkerElementMap<?> elements, final Object id) throws IOException {
+        final Object elementId = elements.convertId(id);
+        if (null == elementId)
+            throw new IOException("The identifier " + id + " is not supported by the identifiers of the graph");
+        return elementId;
+    }
+
+    private Vertex getVertex(final Object id, final Object edgeId) throws IOException {
+        final Vertex vertex = this.graph.getVertex(id);
+        if (null == vertex)
+            throw new IOException("The vertex " + id + " of the edge " + edgeId + " does not exist");
+        return vertex;
+    }
+
+    private Object readId(final DataInputStream reader) throws IOException {
+        if (this.idType == TinkerGraph.IdType.LONG)
+            return TinkerCodec.readVarLong(reader);
+        else
+            return TinkerCodec.readString(reader);
+    }
+
+    private static void readProperties(final DataInputStream reader, final TinkerElement element, final int[] codes) throws IOException {
+        final int size = TinkerCodec.readVarInt(reader);
+        for (int i = 0; i < size; i++) {
+            final int code = codes[TinkerCodec.readVarInt(reader)];
+            element.properties.put(code, TinkerCodec.readValue(reader));
+        }
+    }
+
+    private void readKeyIndices(final DataInputStream reader, final TinkerGraph.TinkerKeyIndex<?> keyIndex) throws IOException {
+        final int keys = TinkerCodec.readVarInt(reader);
+        final Map<String, TinkerGraph.KeyIndexType> types = new HashMap<String, TinkerGraph.KeyIndexType>();
+        for (int i = 0; i < keys; i++) {
+            final String key = TinkerCodec.readString(reader);
+            types.put(key, reader.readBoolean() ? TinkerGraph.KeyIndexType.SORTED : TinkerGraph.KeyIndexType.HASH);
+        }
+        keyIndex.createKeyIndices(types);
+    }
+
+    private void readIndices(final DataInputStream reader) throws IOException {
+        final int indices = TinkerCodec.readVarInt(reader);
+        for (int i = 0; i < indices; i++) {
+            final String indexName = TinkerCodec.readString(reader);
+            final boolean vertices = reader.readBoolean();
+            final Index index = this.graph.createIndex(indexName, vertices ? Vertex.class : Edge.class);
+
+            final int keys = TinkerCodec.readVarInt(reader);
+            for (int j = 0; j < keys; j++) {
+                final String key = TinkerCodec.readString(reader);
+                final int values = TinkerCodec.readVarInt(reader);
+                for (int k = 0; k < values; k++) {
+                    final Object value = TinkerCodec.readValue(reader);
+                    final int elements = TinkerCodec.readVarInt(reader);
+                    for (int l = 0; l < elements; l++) {
+                        final Object id = this.readId(reader);
+                        index.put(key, value, vertices ? this.graph.getVertex(id) : this.graph.getEdge(id));
+                    }
+                }
+            }
+        }
+    }
+}
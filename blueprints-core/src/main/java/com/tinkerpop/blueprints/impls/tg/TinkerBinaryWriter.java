@@ -0,0 +1,197 @@
+package com.tinkerpop.blueprints.impls.tg;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Vertex;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Writes a TinkerGraph, its indices and key indices to an OutputStream in a compact binary layout.
+ * <p/>
+ * The layout starts with a magic number, the version of the layout and the type of the identifiers. The labels
+ * and property keys follow as a table of Strings, which the elements refer to by position, so every distinct
+ * String is written once. The vertices and the edges follow, each in blocks of up to TinkerParallel.PARTITION_SIZE
+ * elements preceded by the number of blocks, and every block preceded by its length in bytes, so the blocks can be
+ * encoded and decoded on several threads. The key indices and the manual indices follow, each preceded by their
+ * count. Identifiers and numbers are written as variable length numbers and property values are tagged with
+ * their type, see TinkerCodec.
+ * <p/>
+ * The elements are written without recursion, so the depth of the graph does not matter.
+ * The graph must not be mutated while it is written.
+ */
+class TinkerBinaryWriter {
+
+    static final int MAGIC = 0x54474246;
+    static final byte VERSION = 1;
+
+    private final TinkerGraph graph;
+
+    /**
+     * @param graph the TinkerGraph to pull the data from
+     */
+    public TinkerBinaryWriter(final TinkerGraph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Write the TinkerGraph to an OutputStream, which is not closed.
+     *
+     * @param outputStream the OutputStream to write the TinkerGraph to
+     * @throws IOException thrown if there is an error writing the TinkerGraph
+     */
+    public void save(final OutputStream outputStream) throws IOException {
+        final DataOutputStream writer = new DataOutputStream(new BufferedOutputStream(outputStream, 1 << 16));
+        writer.writeInt(MAGIC);
+        writer.writeByte(VERSION);
+        writer.writeByte(this.graph.getIdType().ordinal());
+        TinkerCodec.writeVarLong(writer, this.graph.currentId);
+
+        final TinkerDictionary dictionary = this.graph.dictionary;
+        final int strings = dictionary.size();
+        TinkerCodec.writeVarInt(writer, strings);
+        for (int code = 0; code < strings; code++) {
+            TinkerCodec.writeString(writer, dictionary.decode(code));
+        }
+
+        final List<Vertex> vertices = new ArrayList<Vertex>(this.graph.vertices.values());
+        this.writeBlocks(writer, vertices.size(), new TinkerParallel.Partitioner<byte[]>() {
+            public Callable<byte[]> create(final int from, final int to) {
+                return new Block(from, to) {
+                    protected void write(final DataOutputStream block, final int i) throws IOException {
+                        final TinkerVertex vertex = (TinkerVertex) vertices.get(i);
+                        writeId(block, vertex.getId());
+                        writeProperties(block, vertex);
+                    }
+                };
+            }
+        });
+
+        final List<Edge> edges = new ArrayList<Edge>(this.graph.edges.values());
+        this.writeBlocks(writer, edges.size(), new TinkerParallel.Partitioner<byte[]>() {
+            public Callable<byte[]> create(final int from, final int to) {
+                return new Block(from, to) {
+                    protected void write(final DataOutputStream block, final int i) throws IOException {
+                        final TinkerEdge edge = (TinkerEdge) edges.get(i);
+                        writeId(block, edge.getId());
+                        writeId(block, edge.getVertex(Direction.OUT).getId());
+                        writeId(block, edge.getVertex(Direction.IN).getId());
+                        TinkerCodec.writeVarInt(block, edge.labelCode);
+                        writeProperties(block, edge);
+                    }
+                };
+            }
+        });
+
+        writeKeyIndices(writer, this.graph.vertexKeyIndex);
+        writeKeyIndices(writer, this.graph.edgeKeyIndex);
+        this.writeIndices(writer);
+        writer.flush();
+    }
+
+    /**
+     * Write a TinkerGraph to an OutputStream, which is not closed.
+     *
+     * @param graph        the TinkerGraph to pull the data from
+     * @param outputStream the OutputStream to write the TinkerGraph to
+     * @throws IOException thrown if there is an error writing the TinkerGraph
+     */
+    public static void save(final TinkerGraph graph, final OutputStream outputStream) throws IOException {
+        new TinkerBinaryWriter(graph).save(outputStream);
+    }
+
+    /**
+     * Write the number of blocks, then every block as its length in bytes and its bytes.
+     * The blocks are encoded on the worker threads.
+     */
+    private void writeBlocks(final DataOutputStream writer, final int elements, final TinkerParallel.Partitioner<byte[]> partitioner) throws IOException {
+        TinkerCodec.writeVarInt(writer, (elements + TinkerParallel.PARTITION_SIZE - 1) / TinkerParallel.PARTITION_SIZE);
+        TinkerParallel.partition(elements, partitioner, new TinkerParallel.Sink<byte[]>() {
+            public void accept(final byte[] block) throws IOException {
+                TinkerCodec.writeVarInt(writer, block.length);
+                writer.write(block);
+            }
+        });
+    }
+
+    /**
+     * Encodes the elements of a partition into a block.
+     */
+    private abstract static class Block implements Callable<byte[]> {
+        private final int from;
+        private final int to;
+
+        protected Block(final int from, final int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        public byte[] call() throws IOException {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final DataOutputStream block = new DataOutputStream(bytes);
+            for (int i = this.from; i < this.to; i++) {
+                this.write(block, i);
+            }
+            block.flush();
+            return bytes.toByteArray();
+        }
+
+        protected abstract void write(final DataOutputStream block, final int i) throws IOException;
+    }
+
+    private void writeId(final DataOutputStream writer, final Object id) throws IOException {
+        if (this.graph.getIdType() == TinkerGraph.IdType.LONG)
+            TinkerCodec.writeVarLong(writer, (Long) id);
+        else
+            TinkerCodec.writeString(writer, id.toString());
+    }
+
+    private static void writeProperties(final DataOutputStream writer, final TinkerElement element) throws IOException {
+        final TinkerProperties properties = element.properties;
+        TinkerCodec.writeVarInt(writer, properties.size());
+        for (int i = 0; i < properties.size(); i++) {
+            TinkerCodec.writeVarInt(writer, properties.keyAt(i));
+            TinkerCodec.writeValue(writer, properties.valueAt(i));
+        }
+    }
+
+    private static void writeKeyIndices(final DataOutputStream writer, final TinkerGraph.TinkerKeyIndex keyIndex) throws IOException {
+        final Set<String> keys = keyIndex.getIndexedKeys();
+        TinkerCodec.writeVarInt(writer, keys.size());
+        for (final String key : keys) {
+            TinkerCodec.writeString(writer, key);
+            writer.writeBoolean(keyIndex.isSorted(key));
+        }
+    }
+
+    private void writeIndices(final DataOutputStream writer) throws IOException {
+        TinkerCodec.writeVarInt(writer, this.graph.indices.size());
+        for (final TinkerIndex<?> index : this.graph.indices.values()) {
+            TinkerCodec.writeString(writer, index.getIndexName());
+            writer.writeBoolean(Vertex.class.isAssignableFrom(index.getIndexClass()));
+
+            final Map<String, ? extends Map<Object, ? extends Set<?>>> keys = index.index;
+            TinkerCodec.writeVarInt(writer, keys.size());
+            for (final Map.Entry<String, ? extends Map<Object, ? extends Set<?>>> key : keys.entrySet()) {
+                TinkerCodec.writeString(writer, key.getKey());
+                TinkerCodec.writeVarInt(writer, key.getValue().size());
+                for (final Map.Entry<Object, ? extends Set<?>> value : key.getValue().entrySet()) {
+                    TinkerCodec.writeValue(writer, value.getKey());
+                    TinkerCodec.writeVarInt(writer, value.getValue().size());
+                    for (final Object element : value.getValue()) {
+                        this.writeId(writer, ((TinkerElement) element).getId());
+                    }
+                }
+            }
+        }
+    }
+}
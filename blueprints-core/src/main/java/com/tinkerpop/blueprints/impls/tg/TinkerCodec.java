@@ -0,0 +1,169 @@
+package com.tinkerpop.blueprints.impls.tg;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Writes identifiers and property values of a TinkerGraph with a tag byte for their type.
+ * The common types are written in their binary form, integers and longs as variable length zig-zag encoded
+ * numbers so small values take a single byte, any other value is written with java serialization.
+ */
+class TinkerCodec {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte FLOAT = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte BOOLEAN = 6;
+    private static final byte BYTE = 7;
+    private static final byte SHORT = 8;
+    private static final byte SERIALIZED = 9;
+
+    private TinkerCodec() {
+    }
+
+    public static void writeValue(final DataOutput out, final Object value) throws IOException {
+        if (null == value) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            writeVarLong(out, (Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            writeVarLong(out, (Long) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) value);
+        } else {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final ObjectOutputStream objects = new ObjectOutputStream(bytes);
+            objects.writeObject(value);
+            objects.close();
+            out.writeByte(SERIALIZED);
+            writeVarInt(out, bytes.size());
+            out.write(bytes.toByteArray());
+        }
+    }
+
+    public static Object readValue(final DataInput in) throws IOException {
+        final byte type = in.readByte();
+        switch (type) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in);
+            case INTEGER:
+                return (int) readVarLong(in);
+            case LONG:
+                return readVarLong(in);
+            case FLOAT:
+                return in.readFloat();
+            case DOUBLE:
+                return in.readDouble();
+            case BOOLEAN:
+                return in.readBoolean();
+            case BYTE:
+                return in.readByte();
+            case SHORT:
+                return in.readShort();
+            case SERIALIZED:
+                final byte[] bytes = new byte[readVarInt(in)];
+                in.readFully(bytes);
+                final ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(bytes));
+                try {
+                    return objects.readObject();
+                } catch (ClassNotFoundException cnfe) {
+                    throw new IOException(cnfe.getMessage(), cnfe);
+                } finally {
+                    objects.close();
+                }
+            default:
+                throw new IOException("Unknown value type " + type);
+        }
+    }
+
+    /**
+     * Unlike DataOutput.writeUTF the length of the String is not limited.
+     */
+    public static void writeString(final DataOutput out, final String string) throws IOException {
+        final byte[] bytes = string.getBytes(UTF8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(final DataInput in) throws IOException {
+        final byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    /**
+     * Write a non-negative int in groups of seven bits, the lowest first.
+     */
+    public static void writeVarInt(final DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    public static int readVarInt(final DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed variable length int");
+    }
+
+    /**
+     * Write a long zig-zag encoded, so values close to zero take few bytes whatever their sign.
+     */
+    public static void writeVarLong(final DataOutput out, final long value) throws IOException {
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigZag & 0x7F) | 0x80));
+            zigZag >>>= 7;
+        }
+        out.writeByte((int) zigZag);
+    }
+
+    public static long readVarLong(final DataInput in) throws IOException {
+        long zigZag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = in.readByte();
+            zigZag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return (zigZag >>> 1) ^ -(zigZag & 1);
+        }
+        throw new IOException("Malformed variable length long");
+    }
+}
@@ -0,0 +1,67 @@
+package com.tinkerpop.blueprints.impls.tg;
+
+import com.tinkerpop.blueprints.Element;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A TinkerElementMap that is safe for concurrent readers and writers.
+ * Elements are keyed by the String or the Long representation of their identifier depending on the id type of the graph.
+ * Iteration over the values is weakly consistent and never throws a ConcurrentModificationException.
+ */
+class TinkerConcurrentElementMap<T extends Element> implements TinkerElementMap<T> {
+
+    private final ConcurrentMap<Object, T> elements = new ConcurrentHashMap<Object, T>();
+    private final TinkerGraph.IdType idType;
+
+    public TinkerConcurrentElementMap(final TinkerGraph.IdType idType) {
+        this.idType = idType;
+    }
+
+    public T get(final Object id) {
+        final Object key = this.convertId(id);
+        return null == key ? null : this.elements.get(key);
+    }
+
+    public void put(final Object id, final T element) {
+        this.elements.put(this.checkedId(id), element);
+    }
+
+    public T putIfAbsent(final Object id, final T element) {
+        return this.elements.putIfAbsent(this.checkedId(id), element);
+    }
+
+    public T remove(final Object id) {
+        final Object key = this.convertId(id);
+        return null == key ? null : this.elements.remove(key);
+    }
+
+    public int size() {
+        return this.elements.size();
+    }
+
+    public void clear() {
+        this.elements.clear();
+    }
+
+    public Collection<T> values() {
+        return this.elements.values();
+    }
+
+    public Object convertId(final Object id) {
+        return this.idType == TinkerGraph.IdType.LONG ? TinkerLongElementMap.toLong(id) : id.toString();
+    }
+
+    public Object convertId(final long id) {
+        return this.idType == TinkerGraph.IdType.LONG ? (Object) id : String.valueOf(id);
+    }
+
+    private Object checkedId(final Object id) {
+        final Object key = this.convertId(id);
+        if (null == key)
+            throw new IllegalArgumentException("Identifier can not be converted: " + id);
+        return key;
+    }
+}
@@ -0,0 +1,72 @@
+package com.tinkerpop.blueprints.impls.tg;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * Maps the edge labels and property keys of a TinkerGraph to small int codes.
+ * Every distinct String is held once for the whole graph and elements refer to it by its code.
+ * Codes are never reassigned, so a code obtained from the dictionary stays valid for the life of the graph.
+ */
+class TinkerDictionary implements Serializable {
+
+    static final int UNKNOWN = -1;
+
+    private final Map<String, Integer> codes;
+    private volatile String[] strings = new String[16];
+    private int size = 0;
+
+    public TinkerDictionary(final TinkerGraph graph) {
+        this.codes = graph.createMap();
+    }
+
+    /**
+     * Get the code of the String, assigning the next free code if the String is not in the dictionary yet.
+     */
+    public int encode(final String string) {
+        final Integer code = this.codes.get(string);
+        if (null != code)
+            return code;
+
+        synchronized (this) {
+            final Integer existing = this.codes.get(string);
+            if (null != existing)
+                return existing;
+
+            String[] strings = this.strings;
+            if (this.size == strings.length) {
+                final String[] grown = new String[strings.length << 1];
+                System.arraycopy(strings, 0, grown, 0, this.size);
+                strings = grown;
+            }
+            strings[this.size] = string;
+            // publish the String before its code so a reader never sees a code it can not decode
+            this.strings = strings;
+            this.codes.put(string, this.size);
+            return this.size++;
+        }
+    }
+
+    /**
+     * Get the code of the String without assigning one.
+     *
+     * @return the code or UNKNOWN if the String is not in the dictionary
+     */
+    public int lookup(final String string) {
+        if (null == string)
+            return UNKNOWN;
+        final Integer code = this.codes.get(string);
+        return null == code ? UNKNOWN : code;
+    }
+
+    public String decode(final int code) {
+        return this.strings[code];
+    }
+
+    /**
+     * The number of codes assigned, which are the codes from 0 to size - 1.
+     */
+    public synchronized int size() {
+        return this.size;
+    }
+}
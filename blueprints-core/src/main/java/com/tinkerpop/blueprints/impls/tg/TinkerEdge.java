@@ -14,20 +14,22 @@ import java.io.Serializable;
  */
 class TinkerEdge extends TinkerElement implements Edge, Serializable {
 
-    private final String label;
+    /**
+     * The dictionary code of the label.
+     */
+    protected final int labelCode;
     private final Vertex inVertex;
     private final Vertex outVertex;
 
-    protected TinkerEdge(final String id, final Vertex outVertex, final Vertex inVertex, final String label, final TinkerGraph graph) {
+    protected TinkerEdge(final Object id, final Vertex outVertex, final Vertex inVertex, final String label, final TinkerGraph graph) {
         super(id, graph);
-        this.label = label;
+        this.labelCode = graph.dictionary.encode(label);
         this.outVertex = outVertex;
         this.inVertex = inVertex;
-        this.graph.edgeKeyIndex.autoUpdate(StringFactory.LABEL, this.label, null, this);
     }
 
     public String getLabel() {
-        return this.label;
+        return this.graph.dictionary.decode(this.labelCode);
     }
 
     public Vertex getVertex(final Direction direction) throws IllegalArgumentException {
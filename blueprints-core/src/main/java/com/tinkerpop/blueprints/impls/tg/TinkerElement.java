@@ -7,9 +7,10 @@ import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.util.ElementHelper;
 
 import java.io.Serializable;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -17,26 +18,72 @@ import java.util.Set;
  */
 abstract class TinkerElement implements Element, Serializable {
 
-    protected Map<String, Object> properties = new HashMap<String, Object>();
-    protected final String id;
+    /**
+     * The properties keyed by the dictionary code of their key.
+     * A concurrent graph never changes a published instance but replaces it with a changed copy,
+     * so readers need no lock.
+     */
+    protected volatile TinkerProperties properties;
+    protected final Object id;
     protected final TinkerGraph graph;
 
-    protected TinkerElement(final String id, final TinkerGraph graph) {
+    /**
+     * The manual index entries that hold the element or null if it is not in a manual index.
+     * They are not serialized, as they refer back to the indices that hold the element, and are restored
+     * from the indices once the graph is read.
+     */
+    private transient List<TinkerPosting> postings = null;
+
+    protected TinkerElement(final Object id, final TinkerGraph graph) {
         this.graph = graph;
         this.id = id;
+        this.properties = new TinkerProperties();
     }
 
     public Set<String> getPropertyKeys() {
-        return new HashSet<String>(this.properties.keySet());
+        final TinkerProperties properties = this.properties;
+        final Set<String> keys = new HashSet<String>();
+        for (int i = 0; i < properties.size(); i++) {
+            keys.add(this.graph.dictionary.decode(properties.keyAt(i)));
+        }
+        return keys;
     }
 
     public <T> T getProperty(final String key) {
-        return (T) this.properties.get(key);
+        final int code = this.graph.dictionary.lookup(key);
+        return code == TinkerDictionary.UNKNOWN ? null : (T) this.properties.get(code);
     }
 
     public void setProperty(final String key, final Object value) {
         ElementHelper.validateProperty(this, key, value);
-        Object oldValue = this.properties.put(key, value);
+        final int code = this.graph.dictionary.encode(key);
+        final TinkerJournal journal = this.graph.journal;
+        if (null != journal)
+            journal.lock();
+        try {
+            if (this.graph.concurrent) {
+                // the old value removed from a key index must be the one the new value replaced
+                // and the values of a key must be journaled in the order they were set
+                synchronized (this) {
+                    final TinkerProperties properties = this.properties.copy();
+                    final Object oldValue = properties.put(code, value);
+                    this.properties = properties;
+                    this.autoUpdate(key, value, oldValue);
+                    if (null != journal)
+                        journal.setProperty(this, key, value);
+                }
+            } else {
+                this.autoUpdate(key, value, this.properties.put(code, value));
+                if (null != journal)
+                    journal.setProperty(this, key, value);
+            }
+        } finally {
+            if (null != journal)
+                journal.unlock();
+        }
+    }
+
+    private void autoUpdate(final String key, final Object value, final Object oldValue) {
         if (this instanceof TinkerVertex)
             this.graph.vertexKeyIndex.autoUpdate(key, value, oldValue, (TinkerVertex) this);
         else
@@ -44,20 +91,114 @@ abstract class TinkerElement implements Element, Serializable {
     }
 
     public <T> T removeProperty(final String key) {
-        Object oldValue = this.properties.remove(key);
+        final int code = this.graph.dictionary.lookup(key);
+        if (code == TinkerDictionary.UNKNOWN)
+            return null;
+
+        final TinkerJournal journal = this.graph.journal;
+        if (null != journal)
+            journal.lock();
+        try {
+            final Object oldValue;
+            if (this.graph.concurrent) {
+                synchronized (this) {
+                    final TinkerProperties properties = this.properties.copy();
+                    oldValue = properties.remove(code);
+                    this.properties = properties;
+                    this.autoRemove(key, oldValue);
+                    if (null != journal && null != oldValue)
+                        journal.removeProperty(this, key);
+                }
+            } else {
+                oldValue = this.properties.remove(code);
+                this.autoRemove(key, oldValue);
+                if (null != journal && null != oldValue)
+                    journal.removeProperty(this, key);
+            }
+            return (T) oldValue;
+        } finally {
+            if (null != journal)
+                journal.unlock();
+        }
+    }
+
+    private void autoRemove(final String key, final Object oldValue) {
         if (this instanceof TinkerVertex)
             this.graph.vertexKeyIndex.autoRemove(key, oldValue, (TinkerVertex) this);
         else
             this.graph.edgeKeyIndex.autoRemove(key, oldValue, (TinkerEdge) this);
-        return (T) oldValue;
     }
 
+    void addPosting(final TinkerIndex index, final String key, final Object value) {
+        if (this.graph.concurrent) {
+            synchronized (this) {
+                this.recordPosting(index, key, value);
+            }
+        } else {
+            this.recordPosting(index, key, value);
+        }
+    }
+
+    private void recordPosting(final TinkerIndex index, final String key, final Object value) {
+        if (null == this.postings)
+            this.postings = new ArrayList<TinkerPosting>(2);
+        this.postings.add(new TinkerPosting(index, key, value));
+    }
+
+    void removePosting(final TinkerIndex index, final String key, final Object value) {
+        if (this.graph.concurrent) {
+            synchronized (this) {
+                this.dropPosting(index, key, value);
+            }
+        } else {
+            this.dropPosting(index, key, value);
+        }
+    }
+
+    private void dropPosting(final TinkerIndex index, final String key, final Object value) {
+        if (null == this.postings)
+            return;
+        for (int i = 0; i < this.postings.size(); i++) {
+            if (this.postings.get(i).isFor(index, key, value)) {
+                this.postings.remove(i);
+                break;
+            }
+        }
+        if (this.postings.isEmpty())
+            this.postings = null;
+    }
+
+    /**
+     * A copy of the index entries that hold the element.
+     */
+    List<TinkerPosting> getPostings() {
+        if (this.graph.concurrent) {
+            synchronized (this) {
+                return null == this.postings ? Collections.<TinkerPosting>emptyList() : new ArrayList<TinkerPosting>(this.postings);
+            }
+        } else {
+            return null == this.postings ? Collections.<TinkerPosting>emptyList() : new ArrayList<TinkerPosting>(this.postings);
+        }
+    }
+
+    /**
+     * Remove the element from the key index entries of its properties and from every manual index entry that holds it.
+     */
+    void removeFromIndices() {
+        if (this instanceof TinkerVertex)
+            this.graph.vertexKeyIndex.removeElement((TinkerVertex) this);
+        else
+            this.graph.edgeKeyIndex.removeElement((TinkerEdge) this);
+        for (final TinkerPosting posting : this.getPostings()) {
+            posting.index.removeEntry(posting.key, posting.value, this);
+        }
+    }
 
     public int hashCode() {
         return this.id.hashCode();
     }
 
-    public String getId() {
+    public Object getId() {
         return this.id;
     }
 
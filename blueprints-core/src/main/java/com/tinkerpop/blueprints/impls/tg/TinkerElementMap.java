@@ -0,0 +1,69 @@
+package com.tinkerpop.blueprints.impls.tg;
+
+import com.tinkerpop.blueprints.Element;
+
+import java.io.Serializable;
+import java.util.Collection;
+
+/**
+ * Holds the vertices or edges of a TinkerGraph keyed by their identifier.
+ * Implementations are responsible for converting a user supplied identifier into their own key type.
+ * The map is public as it is the type of the protected vertices and edges fields of TinkerGraph.
+ */
+public interface TinkerElementMap<T extends Element> extends Serializable {
+
+    /**
+     * Get the element with the provided identifier.
+     *
+     * @param id the identifier of the element
+     * @return the element or null if no element exists for the identifier
+     */
+    public T get(final Object id);
+
+    /**
+     * Add the element under the provided identifier, replacing any element already held for it.
+     *
+     * @param id      the identifier of the element (as returned by convertId)
+     * @param element the element to store
+     */
+    public void put(final Object id, final T element);
+
+    /**
+     * Add the element under the provided identifier unless an element is already held for it.
+     *
+     * @param id      the identifier of the element (as returned by convertId)
+     * @param element the element to store
+     * @return the element already held for the identifier or null if the provided element was added
+     */
+    public T putIfAbsent(final Object id, final T element);
+
+    /**
+     * Remove the element with the provided identifier.
+     *
+     * @param id the identifier of the element
+     * @return the removed element or null if no element exists for the identifier
+     */
+    public T remove(final Object id);
+
+    public int size();
+
+    public void clear();
+
+    /**
+     * A live view of the elements held by the map.
+     */
+    public Collection<T> values();
+
+    /**
+     * Convert a user supplied identifier into the identifier used by the elements of this map.
+     *
+     * @param id the supplied identifier
+     * @return the converted identifier or null if the supplied identifier can not be represented
+     */
+    public Object convertId(final Object id);
+
+    /**
+     * Convert a long generated by the graph into the identifier used by the elements of this map.
+     */
+    public Object convertId(final long id);
+}
@@ -11,23 +11,29 @@ import com.tinkerpop.blueprints.IndexableGraph;
 import com.tinkerpop.blueprints.KeyIndexableGraph;
 import com.tinkerpop.blueprints.Parameter;
 import com.tinkerpop.blueprints.Vertex;
-import com.tinkerpop.blueprints.util.DefaultGraphQuery;
 import com.tinkerpop.blueprints.util.ExceptionFactory;
-import com.tinkerpop.blueprints.util.KeyIndexableGraphHelper;
+import com.tinkerpop.blueprints.util.MultiIterable;
 import com.tinkerpop.blueprints.util.PropertyFilteredIterable;
 import com.tinkerpop.blueprints.util.StringFactory;
 import org.apache.commons.configuration.Configuration;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 /**
  * An in-memory, reference implementation of the property graph interfaces provided by Blueprints.
@@ -37,18 +43,29 @@ import java.util.Set;
 public class TinkerGraph implements IndexableGraph, KeyIndexableGraph, Serializable {
 
     protected Long currentId = 0l;
-    protected Map<String, Vertex> vertices = new HashMap<String, Vertex>();
-    protected Map<String, Edge> edges = new HashMap<String, Edge>();
-    protected Map<String, TinkerIndex> indices = new HashMap<String, TinkerIndex>();
+    protected TinkerElementMap<Vertex> vertices;
+    protected TinkerElementMap<Edge> edges;
+    protected Map<String, TinkerIndex> indices;
 
-    protected TinkerKeyIndex<TinkerVertex> vertexKeyIndex = new TinkerKeyIndex<TinkerVertex>(TinkerVertex.class, this);
-    protected TinkerKeyIndex<TinkerEdge> edgeKeyIndex = new TinkerKeyIndex<TinkerEdge>(TinkerEdge.class, this);
+    protected TinkerDictionary dictionary;
+    protected TinkerKeyIndex<TinkerVertex> vertexKeyIndex;
+    protected TinkerKeyIndex<TinkerEdge> edgeKeyIndex;
 
     private final String directory;
     private final FileType fileType;
+    private final IdType idType;
+    protected final boolean concurrent;
+    private volatile IterationMode iterationMode = IterationMode.SNAPSHOT;
+
+    /**
+     * The log the mutations are appended to or null if the graph is only saved on shutdown.
+     */
+    transient TinkerJournal journal;
 
     private static final Features FEATURES = new Features();
     private static final Features PERSISTENT_FEATURES;
+    private static final Features LONG_ID_FEATURES;
+    private static final Features PERSISTENT_LONG_ID_FEATURES;
 
     static {
         FEATURES.supportsDuplicateEdges = true;
@@ -82,69 +99,224 @@ public class TinkerGraph implements IndexableGraph, KeyIndexableGraph, Serializa
         FEATURES.supportsVertexProperties = true;
         FEATURES.supportsEdgeProperties = true;
         FEATURES.supportsThreadedTransactions = false;
+        FEATURES.isThreadSafe = false;
 
         PERSISTENT_FEATURES = FEATURES.copyFeatures();
         PERSISTENT_FEATURES.isPersistent = true;
+
+        // supplied ids that are not integral numbers are replaced by a generated id
+        LONG_ID_FEATURES = FEATURES.copyFeatures();
+        LONG_ID_FEATURES.ignoresSuppliedIds = true;
+
+        PERSISTENT_LONG_ID_FEATURES = PERSISTENT_FEATURES.copyFeatures();
+        PERSISTENT_LONG_ID_FEATURES.ignoresSuppliedIds = true;
     }
 
+    /**
+     * The format the graph is persisted with.
+     * BINARY is a compact, versioned layout that is streamed in and out without java serialization and keeps
+     * the kind of the key indices.
+     */
     public enum FileType {
         JAVA,
         GML,
         GRAPHML,
-        GRAPHSON
+        GRAPHSON,
+        BINARY
+    }
+
+    /**
+     * The type of the identifiers of the vertices and edges.
+     * STRING stores every supplied identifier by its String representation.
+     * LONG stores the elements in a primitive long keyed map and only honors supplied identifiers that are
+     * integral numbers (or their String representation), all other identifiers are replaced by a generated one.
+     */
+    public enum IdType {
+        STRING,
+        LONG
+    }
+
+    /**
+     * How the iterables returned for the vertices, the edges, the incident edges of a vertex and the results of an
+     * index lookup relate to the structures of the graph.
+     * SNAPSHOT copies the elements into a list, so the graph can be mutated while the result is iterated.
+     * LIVE walks the backing structures without copying them. The iteration fails with a
+     * ConcurrentModificationException if the graph is mutated while it is in progress, except for a
+     * ConcurrentTinkerGraph where it is weakly consistent and reflects some of the mutations.
+     * LIVE iterables do not support removal.
+     */
+    public enum IterationMode {
+        SNAPSHOT,
+        LIVE
+    }
+
+    /**
+     * The kind of a key index, chosen with a Parameter of key KEY_INDEX_TYPE when the key index is created.
+     * HASH serves lookups of equal values.
+     * SORTED additionally keeps the values of each class in order so that GraphQuery can serve
+     * greater than, less than and interval predicates from the index.
+     */
+    public enum KeyIndexType {
+        HASH,
+        SORTED
     }
 
+    public static final String KEY_INDEX_TYPE = "type";
+
+    /**
+     * The milliseconds between the background checkpoints of a journaled graph.
+     */
+    public static final long DEFAULT_CHECKPOINT_INTERVAL = 60000l;
+
     public TinkerGraph(final Configuration configuration) {
-        if (configuration == null) {
-            throw new IllegalArgumentException("configuration cannot be null");
-        }
+        this(configuration, false);
+    }
 
-        this.directory = configuration.getString("blueprints.tg.directory", null);
-        this.fileType = FileType.valueOf(configuration.getString("blueprints.tg.file-type", "JAVA"));
+    protected TinkerGraph(final Configuration configuration, final boolean concurrent) {
+        this(validateConfiguration(configuration).getString("blueprints.tg.directory", null),
+                FileType.valueOf(configuration.getString("blueprints.tg.file-type", "JAVA")),
+                IdType.valueOf(configuration.getString("blueprints.tg.id-type", "STRING")),
+                concurrent,
+                configuration.getBoolean("blueprints.tg.journal", false),
+                configuration.getLong("blueprints.tg.checkpoint-interval", DEFAULT_CHECKPOINT_INTERVAL));
+        this.iterationMode = IterationMode.valueOf(configuration.getString("blueprints.tg.iteration-mode", "SNAPSHOT"));
+    }
 
-        if (directory != null) {
-            this.init();
-        }
+    /**
+     * @param directory  the directory to persist the graph to or null for a graph that is held in memory only
+     * @param fileType   the format to persist the graph with
+     * @param idType     the type of the identifiers of the elements
+     * @param concurrent whether the graph structures must support concurrent readers and writers
+     */
+    protected TinkerGraph(final String directory, final FileType fileType, final IdType idType, final boolean concurrent) {
+        this(directory, fileType, idType, concurrent, false, 0l);
     }
 
-    public TinkerGraph(final String directory, final FileType fileType) {
+    /**
+     * A journaled graph appends every mutation to a log in the directory as it happens instead of only saving
+     * the graph on shutdown. A checkpoint saves a snapshot of the graph with the file type and empties the log,
+     * on startup the snapshot is loaded and the log replayed.
+     *
+     * @param journal            whether to journal the mutations, which requires a directory
+     * @param checkpointInterval the milliseconds between background checkpoints or 0 to only checkpoint on shutdown
+     */
+    protected TinkerGraph(final String directory, final FileType fileType, final IdType idType, final boolean concurrent,
+                          final boolean journal, final long checkpointInterval) {
+        if (journal && null == directory)
+            throw new IllegalArgumentException("A journaled graph requires a directory");
+
         this.directory = directory;
         this.fileType = fileType;
-        this.init();
+        this.idType = idType;
+        this.concurrent = concurrent;
+        this.vertices = this.createElementMap();
+        this.edges = this.createElementMap();
+        this.indices = this.createMap();
+        this.dictionary = new TinkerDictionary(this);
+        this.vertexKeyIndex = new TinkerKeyIndex<TinkerVertex>(TinkerVertex.class, this);
+        this.edgeKeyIndex = new TinkerKeyIndex<TinkerEdge>(TinkerEdge.class, this);
+
+        if (null != directory) {
+            this.init(journal, checkpointInterval);
+        }
+    }
+
+    public TinkerGraph(final String directory, final FileType fileType, final IdType idType) {
+        this(directory, fileType, idType, false);
+    }
+
+    public TinkerGraph(final String directory, final FileType fileType) {
+        this(directory, fileType, IdType.STRING);
     }
 
     public TinkerGraph(final String directory) {
         this(directory, FileType.JAVA);
     }
 
+    public TinkerGraph(final IdType idType) {
+        this(null, FileType.JAVA, idType, false);
+    }
+
     public TinkerGraph() {
-        this.directory = null;
-        this.fileType = FileType.JAVA;
+        this(IdType.STRING);
+    }
+
+    private static Configuration validateConfiguration(final Configuration configuration) {
+        if (configuration == null) {
+            throw new IllegalArgumentException("configuration cannot be null");
+        }
+        return configuration;
+    }
+
+    private <T extends Element> TinkerElementMap<T> createElementMap() {
+        if (this.concurrent)
+            return new TinkerConcurrentElementMap<T>(this.idType);
+        else if (this.idType == IdType.LONG)
+            return new TinkerLongElementMap<T>();
+        else
+            return new TinkerStringElementMap<T>();
+    }
+
+    /**
+     * Create a map for the internal structures of the graph that is safe for concurrent access if the graph is.
+     */
+    <K, V> Map<K, V> createMap() {
+        return this.concurrent ? new ConcurrentHashMap<K, V>() : new HashMap<K, V>();
     }
 
-    private void init() {
+    /**
+     * Create a set for the internal structures of the graph that is safe for concurrent access if the graph is.
+     */
+    <E> Set<E> createSet() {
+        return this.concurrent ? Collections.newSetFromMap(new ConcurrentHashMap<E, Boolean>()) : new HashSet<E>();
+    }
+
+    private void init(final boolean journal, final long checkpointInterval) {
         try {
+            final TinkerStorage tinkerStorage = TinkerStorageFactory.getInstance().getTinkerStorage(fileType);
             final File file = new File(directory);
             if (!file.exists()) {
                 if (!file.mkdirs()) {
                     throw new RuntimeException("Could not create directory");
                 }
             } else {
-                final TinkerStorage tinkerStorage = TinkerStorageFactory.getInstance().getTinkerStorage(fileType);
-                final TinkerGraph graph = tinkerStorage.load(directory);
-
-                this.vertices = graph.vertices;
-                this.edges = graph.edges;
-                this.currentId = graph.currentId;
-                this.indices = graph.indices;
-                this.vertexKeyIndex = graph.vertexKeyIndex;
-                this.edgeKeyIndex = graph.edgeKeyIndex;
+                if (journal)
+                    TinkerJournal.recover(directory);
+                tinkerStorage.load(this, directory);
             }
+            if (journal)
+                this.journal = new TinkerJournal(this, directory, tinkerStorage, checkpointInterval);
         } catch (Exception e) {
             throw new RuntimeException(e.getMessage(), e);
         }
     }
 
+    /**
+     * Take over the structures of a graph that was read with java serialization.
+     */
+    void copyStructures(final TinkerGraph graph) {
+        if (graph.getClass() != this.getClass() || graph.idType != this.idType || graph.concurrent != this.concurrent)
+            throw new IllegalStateException("The persisted graph is a " + graph.getClass().getSimpleName() + " with " + graph.idType + " ids and can not be loaded into a " + this.getClass().getSimpleName() + " with " + this.idType + " ids");
+
+        this.vertices = graph.vertices;
+        this.edges = graph.edges;
+        this.currentId = graph.currentId;
+        this.indices = graph.indices;
+        this.dictionary = graph.dictionary;
+        this.vertexKeyIndex = graph.vertexKeyIndex;
+        this.edgeKeyIndex = graph.edgeKeyIndex;
+
+        for (final Vertex vertex : this.vertices.values()) {
+            ((TinkerVertex) vertex).outEdges.restoreEdges();
+            ((TinkerVertex) vertex).inEdges.restoreEdges();
+        }
+        this.vertexKeyIndex.restoreEntries();
+        this.edgeKeyIndex.restoreEntries();
+        for (final TinkerIndex index : this.indices.values()) {
+            index.restoreEntries();
+        }
+    }
+
     public Iterable<Vertex> getVertices(final String key, final Object value) {
         if (vertexKeyIndex.getIndexedKeys().contains(key)) {
             return (Iterable) vertexKeyIndex.get(key, value);
@@ -165,26 +337,66 @@ public class TinkerGraph implements IndexableGraph, KeyIndexableGraph, Serializa
         if (elementClass == null)
             throw ExceptionFactory.classForElementCannotBeNull();
 
+        final KeyIndexType type = getKeyIndexType(indexParameters);
+        final TinkerKeyIndex keyIndex;
         if (Vertex.class.isAssignableFrom(elementClass)) {
-            this.vertexKeyIndex.createKeyIndex(key);
+            keyIndex = this.vertexKeyIndex;
         } else if (Edge.class.isAssignableFrom(elementClass)) {
-            this.edgeKeyIndex.createKeyIndex(key);
+            keyIndex = this.edgeKeyIndex;
         } else {
             throw ExceptionFactory.classIsNotIndexable(elementClass);
         }
+
+        final TinkerJournal journal = this.journal;
+        if (null == journal) {
+            keyIndex.createKeyIndex(key, type);
+            return;
+        }
+        journal.lock();
+        try {
+            keyIndex.createKeyIndex(key, type);
+            journal.createKeyIndex(elementClass, key, type);
+        } finally {
+            journal.unlock();
+        }
+    }
+
+    private static KeyIndexType getKeyIndexType(final Parameter... indexParameters) {
+        for (final Parameter parameter : indexParameters) {
+            if (KEY_INDEX_TYPE.equals(parameter.getKey()) && null != parameter.getValue()) {
+                if (parameter.getValue() instanceof KeyIndexType)
+                    return (KeyIndexType) parameter.getValue();
+                return KeyIndexType.valueOf(parameter.getValue().toString().toUpperCase());
+            }
+        }
+        return KeyIndexType.HASH;
     }
 
     public <T extends Element> void dropKeyIndex(final String key, final Class<T> elementClass) {
         if (elementClass == null)
             throw ExceptionFactory.classForElementCannotBeNull();
 
+        final TinkerKeyIndex keyIndex;
         if (Vertex.class.isAssignableFrom(elementClass)) {
-            this.vertexKeyIndex.dropKeyIndex(key);
+            keyIndex = this.vertexKeyIndex;
         } else if (Edge.class.isAssignableFrom(elementClass)) {
-            this.edgeKeyIndex.dropKeyIndex(key);
+            keyIndex = this.edgeKeyIndex;
         } else {
             throw ExceptionFactory.classIsNotIndexable(elementClass);
         }
+
+        final TinkerJournal journal = this.journal;
+        if (null == journal) {
+            keyIndex.dropKeyIndex(key);
+            return;
+        }
+        journal.lock();
+        try {
+            keyIndex.dropKeyIndex(key);
+            journal.dropKeyIndex(elementClass, key);
+        } finally {
+            journal.unlock();
+        }
     }
 
     public <T extends Element> Set<String> getIndexedKeys(final Class<T> elementClass) {
@@ -204,8 +416,19 @@ public class TinkerGraph implements IndexableGraph, KeyIndexableGraph, Serializa
         if (this.indices.containsKey(indexName))
             throw ExceptionFactory.indexAlreadyExists(indexName);
 
-        final TinkerIndex index = new TinkerIndex(indexName, indexClass);
-        this.indices.put(index.getIndexName(), index);
+        final TinkerIndex index = new TinkerIndex(indexName, indexClass, this);
+        final TinkerJournal journal = this.journal;
+        if (null == journal) {
+            this.indices.put(index.getIndexName(), index);
+            return index;
+        }
+        journal.lock();
+        try {
+            this.indices.put(index.getIndexName(), index);
+            journal.createIndex(indexName, indexClass);
+        } finally {
+            journal.unlock();
+        }
         return index;
     }
 
@@ -228,139 +451,237 @@ public class TinkerGraph implements IndexableGraph, KeyIndexableGraph, Serializa
     }
 
     public void dropIndex(final String indexName) {
-        this.indices.remove(indexName);
+        final TinkerJournal journal = this.journal;
+        if (null != journal)
+            journal.lock();
+        try {
+            final TinkerIndex index = this.indices.remove(indexName);
+            if (null != index) {
+                index.dropPostings();
+                if (null != journal)
+                    journal.dropIndex(indexName);
+            }
+        } finally {
+            if (null != journal)
+                journal.unlock();
+        }
     }
 
 
     public Vertex addVertex(final Object id) {
-        String idString = null;
-        Vertex vertex;
-        if (null != id) {
-            idString = id.toString();
-            vertex = this.vertices.get(idString);
-            if (null != vertex) {
+        final TinkerJournal journal = this.journal;
+        if (null == journal)
+            return this.createVertex(id, null);
+        journal.lock();
+        try {
+            return this.createVertex(id, journal);
+        } finally {
+            journal.unlock();
+        }
+    }
+
+    private Vertex createVertex(final Object id, final TinkerJournal journal) {
+        Object elementId = null == id ? null : this.vertices.convertId(id);
+        if (null != elementId) {
+            final TinkerVertex vertex = new TinkerVertex(elementId, this);
+            if (!this.publishVertex(vertex, journal)) {
                 throw ExceptionFactory.vertexWithIdAlreadyExists(id);
             }
+            return vertex;
         } else {
-            boolean done = false;
-            while (!done) {
-                idString = this.getNextId();
-                vertex = this.vertices.get(idString);
-                if (null == vertex)
-                    done = true;
+            while (true) {
+                elementId = this.getNextId();
+                if (null == this.vertices.get(elementId)) {
+                    final TinkerVertex vertex = new TinkerVertex(elementId, this);
+                    if (this.publishVertex(vertex, journal))
+                        return vertex;
+                }
             }
         }
+    }
 
-        vertex = new TinkerVertex(idString, this);
-        this.vertices.put(vertex.getId().toString(), vertex);
-        return vertex;
-
+    /**
+     * Put the vertex into the graph unless its id is taken. Its creation record is appended while the journal holds
+     * off every other record, so no mutation of the vertex by another thread can be logged before the vertex itself.
+     */
+    private boolean publishVertex(final TinkerVertex vertex, final TinkerJournal journal) {
+        if (null == journal)
+            return null == this.vertices.putIfAbsent(vertex.getId(), vertex);
+        synchronized (journal) {
+            if (null != this.vertices.putIfAbsent(vertex.getId(), vertex))
+                return false;
+            journal.addVertex(vertex.getId());
+            return true;
+        }
     }
 
     public Vertex getVertex(final Object id) {
         if (null == id)
             throw ExceptionFactory.vertexIdCanNotBeNull();
 
-        String idString = id.toString();
-        return this.vertices.get(idString);
+        return this.vertices.get(id);
     }
 
     public Edge getEdge(final Object id) {
         if (null == id)
             throw ExceptionFactory.edgeIdCanNotBeNull();
 
-        String idString = id.toString();
-        return this.edges.get(idString);
+        return this.edges.get(id);
     }
 
 
     public Iterable<Vertex> getVertices() {
-        return new ArrayList<Vertex>(this.vertices.values());
+        return this.iterate(this.vertices.values());
     }
 
     public Iterable<Edge> getEdges() {
-        return new ArrayList<Edge>(this.edges.values());
+        return this.iterate(this.edges.values());
     }
 
     public void removeVertex(final Vertex vertex) {
-        if (!this.vertices.containsKey(vertex.getId().toString()))
+        final TinkerJournal journal = this.journal;
+        if (null == journal) {
+            this.deleteVertex(vertex);
+            return;
+        }
+        journal.lock();
+        try {
+            this.deleteVertex(vertex);
+            journal.removeVertex(vertex.getId());
+        } finally {
+            journal.unlock();
+        }
+    }
+
+    /**
+     * The removal of the incident edges is journaled, the removal of the vertex from the indices is implied.
+     */
+    private void deleteVertex(final Vertex vertex) {
+        if (null == this.vertices.remove(vertex.getId()))
             throw ExceptionFactory.vertexWithIdDoesNotExist(vertex.getId());
 
+        // the incident edges are collected first as live iterables fail once an edge is removed
+        final List<Edge> edges = new ArrayList<Edge>();
         for (Edge edge : vertex.getEdges(Direction.BOTH)) {
-            this.removeEdge(edge);
+            edges.add(edge);
         }
-
-        this.vertexKeyIndex.removeElement((TinkerVertex) vertex);
-        for (Index index : this.getIndices()) {
-            if (Vertex.class.isAssignableFrom(index.getIndexClass())) {
-                TinkerIndex<TinkerVertex> idx = (TinkerIndex<TinkerVertex>) index;
-                idx.removeElement((TinkerVertex) vertex);
-            }
+        for (Edge edge : edges) {
+            this.removeEdge(edge);
         }
 
-        this.vertices.remove(vertex.getId().toString());
+        ((TinkerVertex) vertex).removeFromIndices();
     }
 
     public Edge addEdge(final Object id, final Vertex outVertex, final Vertex inVertex, final String label) {
         if (label == null)
             throw ExceptionFactory.edgeLabelCanNotBeNull();
 
-        String idString = null;
-        Edge edge;
-        if (null != id) {
-            idString = id.toString();
-            edge = this.edges.get(idString);
-            if (null != edge) {
+        final TinkerJournal journal = this.journal;
+        if (null == journal)
+            return this.createEdge(id, outVertex, inVertex, label, null);
+        journal.lock();
+        try {
+            return this.createEdge(id, outVertex, inVertex, label, journal);
+        } finally {
+            journal.unlock();
+        }
+    }
+
+    private Edge createEdge(final Object id, final Vertex outVertex, final Vertex inVertex, final String label, final TinkerJournal journal) {
+        Object elementId = null == id ? null : this.edges.convertId(id);
+        TinkerEdge edge;
+        if (null != elementId) {
+            edge = new TinkerEdge(elementId, outVertex, inVertex, label, this);
+            if (!this.publishEdge(edge, journal)) {
                 throw ExceptionFactory.edgeWithIdAlreadyExist(id);
             }
         } else {
-            boolean done = false;
-            while (!done) {
-                idString = this.getNextId();
-                edge = this.edges.get(idString);
-                if (null == edge)
-                    done = true;
+            while (true) {
+                elementId = this.getNextId();
+                if (null == this.edges.get(elementId)) {
+                    edge = new TinkerEdge(elementId, outVertex, inVertex, label, this);
+                    if (this.publishEdge(edge, journal))
+                        break;
+                }
             }
         }
 
-        edge = new TinkerEdge(idString, outVertex, inVertex, label, this);
-        this.edges.put(edge.getId().toString(), edge);
-        final TinkerVertex out = (TinkerVertex) outVertex;
-        final TinkerVertex in = (TinkerVertex) inVertex;
-        out.addOutEdge(label, edge);
-        in.addInEdge(label, edge);
+        this.linkEdge(edge);
         return edge;
 
     }
 
+    /**
+     * Put the edge into the graph unless its id is taken, appending its creation record as publishVertex does.
+     */
+    private boolean publishEdge(final TinkerEdge edge, final TinkerJournal journal) {
+        if (null == journal)
+            return null == this.edges.putIfAbsent(edge.getId(), edge);
+        synchronized (journal) {
+            if (null != this.edges.putIfAbsent(edge.getId(), edge))
+                return false;
+            journal.addEdge(edge.getId(), edge.getVertex(Direction.OUT).getId(), edge.getVertex(Direction.IN).getId(), edge.getLabel());
+            return true;
+        }
+    }
+
+    private void linkEdge(final TinkerEdge edge) {
+        this.edgeKeyIndex.autoUpdate(StringFactory.LABEL, edge.getLabel(), null, edge);
+        ((TinkerVertex) edge.getVertex(Direction.OUT)).addOutEdge(edge.labelCode, edge);
+        ((TinkerVertex) edge.getVertex(Direction.IN)).addInEdge(edge.labelCode, edge);
+    }
+
+    /**
+     * Add a vertex that was built by a loader, which has its final identifier and properties. Nothing is journaled.
+     */
+    void loadVertex(final TinkerVertex vertex) {
+        if (null != this.vertices.putIfAbsent(vertex.getId(), vertex))
+            throw ExceptionFactory.vertexWithIdAlreadyExists(vertex.getId());
+    }
+
+    /**
+     * Add an edge that was built by a loader, which has its final identifier and properties. Nothing is journaled.
+     */
+    void loadEdge(final TinkerEdge edge) {
+        if (null != this.edges.putIfAbsent(edge.getId(), edge))
+            throw ExceptionFactory.edgeWithIdAlreadyExist(edge.getId());
+        this.linkEdge(edge);
+    }
+
     public void removeEdge(final Edge edge) {
+        final TinkerJournal journal = this.journal;
+        if (null == journal) {
+            this.deleteEdge(edge);
+            return;
+        }
+        journal.lock();
+        try {
+            this.deleteEdge(edge);
+            journal.removeEdge(edge.getId());
+        } finally {
+            journal.unlock();
+        }
+    }
+
+    private void deleteEdge(final Edge edge) {
         TinkerVertex outVertex = (TinkerVertex) edge.getVertex(Direction.OUT);
         TinkerVertex inVertex = (TinkerVertex) edge.getVertex(Direction.IN);
+        final int label = ((TinkerEdge) edge).labelCode;
         if (null != outVertex && null != outVertex.outEdges) {
-            final Set<Edge> edges = outVertex.outEdges.get(edge.getLabel());
-            if (null != edges)
-                edges.remove(edge);
+            outVertex.outEdges.remove(label, (TinkerEdge) edge);
         }
         if (null != inVertex && null != inVertex.inEdges) {
-            final Set<Edge> edges = inVertex.inEdges.get(edge.getLabel());
-            if (null != edges)
-                edges.remove(edge);
+            inVertex.inEdges.remove(label, (TinkerEdge) edge);
         }
 
 
-        this.edgeKeyIndex.removeElement((TinkerEdge) edge);
-        for (Index index : this.getIndices()) {
-            if (Edge.class.isAssignableFrom(index.getIndexClass())) {
-                TinkerIndex<TinkerEdge> idx = (TinkerIndex<TinkerEdge>) index;
-                idx.removeElement((TinkerEdge) edge);
-            }
-        }
+        ((TinkerEdge) edge).removeFromIndices();
 
-        this.edges.remove(edge.getId().toString());
+        this.edges.remove(edge.getId());
     }
 
     public GraphQuery query() {
-        return new DefaultGraphQuery(this);
+        return new TinkerGraphQuery(this);
     }
 
 
@@ -372,16 +693,38 @@ public class TinkerGraph implements IndexableGraph, KeyIndexableGraph, Serializa
     }
 
     public void clear() {
-        this.vertices.clear();
-        this.edges.clear();
-        this.indices.clear();
-        this.currentId = 0l;
-        this.vertexKeyIndex = new TinkerKeyIndex<TinkerVertex>(TinkerVertex.class, this);
-        this.edgeKeyIndex = new TinkerKeyIndex<TinkerEdge>(TinkerEdge.class, this);
+        final TinkerJournal journal = this.journal;
+        if (null != journal)
+            journal.lock();
+        try {
+            this.vertices.clear();
+            this.edges.clear();
+            this.indices.clear();
+            this.currentId = 0l;
+            this.vertexKeyIndex = new TinkerKeyIndex<TinkerVertex>(TinkerVertex.class, this);
+            this.edgeKeyIndex = new TinkerKeyIndex<TinkerEdge>(TinkerEdge.class, this);
+            if (null != journal)
+                journal.clear();
+        } finally {
+            if (null != journal)
+                journal.unlock();
+        }
     }
 
+    /**
+     * A journaled graph takes a final checkpoint, after which its mutations are no longer journaled
+     * and a later shutdown saves the whole graph.
+     */
     public void shutdown() {
-        if (null != this.directory) {
+        if (null != this.journal) {
+            try {
+                this.journal.close();
+            } catch (Exception e) {
+                throw new RuntimeException(e.getMessage(), e);
+            } finally {
+                this.journal = null;
+            }
+        } else if (null != this.directory) {
             try {
                 final TinkerStorage tinkerStorage = TinkerStorageFactory.getInstance().getTinkerStorage(this.fileType);
                 tinkerStorage.save(this, this.directory);
@@ -391,32 +734,87 @@ public class TinkerGraph implements IndexableGraph, KeyIndexableGraph, Serializa
         }
     }
 
-    private String getNextId() {
-        String idString;
+    private Object getNextId() {
+        if (this.concurrent) {
+            synchronized (this) {
+                return this.generateId();
+            }
+        } else {
+            return this.generateId();
+        }
+    }
+
+    private Object generateId() {
+        Object elementId;
         while (true) {
-            idString = this.currentId.toString();
+            elementId = this.vertices.convertId(this.currentId.longValue());
             this.currentId++;
-            if (null == this.vertices.get(idString) || null == this.edges.get(idString) || this.currentId == Long.MAX_VALUE)
+            if (null == this.vertices.get(elementId) || null == this.edges.get(elementId) || this.currentId == Long.MAX_VALUE)
                 break;
         }
-        return idString;
+        return elementId;
+    }
+
+    public IdType getIdType() {
+        return this.idType;
+    }
+
+    public IterationMode getIterationMode() {
+        return this.iterationMode;
+    }
+
+    /**
+     * Change how the iterables subsequently returned by the graph relate to its structures.
+     * Iterables returned before the change keep their semantics.
+     */
+    public void setIterationMode(final IterationMode iterationMode) {
+        if (null == iterationMode)
+            throw new IllegalArgumentException("The iteration mode can not be null");
+        this.iterationMode = iterationMode;
+    }
+
+    /**
+     * Expose a collection of the graph according to the iteration mode.
+     */
+    <E> Iterable<E> iterate(final Collection<E> collection) {
+        if (this.iterationMode == IterationMode.LIVE)
+            return Collections.unmodifiableCollection(collection);
+        else
+            return new ArrayList<E>(collection);
     }
 
     public Features getFeatures() {
         if (null == directory)
-            return FEATURES;
+            return this.idType == IdType.LONG ? LONG_ID_FEATURES : FEATURES;
         else
-            return PERSISTENT_FEATURES;
+            return this.idType == IdType.LONG ? PERSISTENT_LONG_ID_FEATURES : PERSISTENT_FEATURES;
     }
 
     protected class TinkerKeyIndex<T extends TinkerElement> extends TinkerIndex<T> implements Serializable {
 
-        private final Set<String> indexedKeys = new HashSet<String>();
-        private TinkerGraph graph;
+        private final Set<String> indexedKeys;
+        private final Set<String> sortedKeys;
+
+        /**
+         * For the sorted keys, the sets of the Comparable values ordered per class of the value.
+         * The sets are shared with the hashed index, so they are not serialized but registered again as the
+         * entries of the hashed index are restored.
+         */
+        private transient Map<String, Map<Class, NavigableMap<Object, Set<T>>>> sortedIndex;
 
         public TinkerKeyIndex(final Class<T> indexClass, final TinkerGraph graph) {
-            super(null, indexClass);
-            this.graph = graph;
+            super(null, indexClass, graph);
+            this.indexedKeys = graph.createSet();
+            this.sortedKeys = graph.createSet();
+            this.sortedIndex = graph.createMap();
+        }
+
+        void restoreEntries() {
+            this.sortedIndex = this.createMap();
+            for (final String key : this.sortedKeys) {
+                this.sortedIndex.put(key, this.<Class, NavigableMap<Object, Set<T>>>createMap());
+            }
+            super.restoreEntries();
         }
 
         public void autoUpdate(final String key, final Object newValue, final Object oldValue, final T element) {
@@ -428,21 +826,112 @@ public class TinkerGraph implements IndexableGraph, KeyIndexableGraph, Serializa
         }
 
         public void autoRemove(final String key, final Object oldValue, final T element) {
-            if (this.indexedKeys.contains(key)) {
+            // a key without a value has no entry, and the maps of a concurrent index do not accept null
+            if (null != oldValue && this.indexedKeys.contains(key)) {
                 this.remove(key, oldValue, element);
             }
         }
 
         public void createKeyIndex(final String key) {
-            if (this.indexedKeys.contains(key))
-                return;
+            this.createKeyIndex(key, KeyIndexType.HASH);
+        }
 
-            this.indexedKeys.add(key);
+        public void createKeyIndex(final String key, final KeyIndexType type) {
+            this.createKeyIndices(Collections.singletonMap(key, type));
+        }
 
-            if (TinkerVertex.class.equals(this.indexClass)) {
-                KeyIndexableGraphHelper.reIndexElements(graph, graph.getVertices(), new HashSet<String>(Arrays.asList(key)));
-            } else {
-                KeyIndexableGraphHelper.reIndexElements(graph, graph.getEdges(), new HashSet<String>(Arrays.asList(key)));
+        /**
+         * Create the key indices that do not exist yet and index the elements of the graph for all of them
+         * in a single pass.
+         */
+        public void createKeyIndices(final Map<String, KeyIndexType> keys) {
+            final List<String> created = new ArrayList<String>();
+            for (final Map.Entry<String, KeyIndexType> entry : keys.entrySet()) {
+                final String key = entry.getKey();
+                if (this.indexedKeys.contains(key))
+                    continue;
+
+                if (entry.getValue() == KeyIndexType.SORTED) {
+                    this.sortedIndex.put(key, graph.<Class, NavigableMap<Object, Set<T>>>createMap());
+                    this.sortedKeys.add(key);
+                }
+                this.indexedKeys.add(key);
+                created.add(key);
+            }
+
+            if (!created.isEmpty())
+                this.reIndexElements(created);
+        }
+
+        /**
+         * The elements are grouped by the values of the keys in partitions on the worker threads, the groups are
+         * put into the index on the calling thread. The entries follow from the properties of the elements, so
+         * nothing is journaled. The key is indexed already, so on a concurrent graph writers keep the index up to
+         * date for the elements they change while the groups are computed, and the groups are checked against them.
+         */
+        private void reIndexElements(final List<String> keys) {
+            final List<T> elements = new ArrayList<T>((Collection<T>) (TinkerVertex.class.equals(this.indexClass) ?
+                    graph.vertices.values() : graph.edges.values()));
+            try {
+                TinkerParallel.partition(elements.size(), new TinkerParallel.Partitioner<List<Map<Object, List<T>>>>() {
+                    public Callable<List<Map<Object, List<T>>>> create(final int from, final int to) {
+                        return new Callable<List<Map<Object, List<T>>>>() {
+                            public List<Map<Object, List<T>>> call() {
+                                final List<Map<Object, List<T>>> groups = new ArrayList<Map<Object, List<T>>>(keys.size());
+                                for (final String key : keys) {
+                                    final Map<Object, List<T>> group = new HashMap<Object, List<T>>();
+                                    for (int i = from; i < to; i++) {
+                                        final T element = elements.get(i);
+                                        final Object value = element.getProperty(key);
+                                        if (null == value)
+                                            continue;
+                                        List<T> withValue = group.get(value);
+                                        if (null == withValue) {
+                                            withValue = new ArrayList<T>();
+                                            group.put(value, withValue);
+                                        }
+                                        withValue.add(element);
+                                    }
+                                    groups.add(group);
+                                }
+                                return groups;
+                            }
+                        };
+                    }
+                }, new TinkerParallel.Sink<List<Map<Object, List<T>>>>() {
+                    public void accept(final List<Map<Object, List<T>>> groups) {
+                        for (int i = 0; i < keys.size(); i++) {
+                            for (final Map.Entry<Object, List<T>> group : groups.get(i).entrySet()) {
+                                if (concurrent)
+                                    putCurrentEntries(keys.get(i), group.getKey(), group.getValue());
+                                else
+                                    putEntries(keys.get(i), group.getKey(), group.getValue());
+                            }
+                        }
+                    }
+                });
+            } catch (IOException e) {
+                // the partitions do no I/O
+                throw new RuntimeException(e.getMessage(), e);
+            }
+        }
+
+        /**
+         * Put the elements that still have the value of the key into the index. The value is checked under the lock
+         * of the element, which setProperty() and removeProperty() hold while they update the index. An element
+         * that was removed from the graph in the meantime is taken out of the index again, as its removal may
+         * have missed the entry.
+         */
+        private void putCurrentEntries(final String key, final Object value, final List<T> elements) {
+            final TinkerElementMap<?> stored = TinkerVertex.class.equals(this.indexClass) ? graph.vertices : graph.edges;
+            for (final T element : elements) {
+                synchronized (element) {
+                    if (!value.equals(element.getProperty(key)))
+                        continue;
+                    this.putEntry(key, value, element);
+                }
+                if (stored.get(element.getId()) != element)
+                    this.removeEntry(key, value, element);
             }
         }
 
@@ -451,16 +940,136 @@ public class TinkerGraph implements IndexableGraph, KeyIndexableGraph, Serializa
                 return;
 
             this.indexedKeys.remove(key);
+            this.sortedKeys.remove(key);
+            this.sortedIndex.remove(key);
             this.index.remove(key);
 
         }
 
+        protected boolean recordsPostings() {
+            return false;
+        }
+
+        /**
+         * Remove the element from the entries of the values of its indexed properties. On a concurrent graph the
+         * lock of the element is held, so the values are the ones setProperty() and removeProperty() indexed.
+         */
+        public void removeElement(final T element) {
+            if (concurrent) {
+                synchronized (element) {
+                    this.removeProperties(element);
+                }
+            } else {
+                this.removeProperties(element);
+            }
+        }
+
+        private void removeProperties(final T element) {
+            for (final String key : this.indexedKeys) {
+                final Object value = element.getProperty(key);
+                if (null != value)
+                    this.removeEntry(key, value, element);
+            }
+        }
+
         public Set<String> getIndexedKeys() {
             if (null != this.indexedKeys)
                 return new HashSet<String>(this.indexedKeys);
             else
                 return Collections.emptySet();
         }
+
+        public boolean isSorted(final String key) {
+            return this.sortedKeys.contains(key);
+        }
+
+        /**
+         * Get the elements whose value for the sorted key lies between the bounds, in O(log n + k).
+         * The range is only served if the key holds no values of another class than the bounds, as a scan would
+         * compare those values too. A null bound leaves that end of the range open.
+         *
+         * @return the elements or null if the key is not sorted or the bounds can not be served by the index
+         */
+        public Iterable<T> range(final String key, final Object from, final boolean fromInclusive, final Object to, final boolean toInclusive) {
+            final Map<Class, NavigableMap<Object, Set<T>>> classes = this.sortedIndex.get(key);
+            if (null == classes || (null == from && null == to))
+                return null;
+            if ((null != from && !(from instanceof Comparable)) || (null != to && !(to instanceof Comparable)))
+                return null;
+            if (null != from && null != to && !from.getClass().equals(to.getClass()))
+                return null;
+
+            final Class boundClass = null == from ? to.getClass() : from.getClass();
+            for (final Map.Entry<Class, NavigableMap<Object, Set<T>>> entry : classes.entrySet()) {
+                if (!entry.getKey().equals(boundClass) && !entry.getValue().isEmpty())
+                    return null;
+            }
+
+            final NavigableMap<Object, Set<T>> values = classes.get(boundClass);
+            if (null == values)
+                return Collections.emptyList();
+
+            final NavigableMap<Object, Set<T>> range;
+            if (null == from) {
+                range = values.headMap(to, toInclusive);
+            } else if (null == to) {
+                range = values.tailMap(from, fromInclusive);
+            } else {
+                final int order = ((Comparable) from).compareTo(to);
+                if (order > 0 || (order == 0 && !(fromInclusive && toInclusive)))
+                    return Collections.emptyList();
+                range = values.subMap(from, fromInclusive, to, toInclusive);
+            }
+
+            if (getIterationMode() == IterationMode.LIVE) {
+                final List<Iterable<T>> sets = new ArrayList<Iterable<T>>();
+                for (final Set<T> set : range.values()) {
+                    sets.add(Collections.unmodifiableSet(set));
+                }
+                return new MultiIterable<T>(sets);
+            } else {
+                final List<T> elements = new ArrayList<T>();
+                for (final Set<T> set : range.values()) {
+                    elements.addAll(set);
+                }
+                return elements;
+            }
+        }
+
+        protected void valueAdded(final String key, final Object value, final Set<T> set) {
+            final Map<Class, NavigableMap<Object, Set<T>>> classes = this.sortedIndex.get(key);
+            if (null == classes || !(value instanceof Comparable))
+                return;
+
+            NavigableMap<Object, Set<T>> values = classes.get(value.getClass());
+            if (null == values) {
+                if (concurrent) {
+                    values = new ConcurrentSkipListMap<Object, Set<T>>();
+                    final NavigableMap<Object, Set<T>> existing = ((ConcurrentMap<Class, NavigableMap<Object, Set<T>>>) classes).putIfAbsent(value.getClass(), values);
+                    if (null != existing)
+                        values = existing;
+                } else {
+                    values = new TreeMap<Object, Set<T>>();
+                    classes.put(value.getClass(), values);
+                }
+            }
+            values.put(value, set);
+        }
+
+        protected void valueRemoved(final String key, final Object value, final Set<T> set) {
+            final Map<Class, NavigableMap<Object, Set<T>>> classes = this.sortedIndex.get(key);
+            if (null == classes || !(value instanceof Comparable))
+                return;
+
+            final NavigableMap<Object, Set<T>> values = classes.get(value.getClass());
+            if (null != values) {
+                // a set registered for the value after this one was retired must stay
+                if (concurrent)
+                    ((ConcurrentMap<Object, Set<T>>) values).remove(value, set);
+                else
+                    values.remove(value);
+            }
+        }
     }
 
 }
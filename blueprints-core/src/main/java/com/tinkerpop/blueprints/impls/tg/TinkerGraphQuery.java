@@ -0,0 +1,161 @@
+package com.tinkerpop.blueprints.impls.tg;
+
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Predicate;
+import com.tinkerpop.blueprints.Query;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.util.DefaultGraphQuery;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A GraphQuery that serves greater than, less than and interval predicates from the sorted key indices
+ * of a TinkerGraph. Lookups of equal values on any key index are preferred as they are more selective,
+ * the one with the fewest elements in its index entry is used and the entries of several lookups are intersected.
+ * The has containers of an intersection are not evaluated again, all other has containers, including those of a
+ * single lookup or a range, are evaluated against every element the index returns.
+ */
+class TinkerGraphQuery extends DefaultGraphQuery {
+
+    public TinkerGraphQuery(final TinkerGraph graph) {
+        super(graph);
+    }
+
+    @Override
+    protected AccessPath getAccessPath(final Class<? extends Element> elementClass) {
+        final TinkerGraph.TinkerKeyIndex keyIndex = Vertex.class.isAssignableFrom(elementClass) ?
+                ((TinkerGraph) this.graph).vertexKeyIndex : ((TinkerGraph) this.graph).edgeKeyIndex;
+
+        String rangeKey = null;
+        for (final HasContainer hasContainer : this.hasContainers) {
+            if (!keyIndex.getIndexedKeys().contains(hasContainer.key))
+                continue;
+            if (compare(hasContainer.predicate) == com.tinkerpop.blueprints.Compare.EQUAL)
+                return super.getAccessPath(elementClass);
+            if (null == rangeKey && isRange(hasContainer) && keyIndex.isSorted(hasContainer.key))
+                rangeKey = hasContainer.key;
+        }
+        if (null == rangeKey)
+            return super.getAccessPath(elementClass);
+
+        // narrow the range with every bound on the key
+        Object from = null, to = null;
+        boolean fromInclusive = true, toInclusive = true;
+        for (final HasContainer hasContainer : this.hasContainers) {
+            if (!hasContainer.key.equals(rangeKey) || !isRange(hasContainer))
+                continue;
+            final com.tinkerpop.blueprints.Compare compare = compare(hasContainer.predicate);
+            if (compare == com.tinkerpop.blueprints.Compare.GREATER_THAN || compare == com.tinkerpop.blueprints.Compare.GREATER_THAN_EQUAL) {
+                final boolean inclusive = compare == com.tinkerpop.blueprints.Compare.GREATER_THAN_EQUAL;
+                if (null == from || isTighter(hasContainer.value, inclusive, from, fromInclusive, 1)) {
+                    from = hasContainer.value;
+                    fromInclusive = inclusive;
+                }
+            } else {
+                final boolean inclusive = compare == com.tinkerpop.blueprints.Compare.LESS_THAN_EQUAL;
+                if (null == to || isTighter(hasContainer.value, inclusive, to, toInclusive, -1)) {
+                    to = hasContainer.value;
+                    toInclusive = inclusive;
+                }
+            }
+        }
+
+        final Iterable<?> range = keyIndex.range(rangeKey, from, fromInclusive, to, toInclusive);
+        return null == range ? super.getAccessPath(elementClass) : new AccessPath(range);
+    }
+
+    @Override
+    protected long estimateCount(final Class<? extends Element> elementClass, final HasContainer hasContainer) {
+        final TinkerGraph.TinkerKeyIndex keyIndex = Vertex.class.isAssignableFrom(elementClass) ?
+                ((TinkerGraph) this.graph).vertexKeyIndex : ((TinkerGraph) this.graph).edgeKeyIndex;
+        return keyIndex.count(hasContainer.key, hasContainer.value);
+    }
+
+    /**
+     * Iterate the elements of the smallest index entry that are in the entries of all other has containers.
+     */
+    @Override
+    protected Iterable<?> getIntersection(final Class<? extends Element> elementClass, final List<HasContainer> containers) {
+        final TinkerGraph.TinkerKeyIndex keyIndex = Vertex.class.isAssignableFrom(elementClass) ?
+                ((TinkerGraph) this.graph).vertexKeyIndex : ((TinkerGraph) this.graph).edgeKeyIndex;
+        final Iterable<?> elements = keyIndex.get(containers.get(0).key, containers.get(0).value);
+        final List<Set<?>> sets = new ArrayList<Set<?>>();
+        for (final HasContainer hasContainer : containers.subList(1, containers.size())) {
+            sets.add(keyIndex.getSet(hasContainer.key, hasContainer.value));
+        }
+        return new Iterable<Object>() {
+            public Iterator<Object> iterator() {
+                final Iterator<?> itty = elements.iterator();
+                return new Iterator<Object>() {
+                    private Object next = null;
+
+                    public boolean hasNext() {
+                        while (null == this.next && itty.hasNext()) {
+                            final Object element = itty.next();
+                            boolean contained = true;
+                            for (final Set<?> set : sets) {
+                                if (!set.contains(element)) {
+                                    contained = false;
+                                    break;
+                                }
+                            }
+                            if (contained)
+                                this.next = element;
+                        }
+                        return null != this.next;
+                    }
+
+                    public Object next() {
+                        if (!this.hasNext())
+                            throw new NoSuchElementException();
+                        final Object element = this.next;
+                        this.next = null;
+                        return element;
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    private static boolean isRange(final HasContainer hasContainer) {
+        final com.tinkerpop.blueprints.Compare compare = compare(hasContainer.predicate);
+        return null != hasContainer.value && (compare == com.tinkerpop.blueprints.Compare.GREATER_THAN
+                || compare == com.tinkerpop.blueprints.Compare.GREATER_THAN_EQUAL
+                || compare == com.tinkerpop.blueprints.Compare.LESS_THAN
+                || compare == com.tinkerpop.blueprints.Compare.LESS_THAN_EQUAL);
+    }
+
+    /**
+     * The comparison of a predicate, which is either a Compare or the deprecated Query.Compare.
+     * The simple name Compare refers to Query.Compare in a query, which inherits it from Query.
+     */
+    static com.tinkerpop.blueprints.Compare compare(final Predicate predicate) {
+        if (predicate instanceof com.tinkerpop.blueprints.Compare)
+            return (com.tinkerpop.blueprints.Compare) predicate;
+        if (predicate instanceof Query.Compare)
+            return com.tinkerpop.blueprints.Compare.valueOf(((Query.Compare) predicate).name());
+        return null;
+    }
+
+    /**
+     * Whether a bound restricts the range more than the current one.
+     * Bounds of different classes can not be compared, so the current one is kept and range() falls back to a scan
+     * if the classes of the lower and upper bound differ.
+     *
+     * @param direction 1 for lower bounds and -1 for upper bounds
+     */
+    private static boolean isTighter(final Object value, final boolean inclusive, final Object current, final boolean currentInclusive, final int direction) {
+        if (!value.getClass().equals(current.getClass()) || !(value instanceof Comparable))
+            return false;
+        final int order = ((Comparable) value).compareTo(current) * direction;
+        return order > 0 || (order == 0 && !inclusive && currentInclusive);
+    }
+}
@@ -6,26 +6,55 @@ import com.tinkerpop.blueprints.Index;
 import com.tinkerpop.blueprints.util.StringFactory;
 import com.tinkerpop.blueprints.util.WrappingCloseableIterable;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * @author Marko A. Rodriguez (http://markorodriguez.com)
  */
 class TinkerIndex<T extends Element> implements Index<T>, Serializable {
 
-    protected Map<String, Map<Object, Set<T>>> index = new HashMap<String, Map<Object, Set<T>>>();
+    /**
+     * The entries are written with java serialization as lists of elements, because hashed sets of elements would
+     * be rehashed while reading before the ids of the elements are read.
+     */
+    protected transient Map<String, Map<Object, Set<T>>> index;
     protected final String indexName;
     protected final Class<T> indexClass;
+    protected final TinkerGraph graph;
+    protected final boolean concurrent;
+
+    /**
+     * The entries read with java serialization until restoreEntries() puts them into the index.
+     */
+    private transient Map<String, Map<Object, List<T>>> readEntries;
 
     public TinkerIndex(final String indexName, final Class<T> indexClass) {
+        this(indexName, indexClass, null);
+    }
+
+    /**
+     * @param graph the graph the index belongs to, which determines whether the index must support concurrent
+     *              readers and writers and how its results are iterated
+     */
+    public TinkerIndex(final String indexName, final Class<T> indexClass, final TinkerGraph graph) {
         this.indexName = indexName;
         this.indexClass = indexClass;
+        this.graph = graph;
+        this.concurrent = null != graph && graph.concurrent;
+        this.index = this.createMap();
     }
 
     public String getIndexName() {
@@ -37,6 +66,52 @@ class TinkerIndex<T extends Element> implements Index<T>, Serializable {
     }
 
     public void put(final String key, final Object value, final T element) {
+        final TinkerJournal journal = this.getJournal();
+        if (null == journal) {
+            this.putEntry(key, value, element);
+            return;
+        }
+        journal.lock();
+        try {
+            this.putEntry(key, value, element);
+            journal.indexPut(this.indexName, key, value, element);
+        } finally {
+            journal.unlock();
+        }
+    }
+
+    void putEntry(final String key, final Object value, final T element) {
+        if (this.concurrent) {
+            this.putConcurrent(key, value, element);
+            return;
+        }
+
+        final Set<T> objects = this.getOrCreateObjects(key, value);
+        if (objects.add(element))
+            this.addPosting(key, value, element);
+
+    }
+
+    /**
+     * Put several elements with the same value of the key, looking the set of the value up once.
+     * The entries are not journaled.
+     */
+    void putEntries(final String key, final Object value, final Collection<T> elements) {
+        if (this.concurrent) {
+            for (final T element : elements) {
+                this.putConcurrent(key, value, element);
+            }
+            return;
+        }
+
+        final Set<T> objects = this.getOrCreateObjects(key, value);
+        for (final T element : elements) {
+            if (objects.add(element))
+                this.addPosting(key, value, element);
+        }
+    }
+
+    private Set<T> getOrCreateObjects(final String key, final Object value) {
         Map<Object, Set<T>> keyMap = this.index.get(key);
         if (keyMap == null) {
             keyMap = new HashMap<Object, Set<T>>();
@@ -46,9 +121,47 @@ class TinkerIndex<T extends Element> implements Index<T>, Serializable {
         if (null == objects) {
             objects = new HashSet<T>();
             keyMap.put(value, objects);
+            this.valueAdded(key, value, objects);
+        }
+        return objects;
+    }
+
+    /**
+     * A set that becomes empty is removed from its key map while holding its lock, so the element is only added
+     * once the set is known to still be the one registered for the value. The posting is recorded under the same
+     * lock, so a concurrent removal of the entry always finds it.
+     */
+    private void putConcurrent(final String key, final Object value, final T element) {
+        final ConcurrentMap<String, Map<Object, Set<T>>> index = (ConcurrentMap<String, Map<Object, Set<T>>>) this.index;
+        Map<Object, Set<T>> keyMap = index.get(key);
+        if (null == keyMap) {
+            final Map<Object, Set<T>> newKeyMap = this.createMap();
+            keyMap = index.putIfAbsent(key, newKeyMap);
+            if (null == keyMap)
+                keyMap = newKeyMap;
         }
-        objects.add(element);
 
+        final ConcurrentMap<Object, Set<T>> values = (ConcurrentMap<Object, Set<T>>) keyMap;
+        while (true) {
+            Set<T> objects = values.get(value);
+            if (null == objects) {
+                final Set<T> newObjects = this.createSet();
+                objects = values.putIfAbsent(value, newObjects);
+                if (null == objects)
+                    objects = newObjects;
+            }
+            synchronized (objects) {
+                if (values.get(value) != objects)
+                    continue;
+                if (objects.add(element)) {
+                    // only the first element of a set registers it, as a set is retired once it is empty
+                    if (objects.size() == 1)
+                        this.valueAdded(key, value, objects);
+                    this.addPosting(key, value, element);
+                }
+            }
+            return;
+        }
     }
 
     public CloseableIterable<T> get(final String key, final Object value) {
@@ -60,7 +173,7 @@ class TinkerIndex<T extends Element> implements Index<T>, Serializable {
             if (null == set)
                 return new WrappingCloseableIterable<T>((Iterable) Collections.emptyList());
             else
-                return new WrappingCloseableIterable<T>(new ArrayList<T>(set));
+                return new WrappingCloseableIterable<T>(null == this.graph ? new ArrayList<T>(set) : this.graph.iterate(set));
         }
     }
 
@@ -68,6 +181,15 @@ class TinkerIndex<T extends Element> implements Index<T>, Serializable {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Get the set of the elements with the value of the key itself rather than a copy, to test elements against it.
+     */
+    Set<T> getSet(final String key, final Object value) {
+        final Map<Object, Set<T>> keyMap = this.index.get(key);
+        final Set<T> set = null == keyMap ? null : keyMap.get(value);
+        return null == set ? Collections.<T>emptySet() : set;
+    }
+
     public long count(final String key, final Object value) {
         final Map<Object, Set<T>> keyMap = this.index.get(key);
         if (null == keyMap) {
@@ -82,20 +204,57 @@ class TinkerIndex<T extends Element> implements Index<T>, Serializable {
     }
 
     public void remove(final String key, final Object value, final T element) {
+        final TinkerJournal journal = this.getJournal();
+        if (null == journal) {
+            this.removeEntry(key, value, element);
+            return;
+        }
+        journal.lock();
+        try {
+            this.removeEntry(key, value, element);
+            journal.indexRemove(this.indexName, key, value, element);
+        } finally {
+            journal.unlock();
+        }
+    }
+
+    /**
+     * Remove the element from the entry without journaling it, as the removal follows from another mutation.
+     */
+    void removeEntry(final String key, final Object value, final T element) {
         final Map<Object, Set<T>> keyMap = this.index.get(key);
         if (null != keyMap) {
             Set<T> objects = keyMap.get(value);
             if (null != objects) {
-                objects.remove(element);
-                if (objects.size() == 0) {
-                    keyMap.remove(value);
+                if (this.concurrent) {
+                    // the posting is dropped under the lock the entry was put and its posting recorded with
+                    synchronized (objects) {
+                        if (objects.remove(element))
+                            this.removePosting(key, value, element);
+                        if (objects.size() == 0) {
+                            ((ConcurrentMap<Object, Set<T>>) keyMap).remove(value, objects);
+                            this.valueRemoved(key, value, objects);
+                        }
+                    }
+                } else {
+                    if (objects.remove(element))
+                        this.removePosting(key, value, element);
+                    if (objects.size() == 0) {
+                        keyMap.remove(value);
+                        this.valueRemoved(key, value, objects);
+                    }
                 }
             }
         }
     }
 
     public void removeElement(final T element) {
-        if (this.indexClass.isAssignableFrom(element.getClass())) {
+        if (element instanceof TinkerElement) {
+            for (final TinkerPosting posting : ((TinkerElement) element).getPostings()) {
+                if (posting.index == this)
+                    this.removeEntry(posting.key, posting.value, element);
+            }
+        } else if (this.indexClass.isAssignableFrom(element.getClass())) {
             for (Map<Object, Set<T>> map : index.values()) {
                 for (Set<T> set : map.values()) {
                     set.remove(element);
@@ -107,4 +266,105 @@ class TinkerIndex<T extends Element> implements Index<T>, Serializable {
     public String toString() {
         return StringFactory.indexString(this);
     }
+
+    /**
+     * Called when a set is registered for the value of the key. On a concurrent index the lock of the set is held.
+     */
+    protected void valueAdded(final String key, final Object value, final Set<T> set) {
+    }
+
+    /**
+     * Called when the set of the value of the key is retired because it is empty.
+     * On a concurrent index the lock of the set is held.
+     */
+    protected void valueRemoved(final String key, final Object value, final Set<T> set) {
+    }
+
+    /**
+     * Put the entries into the index and record their postings on the elements once the whole graph was read with
+     * java serialization, so that the elements are hashed with their ids in place.
+     */
+    void restoreEntries() {
+        this.index = this.createMap();
+        for (final Map.Entry<String, Map<Object, List<T>>> entry : this.readEntries.entrySet()) {
+            for (final Map.Entry<Object, List<T>> values : entry.getValue().entrySet()) {
+                this.putEntries(entry.getKey(), values.getKey(), values.getValue());
+            }
+        }
+        this.readEntries = null;
+    }
+
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        final Map<String, Map<Object, List<T>>> entries = new HashMap<String, Map<Object, List<T>>>();
+        for (final Map.Entry<String, Map<Object, Set<T>>> entry : this.index.entrySet()) {
+            final Map<Object, List<T>> values = new HashMap<Object, List<T>>();
+            for (final Map.Entry<Object, Set<T>> set : entry.getValue().entrySet()) {
+                values.put(set.getKey(), new ArrayList<T>(set.getValue()));
+            }
+            entries.put(entry.getKey(), values);
+        }
+        out.writeObject(entries);
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.readEntries = (Map<String, Map<Object, List<T>>>) in.readObject();
+    }
+
+    /**
+     * Whether the entries that hold an element are recorded on the element as postings, so that removing it only
+     * touches those entries. The entries of a key index follow from the properties of the elements, so a key index
+     * finds them without postings.
+     */
+    protected boolean recordsPostings() {
+        return true;
+    }
+
+    /**
+     * Forget the postings of the index entries of every key once the index is dropped.
+     */
+    void dropPostings() {
+        for (final Map.Entry<String, Map<Object, Set<T>>> entry : this.index.entrySet()) {
+            this.dropPostings(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Forget the postings of the index entries of a key that was dropped from the index.
+     */
+    protected void dropPostings(final String key, final Map<Object, Set<T>> keyMap) {
+        for (final Map.Entry<Object, Set<T>> entry : keyMap.entrySet()) {
+            for (final T element : entry.getValue()) {
+                if (element instanceof TinkerElement)
+                    ((TinkerElement) element).removePosting(this, key, entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * The journal of the graph if the entries of the index must be journaled. The entries of a key index follow from
+     * the properties of the elements, which are journaled themselves.
+     */
+    private TinkerJournal getJournal() {
+        return null == this.graph || null == this.indexName ? null : this.graph.journal;
+    }
+
+    private void addPosting(final String key, final Object value, final T element) {
+        if (this.recordsPostings() && element instanceof TinkerElement)
+            ((TinkerElement) element).addPosting(this, key, value);
+    }
+
+    private void removePosting(final String key, final Object value, final T element) {
+        if (this.recordsPostings() && element instanceof TinkerElement)
+            ((TinkerElement) element).removePosting(this, key, value);
+    }
+
+    protected <K, V> Map<K, V> createMap() {
+        return this.concurrent ? new ConcurrentHashMap<K, V>() : new HashMap<K, V>();
+    }
+
+    protected <E> Set<E> createSet() {
+        return this.concurrent ? Collections.newSetFromMap(new ConcurrentHashMap<E, Boolean>()) : new HashSet<E>();
+    }
 }
@@ -0,0 +1,499 @@
+package com.tinkerpop.blueprints.impls.tg;
+
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Index;
+import com.tinkerpop.blueprints.Parameter;
+import com.tinkerpop.blueprints.Vertex;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of the mutations of a persisted TinkerGraph.
+ * Every mutation is appended as a checksummed record once it was applied, so a crash loses at most the mutation
+ * in progress. A checkpoint saves a snapshot of the graph with the TinkerStorage of its file type and starts a new,
+ * empty log. On startup the last snapshot is loaded and the log is replayed on top of it, ignoring a torn record
+ * at its end.
+ * <p/>
+ * The snapshot is first saved to a checkpoint directory and only moved over the previous snapshot once it is
+ * complete, so a crash during a checkpoint leaves either the previous snapshot and its log or the new snapshot.
+ * Mutations hold the shared side of a read-write lock while they are applied and appended, and a checkpoint holds
+ * the exclusive side, so a snapshot never contains a mutation that is missing from the log it replaces.
+ */
+class TinkerJournal {
+
+    private static final Logger LOGGER = Logger.getLogger(TinkerJournal.class.getName());
+
+    static final String GRAPH_FILE_LOG = "/tinkergraph.log";
+    private static final String CHECKPOINT_DIRECTORY = "/checkpoint";
+    private static final String CHECKPOINT_COMPLETE = "complete";
+
+    private static final byte ADD_VERTEX = 1;
+    private static final byte REMOVE_VERTEX = 2;
+    private static final byte ADD_EDGE = 3;
+    private static final byte REMOVE_EDGE = 4;
+    private static final byte SET_PROPERTY = 5;
+    private static final byte REMOVE_PROPERTY = 6;
+    private static final byte CREATE_KEY_INDEX = 7;
+    private static final byte DROP_KEY_INDEX = 8;
+    private static final byte CREATE_INDEX = 9;
+    private static final byte DROP_INDEX = 10;
+    private static final byte INDEX_PUT = 11;
+    private static final byte INDEX_REMOVE = 12;
+    private static final byte CLEAR = 13;
+
+    private final TinkerGraph graph;
+    private final String directory;
+    private final TinkerStorage storage;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+    private final DataOutputStream recordOutput = new DataOutputStream(this.record);
+    private final CRC32 checksum = new CRC32();
+    private final ScheduledExecutorService checkpoints;
+
+    private DataOutputStream log;
+    private long records = 0;
+
+    /**
+     * The failure of the last background checkpoint, which the next checkpoint() or close() reports.
+     */
+    private volatile Exception checkpointFailure = null;
+
+    /**
+     * Replay the log of the graph that was loaded from the directory and continue appending to it.
+     * Without a log a checkpoint is taken first, so the snapshot in the directory is the one the log applies to.
+     *
+     * @param checkpointInterval the milliseconds between background checkpoints or 0 for none
+     */
+    public TinkerJournal(final TinkerGraph graph, final String directory, final TinkerStorage storage, final long checkpointInterval) throws IOException {
+        this.graph = graph;
+        this.directory = directory;
+        this.storage = storage;
+
+        final File file = new File(directory + GRAPH_FILE_LOG);
+        if (file.exists()) {
+            final long length = this.replay(file);
+            if (length < file.length()) {
+                final RandomAccessFile torn = new RandomAccessFile(file, "rw");
+                try {
+                    torn.setLength(length);
+                } finally {
+                    torn.close();
+                }
+            }
+            this.log = openLog(directory);
+        } else {
+            this.saveCheckpoint();
+        }
+
+        if (checkpointInterval > 0) {
+            this.checkpoints = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "tinkergraph-checkpoint");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            this.checkpoints.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    try {
+                        saveIfAppended();
+                    } catch (Exception e) {
+                        // the log is kept until a checkpoint succeeds, so the next one retries
+                        LOGGER.log(Level.WARNING, "Could not checkpoint the graph in " + directory, e);
+                        checkpointFailure = e;
+                    }
+                }
+            }, checkpointInterval, checkpointInterval, TimeUnit.MILLISECONDS);
+        } else {
+            this.checkpoints = null;
+        }
+    }
+
+    /**
+     * Finish or discard a checkpoint that was interrupted by a crash, before the snapshot in the directory is loaded.
+     */
+    public static void recover(final String directory) throws IOException {
+        final File checkpoint = new File(directory + CHECKPOINT_DIRECTORY);
+        if (!checkpoint.exists())
+            return;
+        if (new File(checkpoint, CHECKPOINT_COMPLETE).exists())
+            completeCheckpoint(directory);
+        else
+            deleteDirectory(checkpoint);
+    }
+
+    /**
+     * Hold off checkpoints while a mutation is applied and appended.
+     */
+    public void lock() {
+        this.lock.readLock().lock();
+    }
+
+    public void unlock() {
+        this.lock.readLock().unlock();
+    }
+
+    /**
+     * Save a snapshot of the graph and start a new log, unless nothing was appended since the last checkpoint.
+     *
+     * @throws IOException if the checkpoint fails or a background checkpoint failed since the last call,
+     *                     even if this checkpoint succeeded
+     */
+    public void checkpoint() throws IOException {
+        final Exception failure = this.checkpointFailure;
+        this.checkpointFailure = null;
+        this.saveIfAppended();
+        if (null != failure)
+            throw new IOException("A background checkpoint failed: " + failure.getMessage(), failure);
+    }
+
+    private void saveIfAppended() throws IOException {
+        this.lock.writeLock().lock();
+        try {
+            if (this.records > 0)
+                this.saveCheckpoint();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private void saveCheckpoint() throws IOException {
+        final File checkpoint = new File(this.directory + CHECKPOINT_DIRECTORY);
+        deleteDirectory(checkpoint);
+        if (!checkpoint.mkdirs())
+            throw new IOException("Could not create directory " + checkpoint);
+        this.storage.save(this.graph, checkpoint.getPath());
+        new FileOutputStream(new File(checkpoint, CHECKPOINT_COMPLETE)).close();
+
+        if (null != this.log)
+            this.log.close();
+        try {
+            completeCheckpoint(this.directory);
+            this.records = 0;
+        } finally {
+            this.log = openLog(this.directory);
+        }
+    }
+
+    /**
+     * Stop the background checkpoints and take a final one.
+     *
+     * @throws IOException if the final checkpoint fails or a background checkpoint failed since the last one
+     *                     that was taken with checkpoint()
+     */
+    public void close() throws IOException {
+        if (null != this.checkpoints) {
+            this.checkpoints.shutdown();
+            try {
+                this.checkpoints.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            this.checkpoint();
+        } finally {
+            this.lock.writeLock().lock();
+            try {
+                this.log.close();
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Stop the background checkpoints and close the log without a checkpoint, which leaves the directory as a crash
+     * of the process would. The journal can not append afterwards. For tests.
+     */
+    void abandon() throws IOException {
+        if (null != this.checkpoints) {
+            this.checkpoints.shutdownNow();
+            try {
+                this.checkpoints.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        this.lock.writeLock().lock();
+        try {
+            this.log.close();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public void addVertex(final Object id) {
+        this.append(ADD_VERTEX, id);
+    }
+
+    public void removeVertex(final Object id) {
+        this.append(REMOVE_VERTEX, id);
+    }
+
+    public void addEdge(final Object id, final Object outId, final Object inId, final String label) {
+        this.append(ADD_EDGE, id, outId, inId, label);
+    }
+
+    public void removeEdge(final Object id) {
+        this.append(REMOVE_EDGE, id);
+    }
+
+    public void setProperty(final Element element, final String key, final Object value) {
+        this.append(SET_PROPERTY, element instanceof Vertex, element.getId(), key, value);
+    }
+
+    public void removeProperty(final Element element, final String key) {
+        this.append(REMOVE_PROPERTY, element instanceof Vertex, element.getId(), key);
+    }
+
+    public void createKeyIndex(final Class<? extends Element> elementClass, final String key, final TinkerGraph.KeyIndexType type) {
+        this.append(CREATE_KEY_INDEX, Vertex.class.isAssignableFrom(elementClass), key, type.name());
+    }
+
+    public void dropKeyIndex(final Class<? extends Element> elementClass, final String key) {
+        this.append(DROP_KEY_INDEX, Vertex.class.isAssignableFrom(elementClass), key);
+    }
+
+    public void createIndex(final String indexName, final Class<? extends Element> indexClass) {
+        this.append(CREATE_INDEX, indexName, Vertex.class.isAssignableFrom(indexClass));
+    }
+
+    public void dropIndex(final String indexName) {
+        this.append(DROP_INDEX, indexName);
+    }
+
+    public void indexPut(final String indexName, final String key, final Object value, final Element element) {
+        this.append(INDEX_PUT, indexName, key, value, element.getId());
+    }
+
+    public void indexRemove(final String indexName, final String key, final Object value, final Element element) {
+        this.append(INDEX_REMOVE, indexName, key, value, element.getId());
+    }
+
+    public void clear() {
+        this.append(CLEAR);
+    }
+
+    /**
+     * Write the record and hand it to the operating system, so it survives a crash of the process.
+     * Records are appended under the monitor of the journal, which a caller holds to publish an element and append
+     * its creation record before any other thread can append a record of the element.
+     */
+    private synchronized void append(final byte operation, final Object... fields) {
+        try {
+            this.record.reset();
+            this.recordOutput.writeByte(operation);
+            for (final Object field : fields) {
+                TinkerCodec.writeValue(this.recordOutput, field);
+            }
+            this.checksum.reset();
+            this.checksum.update(this.record.toByteArray(), 0, this.record.size());
+
+            this.log.writeInt(this.record.size());
+            this.log.writeInt((int) this.checksum.getValue());
+            this.record.writeTo(this.log);
+            this.log.flush();
+            this.records++;
+        } catch (IOException ioe) {
+            throw new RuntimeException(ioe.getMessage(), ioe);
+        }
+    }
+
+    /**
+     * Apply the complete records of the log to the graph.
+     *
+     * @return the length of the complete records
+     */
+    private long replay(final File file) throws IOException {
+        final DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        final CRC32 checksum = new CRC32();
+        long length = 0;
+        try {
+            while (true) {
+                final byte[] record;
+                try {
+                    final int size = input.readInt();
+                    final int sum = input.readInt();
+                    if (size <= 0 || size > file.length() - length - 8)
+                        break;
+                    record = new byte[size];
+                    input.readFully(record);
+                    checksum.reset();
+                    checksum.update(record, 0, size);
+                    if ((int) checksum.getValue() != sum)
+                        break;
+                } catch (EOFException e) {
+                    break;
+                }
+                this.apply(new DataInputStream(new ByteArrayInputStream(record)));
+                length = length + 8 + record.length;
+            }
+        } finally {
+            input.close();
+        }
+        return length;
+    }
+
+    /**
+     * Records that refer to elements that no longer exist are skipped, as a concurrent graph may append a mutation
+     * of an element after the removal of the element.
+     */
+    private void apply(final DataInputStream record) throws IOException {
+        final byte operation = record.readByte();
+        switch (operation) {
+            case ADD_VERTEX: {
+                final Object id = TinkerCodec.readValue(record);
+                if (null == this.graph.getVertex(id))
+                    this.graph.addVertex(id);
+                break;
+            }
+            case REMOVE_VERTEX: {
+                final Vertex vertex = this.graph.getVertex(TinkerCodec.readValue(record));
+                if (null != vertex)
+                    this.graph.removeVertex(vertex);
+                break;
+            }
+            case ADD_EDGE: {
+                final Object id = TinkerCodec.readValue(record);
+                final Vertex out = this.graph.getVertex(TinkerCodec.readValue(record));
+                final Vertex in = this.graph.getVertex(TinkerCodec.readValue(record));
+                final String label = (String) TinkerCodec.readValue(record);
+                if (null != out && null != in && null == this.graph.getEdge(id))
+                    this.graph.addEdge(id, out, in, label);
+                break;
+            }
+            case REMOVE_EDGE: {
+                final Edge edge = this.graph.getEdge(TinkerCodec.readValue(record));
+                if (null != edge)
+                    this.graph.removeEdge(edge);
+                break;
+            }
+            case SET_PROPERTY: {
+                final Element element = this.getElement(record);
+                final String key = (String) TinkerCodec.readValue(record);
+                final Object value = TinkerCodec.readValue(record);
+                if (null != element)
+                    element.setProperty(key, value);
+                break;
+            }
+            case REMOVE_PROPERTY: {
+                final Element element = this.getElement(record);
+                final String key = (String) TinkerCodec.readValue(record);
+                if (null != element)
+                    element.removeProperty(key);
+                break;
+            }
+            case CREATE_KEY_INDEX: {
+                final Class<? extends Element> elementClass = getElementClass(record);
+                final String key = (String) TinkerCodec.readValue(record);
+                final String type = (String) TinkerCodec.readValue(record);
+                this.graph.createKeyIndex(key, elementClass, new Parameter<String, Object>(TinkerGraph.KEY_INDEX_TYPE, type));
+                break;
+            }
+            case DROP_KEY_INDEX: {
+                final Class<? extends Element> elementClass = getElementClass(record);
+                this.graph.dropKeyIndex((String) TinkerCodec.readValue(record), elementClass);
+                break;
+            }
+            case CREATE_INDEX: {
+                final String indexName = (String) TinkerCodec.readValue(record);
+                final Class<? extends Element> indexClass = getElementClass(record);
+                if (!this.graph.indices.containsKey(indexName))
+                    this.graph.createIndex(indexName, indexClass);
+                break;
+            }
+            case DROP_INDEX:
+                this.graph.dropIndex((String) TinkerCodec.readValue(record));
+                break;
+            case INDEX_PUT:
+            case INDEX_REMOVE: {
+                final TinkerIndex index = this.graph.indices.get((String) TinkerCodec.readValue(record));
+                final String key = (String) TinkerCodec.readValue(record);
+                final Object value = TinkerCodec.readValue(record);
+                final Object id = TinkerCodec.readValue(record);
+                if (null == index)
+                    break;
+                final Element element = Vertex.class.isAssignableFrom(index.getIndexClass()) ? this.graph.getVertex(id) : this.graph.getEdge(id);
+                if (null != element) {
+                    if (operation == INDEX_PUT)
+                        ((Index) index).put(key, value, element);
+                    else
+                        ((Index) index).remove(key, value, element);
+                }
+                break;
+            }
+            case CLEAR:
+                this.graph.clear();
+                break;
+            default:
+                throw new IOException("Unknown operation " + operation + " in the log");
+        }
+    }
+
+    private Element getElement(final DataInputStream record) throws IOException {
+        final boolean vertex = (Boolean) TinkerCodec.readValue(record);
+        final Object id = TinkerCodec.readValue(record);
+        return vertex ? this.graph.getVertex(id) : this.graph.getEdge(id);
+    }
+
+    private static Class<? extends Element> getElementClass(final DataInputStream record) throws IOException {
+        return (Boolean) TinkerCodec.readValue(record) ? Vertex.class : Edge.class;
+    }
+
+    private static DataOutputStream openLog(final String directory) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(directory + GRAPH_FILE_LOG, true)));
+    }
+
+    /**
+     * Move the files of a complete checkpoint over the previous snapshot and drop the log, whose records the
+     * checkpoint contains. Repeating this after a crash is harmless.
+     */
+    private static void completeCheckpoint(final String directory) throws IOException {
+        final File checkpoint = new File(directory + CHECKPOINT_DIRECTORY);
+        for (final File file : checkpoint.listFiles()) {
+            if (file.getName().equals(CHECKPOINT_COMPLETE))
+                continue;
+            final File target = new File(directory, file.getName());
+            if ((target.exists() && !target.delete()) || !file.renameTo(target))
+                throw new IOException("Could not move " + file + " to " + target);
+        }
+
+        final File log = new File(directory + GRAPH_FILE_LOG);
+        if (log.exists() && !log.delete())
+            throw new IOException("Could not delete " + log);
+        deleteDirectory(checkpoint);
+    }
+
+    private static void deleteDirectory(final File directory) {
+        if (!directory.exists())
+            return;
+        for (final File file : directory.listFiles()) {
+            if (file.isDirectory())
+                deleteDirectory(file);
+            else
+                file.delete();
+        }
+        directory.delete();
+    }
+}
@@ -0,0 +1,239 @@
+package com.tinkerpop.blueprints.impls.tg;
+
+import com.tinkerpop.blueprints.Element;
+
+import java.math.BigInteger;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A TinkerElementMap that keys elements by a primitive long.
+ * Keys and elements are held in two parallel arrays addressed by linear probing so that no entry objects,
+ * boxed keys or String identifiers are created for the stored elements.
+ * Removal shifts the following entries of a probe sequence back, which keeps lookups free of tombstones.
+ */
+class TinkerLongElementMap<T extends Element> implements TinkerElementMap<T> {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    private int size = 0;
+    private int threshold = (int) (INITIAL_CAPACITY * LOAD_FACTOR);
+    private transient int modCount = 0;
+
+    public T get(final Object id) {
+        final Long key = toLong(id);
+        if (null == key)
+            return null;
+        return this.get(key.longValue());
+    }
+
+    public T get(final long key) {
+        final int mask = this.keys.length - 1;
+        int slot = hash(key) & mask;
+        while (null != this.values[slot]) {
+            if (this.keys[slot] == key)
+                return (T) this.values[slot];
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    public void put(final Object id, final T element) {
+        final Long key = toLong(id);
+        if (null == key)
+            throw new IllegalArgumentException("Identifier is not a long: " + id);
+        this.put(key.longValue(), element);
+    }
+
+    public void put(final long key, final T element) {
+        if (null == element)
+            throw new IllegalArgumentException("Element can not be null");
+
+        final int mask = this.keys.length - 1;
+        int slot = hash(key) & mask;
+        while (null != this.values[slot]) {
+            if (this.keys[slot] == key) {
+                this.values[slot] = element;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        this.keys[slot] = key;
+        this.values[slot] = element;
+        this.modCount++;
+        if (++this.size > this.threshold)
+            this.resize(this.keys.length << 1);
+    }
+
+    public T putIfAbsent(final Object id, final T element) {
+        final Long key = toLong(id);
+        if (null == key)
+            throw new IllegalArgumentException("Identifier is not a long: " + id);
+        final T existing = this.get(key.longValue());
+        if (null == existing)
+            this.put(key.longValue(), element);
+        return existing;
+    }
+
+    public T remove(final Object id) {
+        final Long key = toLong(id);
+        if (null == key)
+            return null;
+        return this.remove(key.longValue());
+    }
+
+    public T remove(final long key) {
+        final int mask = this.keys.length - 1;
+        int slot = hash(key) & mask;
+        while (null != this.values[slot]) {
+            if (this.keys[slot] == key) {
+                final T element = (T) this.values[slot];
+                this.shiftBack(slot);
+                this.size--;
+                this.modCount++;
+                return element;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public void clear() {
+        this.keys = new long[INITIAL_CAPACITY];
+        this.values = new Object[INITIAL_CAPACITY];
+        this.threshold = (int) (INITIAL_CAPACITY * LOAD_FACTOR);
+        this.size = 0;
+        this.modCount++;
+    }
+
+    public Collection<T> values() {
+        return new AbstractCollection<T>() {
+            public Iterator<T> iterator() {
+                return new ValueIterator();
+            }
+
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    public Object convertId(final Object id) {
+        return toLong(id);
+    }
+
+    public Object convertId(final long id) {
+        return id;
+    }
+
+    /**
+     * Convert an identifier into a long if it is an integral number or a String representation of one.
+     *
+     * @param id the identifier to convert
+     * @return the long value of the identifier or null if it can not be represented as a long
+     */
+    public static Long toLong(final Object id) {
+        if (id instanceof Long) {
+            return (Long) id;
+        } else if (id instanceof Integer || id instanceof Short || id instanceof Byte) {
+            return ((Number) id).longValue();
+        } else if (id instanceof BigInteger) {
+            return ((BigInteger) id).bitLength() < 64 ? ((BigInteger) id).longValue() : null;
+        } else if (id instanceof String) {
+            try {
+                return Long.valueOf((String) id);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        } else {
+            return null;
+        }
+    }
+
+    private static int hash(final long key) {
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Close the gap left at the slot by moving back every following entry of the probe sequence
+     * that would no longer be reachable from its home slot.
+     */
+    private void shiftBack(int gap) {
+        final int mask = this.keys.length - 1;
+        int slot = (gap + 1) & mask;
+        while (null != this.values[slot]) {
+            final int home = hash(this.keys[slot]) & mask;
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                this.keys[gap] = this.keys[slot];
+                this.values[gap] = this.values[slot];
+                gap = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        this.keys[gap] = 0l;
+        this.values[gap] = null;
+    }
+
+    private void resize(final int capacity) {
+        final long[] oldKeys = this.keys;
+        final Object[] oldValues = this.values;
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.threshold = (int) (capacity * LOAD_FACTOR);
+
+        final int mask = capacity - 1;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (null != oldValues[i]) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (null != this.values[slot]) {
+                    slot = (slot + 1) & mask;
+                }
+                this.keys[slot] = oldKeys[i];
+                this.values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private class ValueIterator implements Iterator<T> {
+        private final Object[] values = TinkerLongElementMap.this.values;
+        private final int expectedModCount = modCount;
+        private int next = this.advance(0);
+
+        public boolean hasNext() {
+            return this.next < this.values.length;
+        }
+
+        public T next() {
+            if (expectedModCount != modCount)
+                throw new ConcurrentModificationException();
+            if (this.next >= this.values.length)
+                throw new NoSuchElementException();
+            final int slot = this.next;
+            this.next = this.advance(slot + 1);
+            return (T) this.values[slot];
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private int advance(int slot) {
+            while (slot < this.values.length && null == this.values[slot]) {
+                slot++;
+            }
+            return slot;
+        }
+    }
+}
@@ -8,9 +8,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * Reads TinkerGraph metadata from an InputStream.
@@ -51,8 +49,20 @@ class TinkerMetadataReader {
             reader = new DataInputStream(inputStream);
             this.graph.currentId = reader.readLong();
             readIndices(reader, this.graph);
-            readVertexKeyIndices(reader, this.graph);
-            readEdgeKeyIndices(reader, this.graph);
+            final Map<String, TinkerGraph.KeyIndexType> vertexKeys = readKeyIndices(reader);
+            final Map<String, TinkerGraph.KeyIndexType> edgeKeys = readKeyIndices(reader);
+
+            // metadata files of earlier versions end before the sorted keys
+            final int section = reader.read();
+            if (section == TinkerMetadataWriter.SORTED_KEYS) {
+                readSortedKeys(reader, vertexKeys);
+                readSortedKeys(reader, edgeKeys);
+            } else if (section != -1) {
+                throw new IOException("unknown metadata section: " + section);
+            }
+
+            this.graph.vertexKeyIndex.createKeyIndices(vertexKeys);
+            this.graph.edgeKeyIndex.createKeyIndices(edgeKeys);
         } catch (IOException e) {
             throw new RuntimeException("Could not read metadata file");
         } finally {
@@ -105,7 +115,7 @@ class TinkerMetadataReader {
                 throw new RuntimeException("Unknown index class type");
             }
 
-            TinkerIndex tinkerIndex = new TinkerIndex(indexName, indexType == 1 ? Vertex.class : Edge.class);
+            TinkerIndex tinkerIndex = new TinkerIndex(indexName, indexType == 1 ? Vertex.class : Edge.class, graph);
 
             // Read the number of items associated with this index name
             int indexItemCount = reader.readInt();
@@ -139,77 +149,44 @@ class TinkerMetadataReader {
         }
     }
 
-    private void readVertexKeyIndices(final DataInputStream reader, final TinkerGraph graph) throws IOException {
-        // Read the number of vertex key indices
+    /**
+     * The entries of a key index follow from the properties of the elements, so they are skipped and the key
+     * indices are built from the elements in one pass once their keys and types are known.
+     */
+    private Map<String, TinkerGraph.KeyIndexType> readKeyIndices(final DataInputStream reader) throws IOException {
+        final Map<String, TinkerGraph.KeyIndexType> keys = new HashMap<String, TinkerGraph.KeyIndexType>();
+
+        // Read the number of key indices
         int indexCount = reader.readInt();
 
         for (int i = 0; i < indexCount; i++) {
             // Read the key index name
-            String indexName = reader.readUTF();
-
-            graph.vertexKeyIndex.createKeyIndex(indexName);
-
-            Map<Object, Set<TinkerVertex>> items = new HashMap<Object, Set<TinkerVertex>>();
+            keys.put(reader.readUTF(), TinkerGraph.KeyIndexType.HASH);
 
             // Read the number of items associated with this key index name
             int itemCount = reader.readInt();
             for (int j = 0; j < itemCount; j++) {
-                // Read the item key
-                Object key = readTypedData(reader);
-
-                Set<TinkerVertex> vertices = new HashSet<TinkerVertex>();
+                // Skip the item key
+                readTypedData(reader);
 
-                // Read the number of vertices in this item
-                int vertexCount = reader.readInt();
-                for (int k = 0; k < vertexCount; k++) {
-                    // Read the vertex identifier
-                    Vertex v = graph.getVertex(readTypedData(reader));
-                    if (v != null) {
-                        vertices.add((TinkerVertex) v);
-                    }
+                // Skip the identifiers of the elements in this item
+                int elementCount = reader.readInt();
+                for (int k = 0; k < elementCount; k++) {
+                    readTypedData(reader);
                 }
-
-                items.put(key, vertices);
             }
-
-            graph.vertexKeyIndex.index.put(indexName, items);
         }
+
+        return keys;
     }
 
-    private void readEdgeKeyIndices(final DataInputStream reader, final TinkerGraph graph) throws IOException {
-        // Read the number of edge key indices
-        int indexCount = reader.readInt();
+    private void readSortedKeys(final DataInputStream reader, final Map<String, TinkerGraph.KeyIndexType> keys) throws IOException {
+        // Read the number of sorted key indices
+        int sortedCount = reader.readInt();
 
-        for (int i = 0; i < indexCount; i++) {
+        for (int i = 0; i < sortedCount; i++) {
             // Read the key index name
-            String indexName = reader.readUTF();
-
-            graph.edgeKeyIndex.createKeyIndex(indexName);
-
-            Map<Object, Set<TinkerEdge>> items = new HashMap<Object, Set<TinkerEdge>>();
-
-            // Read the number of items associated with this key index name
-            int itemCount = reader.readInt();
-            for (int j = 0; j < itemCount; j++) {
-                // Read the item key
-                Object key = readTypedData(reader);
-
-                Set<TinkerEdge> edges = new HashSet<TinkerEdge>();
-
-                // Read the number of edges in this item
-                int edgeCount = reader.readInt();
-                for (int k = 0; k < edgeCount; k++) {
-                    // Read the edge identifier
-                    Edge e = graph.getEdge(readTypedData(reader));
-                    if (e != null) {
-                        edges.add((TinkerEdge) e);
-                    }
-                }
-
-                items.put(key, edges);
-            }
-
-            graph.edgeKeyIndex.index.put(indexName, items);
+            keys.put(reader.readUTF(), TinkerGraph.KeyIndexType.SORTED);
         }
     }
 
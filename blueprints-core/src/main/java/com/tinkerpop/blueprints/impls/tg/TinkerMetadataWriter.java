@@ -7,6 +7,8 @@ import java.io.DataOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -16,6 +18,11 @@ import java.util.Set;
  * @author Victor Su
  */
 class TinkerMetadataWriter {
+    /**
+     * Marks the trailing section of the sorted key indices.
+     */
+    static final byte SORTED_KEYS = 1;
+
     private final TinkerGraph graph;
 
     /**
@@ -49,8 +56,11 @@ class TinkerMetadataWriter {
             writer = new DataOutputStream(outputStream);
             writer.writeLong(this.graph.currentId);
             writeIndices(writer, this.graph);
-            writeVertexKeyIndices(writer, this.graph);
-            writeEdgeKeyIndices(writer, this.graph);
+            writeKeyIndices(writer, this.graph.vertexKeyIndex);
+            writeKeyIndices(writer, this.graph.edgeKeyIndex);
+            writer.writeByte(SORTED_KEYS);
+            writeSortedKeys(writer, this.graph.vertexKeyIndex);
+            writeSortedKeys(writer, this.graph.edgeKeyIndex);
         } catch (IOException e) {
             throw new RuntimeException("Could not write metadata file");
         } finally {
@@ -141,51 +151,40 @@ class TinkerMetadataWriter {
         }
     }
 
-    private void writeVertexKeyIndices(final DataOutputStream writer, final TinkerGraph graph) throws IOException {
-        // Write the number of vertex key indices
-        writer.writeInt(graph.vertexKeyIndex.index.size());
+    /**
+     * The entries of a key index follow from the properties of the elements and are rebuilt by the reader, so only
+     * the keys are written, each with no entries, which keeps the layout of the section.
+     */
+    private void writeKeyIndices(final DataOutputStream writer, final TinkerGraph.TinkerKeyIndex<?> keyIndex) throws IOException {
+        final Set<String> keys = keyIndex.getIndexedKeys();
+
+        // Write the number of key indices
+        writer.writeInt(keys.size());
 
-        for (Map.Entry<String, Map<Object, Set<TinkerVertex>>> index : graph.vertexKeyIndex.index.entrySet()) {
+        for (String key : keys) {
             // Write the key index name
-            writer.writeUTF(index.getKey());
+            writer.writeUTF(key);
 
             // Write the number of items associated with this key index name
-            writer.writeInt(index.getValue().size());
-            for (Map.Entry<Object, Set<TinkerVertex>> item : index.getValue().entrySet()) {
-                // Write the item key
-                writeTypedData(writer, item.getKey());
-
-                // Write the number of vertices in this item
-                writer.writeInt(item.getValue().size());
-                for (Vertex v : item.getValue()) {
-                    // Write the vertex identifier
-                    writeTypedData(writer, v.getId());
-                }
-            }
+            writer.writeInt(0);
         }
     }
 
-    private void writeEdgeKeyIndices(final DataOutputStream writer, final TinkerGraph graph) throws IOException {
-        // Write the number of edge key indices
-        writer.writeInt(graph.edgeKeyIndex.index.size());
+    /**
+     * The sorted keys are written in a trailing section that metadata files of earlier versions lack.
+     */
+    private void writeSortedKeys(final DataOutputStream writer, final TinkerGraph.TinkerKeyIndex<?> keyIndex) throws IOException {
+        final List<String> sortedKeys = new ArrayList<String>();
+        for (String key : keyIndex.getIndexedKeys()) {
+            if (keyIndex.isSorted(key))
+                sortedKeys.add(key);
+        }
 
-        for (Map.Entry<String, Map<Object, Set<TinkerEdge>>> index : graph.edgeKeyIndex.index.entrySet()) {
+        // Write the number of sorted key indices
+        writer.writeInt(sortedKeys.size());
+        for (String key : sortedKeys) {
             // Write the key index name
-            writer.writeUTF(index.getKey());
-
-            // Write the number of items associated with this key index name
-            writer.writeInt(index.getValue().size());
-            for (Map.Entry<Object, Set<TinkerEdge>> item : index.getValue().entrySet()) {
-                // Write the item key
-                writeTypedData(writer, item.getKey());
-
-                // Write the number of edges in this item
-                writer.writeInt(item.getValue().size());
-                for (Edge e : item.getValue()) {
-                    // Write the edge identifier
-                    writeTypedData(writer, e.getId());
-                }
-            }
+            writer.writeUTF(key);
         }
     }
 
@@ -0,0 +1,186 @@
+package com.tinkerpop.blueprints.impls.tg;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the partitions of a key index rebuild or of a binary snapshot of a TinkerGraph, and the data and metadata
+ * writers of the other file types, on a shared pool of daemon worker threads.
+ * The workers only compute results, which are handed back to the calling thread in the order of the partitions,
+ * so the structures of a graph that is not concurrent are still only changed by a single thread.
+ */
+class TinkerParallel {
+
+    /**
+     * The number of elements in a partition. A graph with fewer elements is processed on the calling thread.
+     */
+    static final int PARTITION_SIZE = 4096;
+
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Created on first use. Idle workers terminate, so the pool holds no threads while nothing is partitioned.
+     */
+    private static ExecutorService workers = null;
+
+    private TinkerParallel() {
+    }
+
+    /**
+     * Receives the results of the partitions on the calling thread.
+     */
+    interface Sink<R> {
+        public void accept(final R result) throws IOException;
+    }
+
+    /**
+     * Supplies the tasks on the calling thread, for instance by reading them from a stream.
+     */
+    interface Tasks<R> {
+        public boolean hasNext();
+
+        public Callable<R> next() throws IOException;
+    }
+
+    /**
+     * Creates the task computing the partition of the elements from index from, inclusive, to index to, exclusive.
+     */
+    interface Partitioner<R> {
+        public Callable<R> create(final int from, final int to);
+    }
+
+    /**
+     * Split size elements into partitions of PARTITION_SIZE elements and hand their results to the sink in order.
+     */
+    public static <R> void partition(final int size, final Partitioner<R> partitioner, final Sink<R> sink) throws IOException {
+        run(new Tasks<R>() {
+            private int from = 0;
+
+            public boolean hasNext() {
+                return this.from < size;
+            }
+
+            public Callable<R> next() {
+                final int to = Math.min(size, this.from + PARTITION_SIZE);
+                final Callable<R> partition = partitioner.create(this.from, to);
+                this.from = to;
+                return partition;
+            }
+        }, sink);
+    }
+
+    /**
+     * Compute independent tasks on the workers and wait for all of them.
+     */
+    public static void all(final Callable<?>... tasks) throws IOException {
+        run(new Tasks<Object>() {
+            private int next = 0;
+
+            public boolean hasNext() {
+                return this.next < tasks.length;
+            }
+
+            public Callable<Object> next() {
+                return (Callable<Object>) tasks[this.next++];
+            }
+        }, new Sink<Object>() {
+            public void accept(final Object result) {
+            }
+        });
+    }
+
+    /**
+     * Compute the tasks on the workers and hand their results to the sink in the order of the tasks.
+     * The tasks are taken on the calling thread, at most two per worker ahead of the sink, so tasks that are read
+     * from a stream are not read far ahead of their consumption.
+     * A single task, or the tasks of a worker itself, are computed on the calling thread.
+     */
+    public static <R> void run(final Tasks<R> tasks, final Sink<R> sink) throws IOException {
+        if (!tasks.hasNext())
+            return;
+        final Callable<R> first = tasks.next();
+        if (!tasks.hasNext() || THREADS == 1 || Thread.currentThread() instanceof Worker) {
+            sink.accept(call(first));
+            while (tasks.hasNext()) {
+                sink.accept(call(tasks.next()));
+            }
+            return;
+        }
+
+        final ExecutorService workers = getWorkers();
+        final LinkedList<Future<R>> pending = new LinkedList<Future<R>>();
+        try {
+            pending.add(workers.submit(first));
+            while (!pending.isEmpty()) {
+                while (tasks.hasNext() && pending.size() < THREADS * 2) {
+                    pending.add(workers.submit(tasks.next()));
+                }
+                sink.accept(get(pending.removeFirst()));
+            }
+        } finally {
+            // the tasks of a failed run are not needed anymore
+            for (final Future<R> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static synchronized ExecutorService getWorkers() {
+        if (null == workers) {
+            final ThreadPoolExecutor pool = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                public Thread newThread(final Runnable runnable) {
+                    return new Worker(runnable);
+                }
+            });
+            pool.allowCoreThreadTimeOut(true);
+            workers = pool;
+        }
+        return workers;
+    }
+
+    private static class Worker extends Thread {
+        public Worker(final Runnable runnable) {
+            super(runnable, "tinkergraph-worker");
+            this.setDaemon(true);
+        }
+    }
+
+    private static <R> R call(final Callable<R> task) throws IOException {
+        try {
+            return task.call();
+        } catch (IOException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    private static <R> R get(final Future<R> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e.getMessage(), e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new RuntimeException(cause.getMessage(), cause);
+        }
+    }
+}
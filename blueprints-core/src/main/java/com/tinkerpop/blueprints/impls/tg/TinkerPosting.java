@@ -0,0 +1,24 @@
+package com.tinkerpop.blueprints.impls.tg;
+
+import java.io.Serializable;
+
+/**
+ * An entry of a manual TinkerIndex that holds an element, recorded on the element so that removing it only
+ * touches the index entries it is held in.
+ */
+class TinkerPosting implements Serializable {
+
+    final TinkerIndex index;
+    final String key;
+    final Object value;
+
+    public TinkerPosting(final TinkerIndex index, final String key, final Object value) {
+        this.index = index;
+        this.key = key;
+        this.value = value;
+    }
+
+    public boolean isFor(final TinkerIndex index, final String key, final Object value) {
+        return this.index == index && this.key.equals(key) && this.value.equals(value);
+    }
+}
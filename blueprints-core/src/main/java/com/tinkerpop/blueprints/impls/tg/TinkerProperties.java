@@ -0,0 +1,103 @@
+package com.tinkerpop.blueprints.impls.tg;
+
+import java.io.Serializable;
+
+/**
+ * The properties of a TinkerElement held as parallel arrays of dictionary codes and values.
+ * Elements have few properties, so a sequential scan comparing int codes beats hashing the key
+ * and needs no entry objects.
+ */
+class TinkerProperties implements Serializable {
+
+    private static final int[] NO_KEYS = new int[0];
+    private static final Object[] NO_VALUES = new Object[0];
+
+    private int[] keys = NO_KEYS;
+    private Object[] values = NO_VALUES;
+    private int size = 0;
+
+    public Object get(final int key) {
+        for (int i = 0; i < this.size; i++) {
+            if (this.keys[i] == key)
+                return this.values[i];
+        }
+        return null;
+    }
+
+    /**
+     * @return the value previously held for the key or null if there was none
+     */
+    public Object put(final int key, final Object value) {
+        for (int i = 0; i < this.size; i++) {
+            if (this.keys[i] == key) {
+                final Object oldValue = this.values[i];
+                this.values[i] = value;
+                return oldValue;
+            }
+        }
+
+        if (this.size == this.keys.length) {
+            final int capacity = Math.max(2, this.size + (this.size >> 1) + 1);
+            final int[] keys = new int[capacity];
+            final Object[] values = new Object[capacity];
+            System.arraycopy(this.keys, 0, keys, 0, this.size);
+            System.arraycopy(this.values, 0, values, 0, this.size);
+            this.keys = keys;
+            this.values = values;
+        }
+        this.keys[this.size] = key;
+        this.values[this.size] = value;
+        this.size++;
+        return null;
+    }
+
+    /**
+     * @return the value removed or null if the key had no value
+     */
+    public Object remove(final int key) {
+        for (int i = 0; i < this.size; i++) {
+            if (this.keys[i] == key) {
+                final Object oldValue = this.values[i];
+                this.size--;
+                this.keys[i] = this.keys[this.size];
+                this.values[i] = this.values[this.size];
+                this.values[this.size] = null;
+                return oldValue;
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * The key at a position from 0 to size - 1.
+     */
+    public int keyAt(final int index) {
+        return this.keys[index];
+    }
+
+    /**
+     * The value at a position from 0 to size - 1.
+     */
+    public Object valueAt(final int index) {
+        return this.values[index];
+    }
+
+    /**
+     * Copy the properties so the copy can be changed and then published in place of the original.
+     */
+    public TinkerProperties copy() {
+        final TinkerProperties copy = new TinkerProperties();
+        if (this.size > 0) {
+            copy.keys = new int[this.size + 1];
+            copy.values = new Object[this.size + 1];
+            System.arraycopy(this.keys, 0, copy.keys, 0, this.size);
+            System.arraycopy(this.values, 0, copy.values, 0, this.size);
+            copy.size = this.size;
+        }
+        return copy;
+    }
+}
@@ -8,7 +8,10 @@ import java.io.IOException;
  * @author Stephen Mallette (http://stephen.genoprime.com)
  */
 interface TinkerStorage {
-    public TinkerGraph load(final String directory) throws IOException;
+    /**
+     * Load the data persisted in the directory into the provided, empty graph.
+     */
+    public void load(final TinkerGraph graph, final String directory) throws IOException;
 
     public void save(final TinkerGraph graph, final String directory) throws IOException;
 }
@@ -12,9 +12,11 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.util.concurrent.Callable;
 
 /**
  * Constructs TinkerFile instances to load and save TinkerGraph instances.
@@ -45,6 +47,8 @@ class TinkerStorageFactory {
                 return new GraphSONTinkerStorage();
             case JAVA:
                 return new JavaTinkerStorage();
+            case BINARY:
+                return new BinaryTinkerStorage();
         }
 
         throw new RuntimeException(String.format("File Type [%s] is not configurable by the factory", fileType));
@@ -84,21 +88,18 @@ class TinkerStorageFactory {
         public abstract void loadGraphData(final TinkerGraph graph, final String directory) throws IOException;
 
         @Override
-        public TinkerGraph load(final String directory) throws IOException {
+        public void load(final TinkerGraph graph, final String directory) throws IOException {
             final File dir = new File(directory);
             if (!dir.exists()) {
                 throw new RuntimeException("Directory " + directory + " does not exist");
             }
 
-            final TinkerGraph graph = new TinkerGraph();
             loadGraphData(graph, directory);
 
             final File file = new File(directory + GRAPH_FILE_METADATA);
             if (file.exists()) {
                 TinkerMetadataReader.load(graph, new FileInputStream(directory + GRAPH_FILE_METADATA));
             }
-
-            return graph;
         }
 
         @Override
@@ -110,7 +111,21 @@ class TinkerStorageFactory {
                 }
             }
 
-            saveGraphData(graph, directory);
+            // the data and the metadata only read the graph, so they are written at the same time
+            TinkerParallel.all(new Callable<Object>() {
+                public Object call() throws IOException {
+                    saveGraphData(graph, directory);
+                    return null;
+                }
+            }, new Callable<Object>() {
+                public Object call() throws IOException {
+                    saveMetadata(graph, directory);
+                    return null;
+                }
+            });
+        }
+
+        private void saveMetadata(final TinkerGraph graph, final String directory) throws IOException {
             deleteFile(directory + GRAPH_FILE_METADATA);
 
             final OutputStream os = new FileOutputStream(directory + GRAPH_FILE_METADATA);
@@ -209,11 +224,11 @@ class TinkerStorageFactory {
         private static final String GRAPH_FILE_JAVA = "/tinkergraph.dat";
 
         @Override
-        public TinkerGraph load(final String directory) throws IOException {
+        public void load(final TinkerGraph graph, final String directory) throws IOException {
             final ObjectInputStream input = new ObjectInputStream(new FileInputStream(directory + GRAPH_FILE_JAVA));
 
             try {
-                return (TinkerGraph) input.readObject();
+                graph.copyStructures((TinkerGraph) input.readObject());
             } catch (ClassNotFoundException cnfe) {
                 throw new RuntimeException(cnfe);
             } finally {
@@ -234,4 +249,32 @@ class TinkerStorageFactory {
             }
         }
     }
+
+    /**
+     * Reads and writes a TinkerGraph with its indices in the binary layout of TinkerBinaryWriter.
+     */
+    class BinaryTinkerStorage extends AbstractTinkerStorage {
+        private static final String GRAPH_FILE_BINARY = "/tinkergraph.bin";
+
+        @Override
+        public void load(final TinkerGraph graph, final String directory) throws IOException {
+            final InputStream is = new FileInputStream(directory + GRAPH_FILE_BINARY);
+            try {
+                TinkerBinaryReader.load(graph, is);
+            } finally {
+                is.close();
+            }
+        }
+
+        @Override
+        public void save(final TinkerGraph graph, final String directory) throws IOException {
+            deleteFile(directory + GRAPH_FILE_BINARY);
+            final OutputStream os = new FileOutputStream(directory + GRAPH_FILE_BINARY);
+            try {
+                TinkerBinaryWriter.save(graph, os);
+            } finally {
+                os.close();
+            }
+        }
+    }
 }
@@ -0,0 +1,55 @@
+package com.tinkerpop.blueprints.impls.tg;
+
+import com.tinkerpop.blueprints.Element;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A TinkerElementMap that keys elements by the String representation of their identifier.
+ */
+class TinkerStringElementMap<T extends Element> implements TinkerElementMap<T> {
+
+    private final Map<String, T> elements = new HashMap<String, T>();
+
+    public T get(final Object id) {
+        return this.elements.get(id.toString());
+    }
+
+    public void put(final Object id, final T element) {
+        this.elements.put(id.toString(), element);
+    }
+
+    public T putIfAbsent(final Object id, final T element) {
+        final String key = id.toString();
+        final T existing = this.elements.get(key);
+        if (null == existing)
+            this.elements.put(key, element);
+        return existing;
+    }
+
+    public T remove(final Object id) {
+        return this.elements.remove(id.toString());
+    }
+
+    public int size() {
+        return this.elements.size();
+    }
+
+    public void clear() {
+        this.elements.clear();
+    }
+
+    public Collection<T> values() {
+        return this.elements.values();
+    }
+
+    public Object convertId(final Object id) {
+        return id.toString();
+    }
+
+    public Object convertId(final long id) {
+        return String.valueOf(id);
+    }
+}
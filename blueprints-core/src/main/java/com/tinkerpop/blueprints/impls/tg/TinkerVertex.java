@@ -10,26 +10,20 @@ import com.tinkerpop.blueprints.util.StringFactory;
 import com.tinkerpop.blueprints.util.VerticesFromEdgesIterable;
 
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 /**
  * @author Marko A. Rodriguez (http://markorodriguez.com)
  */
 class TinkerVertex extends TinkerElement implements Vertex, Serializable {
 
-    protected Map<String, Set<Edge>> outEdges = new HashMap<String, Set<Edge>>();
-    protected Map<String, Set<Edge>> inEdges = new HashMap<String, Set<Edge>>();
+    protected TinkerAdjacency outEdges;
+    protected TinkerAdjacency inEdges;
 
-    protected TinkerVertex(final String id, final TinkerGraph graph) {
+    protected TinkerVertex(final Object id, final TinkerGraph graph) {
         super(id, graph);
+        this.outEdges = new TinkerAdjacency(graph.concurrent);
+        this.inEdges = new TinkerAdjacency(graph.concurrent);
     }
 
     public Iterable<Edge> getEdges(final Direction direction, final String... labels) {
@@ -47,55 +41,22 @@ class TinkerVertex extends TinkerElement implements Vertex, Serializable {
     }
 
     private Iterable<Edge> getInEdges(final String... labels) {
-        if (labels.length == 0) {
-            final List<Edge> totalEdges = new ArrayList<Edge>();
-            for (final Collection<Edge> edges : this.inEdges.values()) {
-                totalEdges.addAll(edges);
-            }
-            return totalEdges;
-        } else if (labels.length == 1) {
-            final Set<Edge> edges = this.inEdges.get(labels[0]);
-            if (null == edges) {
-                return Collections.emptyList();
-            } else {
-                return new ArrayList<Edge>(edges);
-            }
-        } else {
-            final List<Edge> totalEdges = new ArrayList<Edge>();
-            for (final String label : labels) {
-                final Set<Edge> edges = this.inEdges.get(label);
-                if (null != edges) {
-                    totalEdges.addAll(edges);
-                }
-            }
-            return totalEdges;
-        }
+        return this.inEdges.getEdges(this.graph.getIterationMode() == TinkerGraph.IterationMode.LIVE, this.encode(labels));
     }
 
     private Iterable<Edge> getOutEdges(final String... labels) {
-        if (labels.length == 0) {
-            final List<Edge> totalEdges = new ArrayList<Edge>();
-            for (final Collection<Edge> edges : this.outEdges.values()) {
-                totalEdges.addAll(edges);
-            }
-            return totalEdges;
-        } else if (labels.length == 1) {
-            final Set<Edge> edges = this.outEdges.get(labels[0]);
-            if (null == edges) {
-                return Collections.emptyList();
-            } else {
-                return new ArrayList<Edge>(edges);
-            }
-        } else {
-            final List<Edge> totalEdges = new ArrayList<Edge>();
-            for (final String label : labels) {
-                final Set<Edge> edges = this.outEdges.get(label);
-                if (null != edges) {
-                    totalEdges.addAll(edges);
-                }
-            }
-            return totalEdges;
+        return this.outEdges.getEdges(this.graph.getIterationMode() == TinkerGraph.IterationMode.LIVE, this.encode(labels));
+    }
+
+    /**
+     * Labels that are not in the dictionary are encoded as UNKNOWN, which no edge carries.
+     */
+    private int[] encode(final String... labels) {
+        final int[] codes = new int[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            codes[i] = this.graph.dictionary.lookup(labels[i]);
         }
+        return codes;
     }
 
     public VertexQuery query() {
@@ -110,21 +71,11 @@ class TinkerVertex extends TinkerElement implements Vertex, Serializable {
         return this.graph.addEdge(null, this, vertex, label);
     }
 
-    protected void addOutEdge(final String label, final Edge edge) {
-        Set<Edge> edges = this.outEdges.get(label);
-        if (null == edges) {
-            edges = new HashSet<Edge>();
-            this.outEdges.put(label, edges);
-        }
-        edges.add(edge);
+    protected void addOutEdge(final int label, final TinkerEdge edge) {
+        this.outEdges.add(label, edge);
     }
 
-    protected void addInEdge(final String label, final Edge edge) {
-        Set<Edge> edges = this.inEdges.get(label);
-        if (null == edges) {
-            edges = new HashSet<Edge>();
-            this.inEdges.put(label, edges);
-        }
-        edges.add(edge);
+    protected void addInEdge(final int label, final TinkerEdge edge) {
+        this.inEdges.add(label, edge);
     }
 }
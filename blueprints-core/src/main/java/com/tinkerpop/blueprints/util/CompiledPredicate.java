@@ -0,0 +1,225 @@
+package com.tinkerpop.blueprints.util;
+
+import com.tinkerpop.blueprints.Compare;
+import com.tinkerpop.blueprints.Contains;
+import com.tinkerpop.blueprints.Predicate;
+import com.tinkerpop.blueprints.Query;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A predicate bound to the value it compares against, specialized once for the kind of predicate and the class of
+ * the value so that evaluating it against many elements does not dispatch on either again.
+ * It evaluates exactly as predicate.evaluate(first, value) does.
+ */
+abstract class CompiledPredicate {
+
+    public abstract boolean evaluate(final Object first);
+
+    public static CompiledPredicate compile(final Predicate predicate, final Object value) {
+        final Compare compare = predicate instanceof Query.Compare ?
+                Compare.valueOf(((Query.Compare) predicate).name()) : predicate instanceof Compare ? (Compare) predicate : null;
+        if (null != compare) {
+            switch (compare) {
+                case EQUAL:
+                    return null == value ? IS_NULL : new Equal(value, true);
+                case NOT_EQUAL:
+                    return null == value ? IS_NOT_NULL : new Equal(value, false);
+                default:
+                    return null == value ? FALSE : range(compare, value);
+            }
+        }
+        if ((predicate == Contains.IN || predicate == Contains.NOT_IN) && value instanceof Collection)
+            return new In((Collection) value, predicate == Contains.IN);
+        return new Generic(predicate, value);
+    }
+
+    private static final CompiledPredicate IS_NULL = new CompiledPredicate() {
+        public boolean evaluate(final Object first) {
+            return null == first;
+        }
+    };
+
+    private static final CompiledPredicate IS_NOT_NULL = new CompiledPredicate() {
+        public boolean evaluate(final Object first) {
+            return null != first;
+        }
+    };
+
+    private static final CompiledPredicate FALSE = new CompiledPredicate() {
+        public boolean evaluate(final Object first) {
+            return false;
+        }
+    };
+
+    private static class Equal extends CompiledPredicate {
+        private final Object value;
+        private final boolean equal;
+
+        public Equal(final Object value, final boolean equal) {
+            this.value = value;
+            this.equal = equal;
+        }
+
+        public boolean evaluate(final Object first) {
+            return null == first ? !this.equal : first.equals(this.value) == this.equal;
+        }
+    }
+
+    /**
+     * Contains.IN and NOT_IN against a hash set of the collection, unless the collection is a set already.
+     */
+    private static class In extends CompiledPredicate {
+        private final Collection values;
+        private final boolean in;
+
+        public In(final Collection values, final boolean in) {
+            this.values = values instanceof Set ? values : new HashSet<Object>(values);
+            this.in = in;
+        }
+
+        public boolean evaluate(final Object first) {
+            return this.values.contains(first) == this.in;
+        }
+    }
+
+    private static class Generic extends CompiledPredicate {
+        private final Predicate predicate;
+        private final Object value;
+
+        public Generic(final Predicate predicate, final Object value) {
+            this.predicate = predicate;
+            this.value = value;
+        }
+
+        public boolean evaluate(final Object first) {
+            return this.predicate.evaluate(first, this.value);
+        }
+    }
+
+    private static CompiledPredicate range(final Compare compare, final Object value) {
+        // the bounds of the order of a comparison that pass
+        final int min, max;
+        switch (compare) {
+            case GREATER_THAN:
+                min = 1;
+                max = 1;
+                break;
+            case GREATER_THAN_EQUAL:
+                min = 0;
+                max = 1;
+                break;
+            case LESS_THAN:
+                min = -1;
+                max = -1;
+                break;
+            default:
+                min = -1;
+                max = 0;
+        }
+        if (value instanceof Integer)
+            return new IntegerRange(value, min, max);
+        if (value instanceof Long)
+            return new LongRange(value, min, max);
+        if (value instanceof Double)
+            return new DoubleRange(value, min, max);
+        if (value instanceof String)
+            return new StringRange(value, min, max);
+        return new Range(value, min, max);
+    }
+
+    /**
+     * A comparison that passes if the sign of first.compareTo(value) is within [min, max].
+     * Values of the class of the bound are compared without a call through Comparable.
+     */
+    private static class Range extends CompiledPredicate {
+        protected final Object value;
+        private final int min;
+        private final int max;
+
+        public Range(final Object value, final int min, final int max) {
+            this.value = value;
+            this.min = min;
+            this.max = max;
+        }
+
+        public boolean evaluate(final Object first) {
+            if (null == first)
+                return false;
+            final int order = this.compareTo(first);
+            return order >= this.min && order <= this.max;
+        }
+
+        protected int compareTo(final Object first) {
+            return sign(((Comparable) first).compareTo(this.value));
+        }
+
+        protected static int sign(final int order) {
+            return order > 0 ? 1 : (order < 0 ? -1 : 0);
+        }
+    }
+
+    private static class IntegerRange extends Range {
+        private final int bound;
+
+        public IntegerRange(final Object value, final int min, final int max) {
+            super(value, min, max);
+            this.bound = (Integer) value;
+        }
+
+        protected int compareTo(final Object first) {
+            if (!(first instanceof Integer))
+                return super.compareTo(first);
+            final int i = (Integer) first;
+            return i > this.bound ? 1 : (i < this.bound ? -1 : 0);
+        }
+    }
+
+    private static class LongRange extends Range {
+        private final long bound;
+
+        public LongRange(final Object value, final int min, final int max) {
+            super(value, min, max);
+            this.bound = (Long) value;
+        }
+
+        protected int compareTo(final Object first) {
+            if (!(first instanceof Long))
+                return super.compareTo(first);
+            final long l = (Long) first;
+            return l > this.bound ? 1 : (l < this.bound ? -1 : 0);
+        }
+    }
+
+    private static class DoubleRange extends Range {
+        private final double bound;
+
+        public DoubleRange(final Object value, final int min, final int max) {
+            super(value, min, max);
+            this.bound = (Double) value;
+        }
+
+        protected int compareTo(final Object first) {
+            if (!(first instanceof Double))
+                return super.compareTo(first);
+            return Double.compare((Double) first, this.bound);
+        }
+    }
+
+    private static class StringRange extends Range {
+        private final String bound;
+
+        public StringRange(final Object value, final int min, final int max) {
+            super(value, min, max);
+            this.bound = (String) value;
+        }
+
+        protected int compareTo(final Object first) {
+            if (!(first instanceof String))
+                return super.compareTo(first);
+            return sign(((String) first).compareTo(this.bound));
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.tinkerpop.blueprints.util;
 
+import com.tinkerpop.blueprints.Contains;
 import com.tinkerpop.blueprints.Predicate;
 import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.Element;
@@ -8,8 +9,13 @@ import com.tinkerpop.blueprints.GraphQuery;
 import com.tinkerpop.blueprints.KeyIndexableGraph;
 import com.tinkerpop.blueprints.Vertex;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
-import java.util.NoSuchElementException;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -77,97 +83,207 @@ public class DefaultGraphQuery extends DefaultQuery implements GraphQuery {
     protected class DefaultGraphQueryIterable<T extends Element> implements Iterable<T> {
 
         private Iterable<T> iterable = null;
+        private final List<HasContainer> filters;
 
         public DefaultGraphQueryIterable(final boolean forVertex) {
-            this.iterable = (Iterable<T>) getElementIterable(forVertex ? Vertex.class : Edge.class);
+            final AccessPath path = getAccessPath(forVertex ? Vertex.class : Edge.class);
+            this.iterable = (Iterable<T>) path.elements;
+            this.filters = getFilters(path.consumed);
         }
 
         public Iterator<T> iterator() {
-            return new Iterator<T>() {
-                T nextElement = null;
-                final Iterator<T> itty = iterable.iterator();
-                long count = 0;
-
-                public boolean hasNext() {
-                    if (null != this.nextElement) {
-                        return true;
-                    } else {
-                        return this.loadNext();
-                    }
-                }
-
-                public T next() {
-                    while (true) {
-                        if (this.nextElement != null) {
-                            final T temp = this.nextElement;
-                            this.nextElement = null;
-                            return temp;
-                        }
-
-                        if (!this.loadNext())
-                            throw new NoSuchElementException();
-                    }
-                }
-
-                public void remove() {
-                    throw new UnsupportedOperationException();
-                }
-
-                private boolean loadNext() {
-                    this.nextElement = null;
-                    if (this.count > limit) return false;
-                    while (this.itty.hasNext()) {
-                        final T element = this.itty.next();
-                        boolean filter = false;
-
-                        for (final HasContainer hasContainer : hasContainers) {
-                            if (!hasContainer.isLegal(element)) {
-                                filter = true;
-                                break;
-                            }
-                        }
-
-                        if (!filter) {
-                            if (++this.count <= limit) {
-                                this.nextElement = element;
-                                return true;
-                            }
-                        }
-
-                    }
-                    return false;
-                }
-            };
+            return new FilteredIterator<T>(this.iterable.iterator(), this.filters, limit);
         }
 
-        private Iterable<?> getElementIterable(final Class<? extends Element> elementClass) {
-            if (graph instanceof KeyIndexableGraph) {
-                final Set<String> keys = getIndexedKeys(elementClass);
-                HasContainer container = null;
-                for (final HasContainer hasContainer : hasContainers) {
-                    if (hasContainer.predicate.equals(com.tinkerpop.blueprints.Compare.EQUAL) && keys.contains(hasContainer.key)) {
-                        container = hasContainer;
-                        break;
-                    }
-                }
-                if (container != null) {
-                    if (Vertex.class.isAssignableFrom(elementClass))
-                        return graph.getVertices(container.key, container.value);
-                    else
-                        return graph.getEdges(container.key, container.value);
-                }
+        /**
+         * @deprecated the key index is chosen by {@link DefaultGraphQuery#getAccessPath(Class)}, which does not call
+         * this method, override {@link DefaultGraphQuery#getIndexedKeys(Class)} instead
+         */
+        @Deprecated
+        protected Set<String> getIndexedKeys(final Class<? extends Element> elementClass) {
+            return DefaultGraphQuery.this.getIndexedKeys(elementClass);
+        }
+    }
+
+    /**
+     * The elements an access path reads together with the has containers they are known to match,
+     * which are not evaluated against them again.
+     */
+    protected static class AccessPath {
+        public final Iterable<?> elements;
+        public final List<HasContainer> consumed;
+
+        public AccessPath(final Iterable<?> elements, final List<HasContainer> consumed) {
+            this.elements = elements;
+            this.consumed = consumed;
+        }
+
+        public AccessPath(final Iterable<?> elements) {
+            this(elements, Collections.<HasContainer>emptyList());
+        }
+    }
+
+    /**
+     * Get the elements the has containers are evaluated against, using a key index when one applies.
+     * Graphs with richer indices can override this to narrow the elements further.
+     *
+     * @param elementClass the class of the elements queried, Vertex or Edge
+     * @return the elements that may match and the has containers they match already
+     */
+    protected AccessPath getAccessPath(final Class<? extends Element> elementClass) {
+        if (graph instanceof KeyIndexableGraph) {
+            final List<HasContainer> containers = getIndexContainers(elementClass);
+            if (containers.size() > 1) {
+                final Iterable<?> intersection = getIntersection(elementClass, containers);
+                if (null != intersection)
+                    return new AccessPath(intersection, containers);
             }
+            if (!containers.isEmpty()) {
+                final HasContainer container = containers.get(0);
+                if (Vertex.class.isAssignableFrom(elementClass))
+                    return new AccessPath(graph.getVertices(container.key, container.value));
+                else
+                    return new AccessPath(graph.getEdges(container.key, container.value));
+            }
+        }
 
-            if (Vertex.class.isAssignableFrom(elementClass))
-                return graph.getVertices();
-            else
-                return graph.getEdges();
+        if (Vertex.class.isAssignableFrom(elementClass))
+            return new AccessPath(graph.getVertices());
+        else
+            return new AccessPath(graph.getEdges());
+    }
+
+    /**
+     * Get the equality has containers on indexed keys ordered by the number of elements their index lookup is
+     * estimated to return, fewest first. Lookups with the same estimate keep the order they were listed in.
+     * If a lookup is estimated to return no elements only its has container is returned.
+     *
+     * @param elementClass the class of the elements queried, Vertex or Edge
+     * @return the has containers that can be answered by a key index, possibly none
+     */
+    protected List<HasContainer> getIndexContainers(final Class<? extends Element> elementClass) {
+        final Set<String> keys = getIndexedKeys(elementClass);
+        final List<HasContainer> containers = new ArrayList<HasContainer>();
+        final Map<HasContainer, Long> counts = new IdentityHashMap<HasContainer, Long>();
+        for (final HasContainer hasContainer : hasContainers) {
+            if (!isEqual(hasContainer.predicate) || null == hasContainer.value || !keys.contains(hasContainer.key))
+                continue;
+            final long count = estimateCount(elementClass, hasContainer);
+            if (0 == count)
+                return Collections.singletonList(hasContainer);
+            containers.add(hasContainer);
+            counts.put(hasContainer, count);
         }
+        Collections.sort(containers, new Comparator<HasContainer>() {
+            public int compare(final HasContainer a, final HasContainer b) {
+                final long countA = counts.get(a), countB = counts.get(b);
+                return countA < countB ? -1 : (countA == countB ? 0 : 1);
+            }
+        });
+        return containers;
+    }
 
-        protected Set<String> getIndexedKeys(final Class<? extends Element> elementClass) {
-          return ((KeyIndexableGraph) graph).getIndexedKeys(elementClass);
+    /**
+     * Get the elements that match all of the equality has containers by intersecting the ids of their key index
+     * lookups, so that only the elements of the intersection are read. Graphs that can look up the ids of an index
+     * entry without reading its elements override this, by default null is returned and a single index is looked up.
+     * The has containers of an intersection are not evaluated against its elements again.
+     *
+     * @param elementClass the class of the elements queried, Vertex or Edge
+     * @param containers   two or more has containers on indexed keys with non null values, ordered as
+     *                     {@link #getIndexContainers(Class)} orders them
+     * @return the elements of the intersection or null if the graph does not intersect its key indices
+     */
+    protected Iterable<?> getIntersection(final Class<? extends Element> elementClass, final List<HasContainer> containers) {
+        return null;
+    }
+
+    /**
+     * Estimate the number of elements the key index returns for an equality has container on an indexed key.
+     * Graphs that can count their index entries cheaply override this, by default every lookup has the same estimate.
+     *
+     * @param elementClass the class of the elements queried, Vertex or Edge
+     * @param hasContainer an equality has container with a non null value on an indexed key
+     * @return the estimated number of elements, 0 only if the lookup returns none
+     */
+    protected long estimateCount(final Class<? extends Element> elementClass, final HasContainer hasContainer) {
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Get the has containers in the order they are evaluated against each element: those that are cheap to
+     * evaluate and reject many elements first, ranked by cost / (1 - selectivity). The order of equal ranks is kept.
+     *
+     * @param consumed the has containers the access path answered, which are left out
+     * @return the has containers that are not answered by the access path
+     */
+    protected List<HasContainer> getFilters(final List<HasContainer> consumed) {
+        final List<HasContainer> filters = new ArrayList<HasContainer>(hasContainers.size());
+        final Set<HasContainer> answered = Collections.newSetFromMap(new IdentityHashMap<HasContainer, Boolean>());
+        answered.addAll(consumed);
+        for (final HasContainer hasContainer : hasContainers) {
+            if (!answered.contains(hasContainer))
+                filters.add(hasContainer);
         }
-        
+        Collections.sort(filters, new Comparator<HasContainer>() {
+            public int compare(final HasContainer a, final HasContainer b) {
+                return Double.compare(rank(a), rank(b));
+            }
+        });
+        return filters;
+    }
+
+    private double rank(final HasContainer hasContainer) {
+        final double selectivity = getSelectivity(hasContainer);
+        return selectivity >= 1.0d ? Double.MAX_VALUE : getCost(hasContainer) / (1.0d - selectivity);
+    }
+
+    /**
+     * Estimate the fraction of elements a has container accepts from the kind of its predicate.
+     *
+     * @param hasContainer the has container to estimate
+     * @return the fraction of elements accepted, between 0 and 1
+     */
+    protected double getSelectivity(final HasContainer hasContainer) {
+        final Predicate predicate = hasContainer.predicate;
+        if (isEqual(predicate))
+            return null == hasContainer.value ? 0.5d : 0.1d;
+        if (predicate == com.tinkerpop.blueprints.Compare.NOT_EQUAL || predicate == Compare.NOT_EQUAL)
+            return null == hasContainer.value ? 0.5d : 0.9d;
+        if (predicate == Contains.IN)
+            return 0.2d;
+        if (predicate == Contains.NOT_IN)
+            return 0.8d;
+        if (predicate instanceof com.tinkerpop.blueprints.Compare || predicate instanceof Compare)
+            return 0.33d;
+        return 0.5d;
+    }
+
+    /**
+     * Estimate the cost of evaluating a has container: ids and labels are held by the element itself
+     * while properties may have to be read.
+     *
+     * @param hasContainer the has container to estimate
+     * @return the relative cost of evaluating the has container against one element
+     */
+    protected double getCost(final HasContainer hasContainer) {
+        if (hasContainer.key.equals(StringFactory.ID) || hasContainer.key.equals(StringFactory.LABEL))
+            return 1.0d;
+        return 2.0d;
+    }
+
+    private static boolean isEqual(final Predicate predicate) {
+        return predicate == com.tinkerpop.blueprints.Compare.EQUAL || predicate == Compare.EQUAL;
+    }
+
+    /**
+     * Get the keys the graph indexes for the elements, which the key index lookups are chosen from.
+     *
+     * @param elementClass the class of the elements queried, Vertex or Edge
+     * @return the indexed keys
+     */
+    protected Set<String> getIndexedKeys(final Class<? extends Element> elementClass) {
+        return ((KeyIndexableGraph) graph).getIndexedKeys(elementClass);
     }
 
 }
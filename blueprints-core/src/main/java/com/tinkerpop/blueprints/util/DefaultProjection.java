@@ -0,0 +1,73 @@
+package com.tinkerpop.blueprints.util;
+
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Projection;
+import com.tinkerpop.blueprints.Query;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * For those graph engines that can not read several keys of an element at once, DefaultProjection executes the query
+ * and reads the projected keys of each element one at a time. Graphs override project() to read them together.
+ */
+public class DefaultProjection implements Projection {
+
+    protected final Query query;
+    protected final String[] keys;
+
+    public DefaultProjection(final Query query, final String... keys) {
+        this.query = query;
+        this.keys = keys;
+    }
+
+    public Iterable<Map<String, Object>> vertices() {
+        return this.project(this.query.vertices());
+    }
+
+    public Iterable<Map<String, Object>> edges() {
+        return this.project(this.query.edges());
+    }
+
+    /**
+     * Get the values of the projected keys of an element, leaving out keys without a value.
+     */
+    protected Map<String, Object> project(final Element element) {
+        final Map<String, Object> values = new HashMap<String, Object>();
+        for (final String key : this.keys) {
+            final Object value;
+            if (key.equals(StringFactory.ID))
+                value = element.getId();
+            else if (key.equals(StringFactory.LABEL) && element instanceof Edge)
+                value = ((Edge) element).getLabel();
+            else
+                value = element.getProperty(key);
+            if (null != value)
+                values.put(key, value);
+        }
+        return values;
+    }
+
+    private Iterable<Map<String, Object>> project(final Iterable<? extends Element> elements) {
+        return new Iterable<Map<String, Object>>() {
+            public Iterator<Map<String, Object>> iterator() {
+                final Iterator<? extends Element> itty = elements.iterator();
+                return new Iterator<Map<String, Object>>() {
+                    public boolean hasNext() {
+                        return itty.hasNext();
+                    }
+
+                    public Map<String, Object> next() {
+                        return project(itty.next());
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+}
@@ -1,9 +1,9 @@
 package com.tinkerpop.blueprints.util;
 
 import com.tinkerpop.blueprints.Direction;
-import com.tinkerpop.blueprints.Edge;
-import com.tinkerpop.blueprints.Element;
 import com.tinkerpop.blueprints.Predicate;
+import com.tinkerpop.blueprints.ProjectableQuery;
+import com.tinkerpop.blueprints.Projection;
 import com.tinkerpop.blueprints.Query;
 
 import java.util.ArrayList;
@@ -12,7 +12,7 @@ import java.util.List;
 /**
  * @author Marko A. Rodriguez (http://markorodriguez.com)
  */
-public abstract class DefaultQuery implements Query {
+public abstract class DefaultQuery implements Query, ProjectableQuery {
 
     private static final String[] EMPTY_LABELS = new String[]{};
 
@@ -61,28 +61,17 @@ public abstract class DefaultQuery implements Query {
         return this;
     }
 
+    public Projection properties(final String... keys) {
+        return new DefaultProjection(this, keys);
+    }
+
     ////////////////////
 
 
-    protected class HasContainer {
-        public String key;
-        public Object value;
-        public Predicate predicate;
+    protected class HasContainer extends HasFilter {
 
         public HasContainer(final String key, final Predicate predicate, final Object value) {
-            this.key = key;
-            this.value = value;
-            this.predicate = predicate;
-        }
-
-        public boolean isLegal(final Element element) {
-            if (this.key.equals(StringFactory.ID)) {
-                return this.predicate.evaluate(element.getId(), this.value);
-            } else if (this.key.equals(StringFactory.LABEL) && element instanceof Edge) {
-                return this.predicate.evaluate(((Edge) element).getLabel(), this.value);
-            } else {
-                return this.predicate.evaluate(element.getProperty(this.key), this.value);
-            }
+            super(key, predicate, value);
         }
     }
 }
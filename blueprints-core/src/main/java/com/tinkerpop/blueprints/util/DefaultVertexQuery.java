@@ -10,7 +10,6 @@ import com.tinkerpop.blueprints.VertexQuery;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.NoSuchElementException;
 
 /**
  * For those graph engines that do not support the low-level querying of the edges of a vertex, then DefaultVertexQuery can be used.
@@ -112,73 +111,34 @@ public class DefaultVertexQuery extends DefaultQuery implements VertexQuery {
 
         public Iterator<T> iterator() {
             return new Iterator<T>() {
-                Edge nextEdge = null;
-                final Iterator<Edge> itty = iterable.iterator();
-                long count = 0;
+                final Iterator<Edge> itty = new FilteredIterator<Edge>(iterable.iterator(), hasContainers, limit);
 
                 public boolean hasNext() {
-                    if (null != this.nextEdge) {
-                        return true;
-                    } else {
-                        return this.loadNext();
-                    }
+                    return this.itty.hasNext();
                 }
 
                 public T next() {
-                    while (true) {
-                        if (this.nextEdge != null) {
-                            final Edge temp = this.nextEdge;
-                            this.nextEdge = null;
-                            if (forVertex) {
-                                if (direction == Direction.OUT)
-                                    return (T) temp.getVertex(Direction.IN);
-                                else if (direction == Direction.IN)
-                                    return (T) temp.getVertex(Direction.OUT);
-                                else {
-                                    if (temp.getVertex(Direction.OUT).equals(vertex)) {
-                                        return (T) temp.getVertex(Direction.IN);
-                                    } else {
-                                        return (T) temp.getVertex(Direction.OUT);
-                                    }
-                                }
-
+                    final Edge edge = this.itty.next();
+                    if (forVertex) {
+                        if (direction == Direction.OUT)
+                            return (T) edge.getVertex(Direction.IN);
+                        else if (direction == Direction.IN)
+                            return (T) edge.getVertex(Direction.OUT);
+                        else {
+                            if (edge.getVertex(Direction.OUT).equals(vertex)) {
+                                return (T) edge.getVertex(Direction.IN);
                             } else {
-                                return (T) temp;
+                                return (T) edge.getVertex(Direction.OUT);
                             }
                         }
-
-                        if (!this.loadNext())
-                            throw new NoSuchElementException();
+                    } else {
+                        return (T) edge;
                     }
                 }
 
                 public void remove() {
                     throw new UnsupportedOperationException();
                 }
-
-                private boolean loadNext() {
-                    this.nextEdge = null;
-                    if (this.count > limit) return false;
-
-                    while (this.itty.hasNext()) {
-                        final Edge edge = this.itty.next();
-                        boolean filter = false;
-                        for (final HasContainer hasContainer : hasContainers) {
-                            if (!hasContainer.isLegal(edge)) {
-                                filter = true;
-                                break;
-                            }
-                        }
-
-                        if (!filter) {
-                            if (++this.count <= limit) {
-                                this.nextEdge = edge;
-                                return true;
-                            }
-                        }
-                    }
-                    return false;
-                }
             };
         }
     }
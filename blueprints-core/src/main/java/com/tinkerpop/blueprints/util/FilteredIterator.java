@@ -0,0 +1,81 @@
+package com.tinkerpop.blueprints.util;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An iterator over the elements of another iterator that pass all of a collection of filters, which are tested
+ * in the order of the collection. Iteration stops once the limit is reached, without reading further elements.
+ * The end of the iterator is detected with hasNext(), so no NoSuchElementException is thrown and caught per iteration.
+ */
+public class FilteredIterator<T> implements Iterator<T> {
+
+    /**
+     * A test the elements of a FilteredIterator have to pass.
+     */
+    public interface Filter<T> {
+        public boolean isLegal(final T element);
+    }
+
+    private final Iterator<T> itty;
+    private final Collection<? extends Filter<? super T>> filters;
+    private final long limit;
+    private long count = 0;
+    private T nextElement = null;
+
+    public FilteredIterator(final Iterator<T> itty, final Collection<? extends Filter<? super T>> filters) {
+        this(itty, filters, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param limit the number of elements returned at most
+     */
+    public FilteredIterator(final Iterator<T> itty, final Collection<? extends Filter<? super T>> filters, final long limit) {
+        this.itty = itty;
+        this.filters = filters;
+        this.limit = limit;
+    }
+
+    public boolean hasNext() {
+        if (null != this.nextElement)
+            return true;
+        if (this.count >= this.limit)
+            return false;
+        while (this.itty.hasNext()) {
+            final T element = this.itty.next();
+            if (this.isLegal(element)) {
+                this.nextElement = element;
+                this.count++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public T next() {
+        if (!this.hasNext())
+            throw new NoSuchElementException();
+        final T element = this.nextElement;
+        this.nextElement = null;
+        return element;
+    }
+
+    /**
+     * Removes the last element returned from the underlying iterator, which is only possible before hasNext()
+     * moved it to the next legal element.
+     */
+    public void remove() {
+        if (null != this.nextElement)
+            throw new IllegalStateException();
+        this.itty.remove();
+    }
+
+    private boolean isLegal(final T element) {
+        for (final Filter<? super T> filter : this.filters) {
+            if (!filter.isLegal(element))
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,59 @@
+package com.tinkerpop.blueprints.util;
+
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Predicate;
+
+/**
+ * A filter that tests the value of a property of an element, or its id or the label of an edge, with a predicate.
+ * The predicate is compiled against the value on first use, so the filter is cheap to evaluate against many elements.
+ */
+public class HasFilter implements FilteredIterator.Filter<Element> {
+
+    public String key;
+    public Object value;
+    public Predicate predicate;
+
+    /**
+     * The predicate compiled for the key, predicate and value it was built from, rebuilt if one of them was reassigned.
+     */
+    private Compiled compiled;
+
+    public HasFilter(final String key, final Predicate predicate, final Object value) {
+        this.key = key;
+        this.value = value;
+        this.predicate = predicate;
+    }
+
+    public boolean isLegal(final Element element) {
+        Compiled compiled = this.compiled;
+        if (null == compiled || compiled.key != this.key || compiled.predicate != this.predicate || compiled.value != this.value)
+            this.compiled = compiled = new Compiled(this.key, this.predicate, this.value);
+
+        if (compiled.isId) {
+            return compiled.compiled.evaluate(element.getId());
+        } else if (compiled.isLabel && element instanceof Edge) {
+            return compiled.compiled.evaluate(((Edge) element).getLabel());
+        } else {
+            return compiled.compiled.evaluate(element.getProperty(compiled.key));
+        }
+    }
+
+    private static class Compiled {
+        private final String key;
+        private final Predicate predicate;
+        private final Object value;
+        private final boolean isId;
+        private final boolean isLabel;
+        private final CompiledPredicate compiled;
+
+        public Compiled(final String key, final Predicate predicate, final Object value) {
+            this.key = key;
+            this.predicate = predicate;
+            this.value = value;
+            this.isId = key.equals(StringFactory.ID);
+            this.isLabel = key.equals(StringFactory.LABEL);
+            this.compiled = CompiledPredicate.compile(predicate, value);
+        }
+    }
+}
@@ -2,12 +2,11 @@ package com.tinkerpop.blueprints.util;
 
 import com.tinkerpop.blueprints.CloseableIterable;
 import com.tinkerpop.blueprints.Compare;
-import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.Element;
 import com.tinkerpop.blueprints.Predicate;
 
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.NoSuchElementException;
 
 /**
  * This is a helper class for filtering an iterable of elements by their key/value.
@@ -32,69 +31,13 @@ public class PropertyFilteredIterable<T extends Element> implements CloseableIte
     }
 
     public Iterator<T> iterator() {
-        return new Iterator<T>() {
-            private Iterator<T> itty = iterable.iterator();
-            private T nextElement = null;
-
-            public void remove() {
-                this.itty.remove();
-            }
-
-            public boolean hasNext() {
-                if (null != nextElement)
-                    return true;
-                else {
-                    try {
-                        while (true) {
-                            final T element = this.itty.next();
-                            if (hasContainer.isLegal(element)) {
-                                this.nextElement = element;
-                                return true;
-                            }
-                        }
-                    } catch (NoSuchElementException e) {
-                        this.nextElement = null;
-                        return false;
-                    }
-                }
-            }
-
-            public T next() {
-                if (null != this.nextElement) {
-                    final T temp = this.nextElement;
-                    this.nextElement = null;
-                    return temp;
-                } else {
-                    while (true) {
-                        final T element = this.itty.next();
-                        if (hasContainer.isLegal(element))
-                            return element;
-
-                    }
-                }
-            }
-        };
+        return new FilteredIterator<T>(this.iterable.iterator(), Collections.singletonList(this.hasContainer));
     }
 
-    protected class HasContainer {
-        public String key;
-        public Object value;
-        public Predicate predicate;
+    protected class HasContainer extends HasFilter {
 
         public HasContainer(final String key, final Predicate predicate, final Object value) {
-            this.key = key;
-            this.value = value;
-            this.predicate = predicate;
-        }
-
-        public boolean isLegal(final Element element) {
-            if (this.key.equals(StringFactory.ID)) {
-                return this.predicate.evaluate(element.getId(), this.value);
-            } else if (this.key.equals(StringFactory.LABEL) && element instanceof Edge) {
-                return this.predicate.evaluate(((Edge) element).getLabel(), this.value);
-            } else {
-                return this.predicate.evaluate(element.getProperty(this.key), this.value);
-            }
+            super(key, predicate, value);
         }
     }
 }
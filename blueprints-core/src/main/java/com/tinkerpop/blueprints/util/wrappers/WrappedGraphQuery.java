@@ -2,13 +2,16 @@ package com.tinkerpop.blueprints.util.wrappers;
 
 import com.tinkerpop.blueprints.Predicate;
 import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.ProjectableQuery;
+import com.tinkerpop.blueprints.Projection;
 import com.tinkerpop.blueprints.GraphQuery;
 import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.util.DefaultProjection;
 
 /**
  * @author Marko A. Rodriguez (http://markorodriguez.com)
  */
-public abstract class WrappedGraphQuery implements GraphQuery {
+public abstract class WrappedGraphQuery implements GraphQuery, ProjectableQuery {
 
     protected GraphQuery query;
 
@@ -55,6 +58,13 @@ public abstract class WrappedGraphQuery implements GraphQuery {
         return this;
     }
 
+    /**
+     * The elements are projected after they are wrapped, as wrapping may alter their properties or ids.
+     */
+    public Projection properties(final String... keys) {
+        return new DefaultProjection(this, keys);
+    }
+
     public abstract Iterable<Edge> edges();
 
     public abstract Iterable<Vertex> vertices();
@@ -3,7 +3,10 @@ package com.tinkerpop.blueprints.util.wrappers;
 import com.tinkerpop.blueprints.Predicate;
 import com.tinkerpop.blueprints.Direction;
 import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.ProjectableQuery;
+import com.tinkerpop.blueprints.Projection;
 import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.util.DefaultProjection;
 import com.tinkerpop.blueprints.VertexQuery;
 
 /**
@@ -12,7 +15,7 @@ import com.tinkerpop.blueprints.VertexQuery;
  *
  * @author Marko A. Rodriguez (http://markorodriguez.com)
  */
-public abstract class WrapperVertexQuery implements VertexQuery {
+public abstract class WrapperVertexQuery implements VertexQuery, ProjectableQuery {
 
     protected VertexQuery query;
 
@@ -77,6 +80,13 @@ public abstract class WrapperVertexQuery implements VertexQuery {
         return this.query.vertexIds();
     }
 
+    /**
+     * The elements are projected after they are wrapped, as wrapping may alter their properties or ids.
+     */
+    public Projection properties(final String... keys) {
+        return new DefaultProjection(this, keys);
+    }
+
     public abstract Iterable<Edge> edges();
 
     public abstract Iterable<Vertex> vertices();
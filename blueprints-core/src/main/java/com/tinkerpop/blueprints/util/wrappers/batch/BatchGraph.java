@@ -283,6 +283,7 @@ public class BatchGraph<T extends TransactionalGraph> implements TransactionalGr
         features.isWrapper = true;
         features.supportsEdgeIteration = false;
         features.supportsThreadedTransactions = false;
+        features.isThreadSafe = false;
         features.supportsVertexIteration = false;
         return features;
     }
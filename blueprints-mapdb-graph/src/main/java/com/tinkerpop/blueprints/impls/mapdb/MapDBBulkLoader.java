@@ -0,0 +1,166 @@
+package com.tinkerpop.blueprints.impls.mapdb;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.mapdb.Fun;
+import org.mapdb.Serializer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Loads a graph into a new MapDBGraph store.
+ *
+ * The element records are written to recids allocated in sequence, then every tree is built in one pass with the
+ * data pump of MapDB from the sorted entries instead of inserting the entries one by one.
+ * The source is read twice, once for the records and once for the properties. The adjacency, the labels and the
+ * property keys are derived from the trees built before them.
+ * The ids of the source elements are mapped to recids in a temporary store while loading, so they must be serializable.
+ * The store is written without transactions and opened as a regular MapDBGraph once it is complete.
+ * Key indices are not loaded, {@link MapDBGraph#createKeyIndex} builds them from the loaded properties.
+ */
+public class MapDBBulkLoader {
+
+    protected final Graph source;
+    protected final String fileName;
+    protected final boolean useUserIds;
+
+    protected Map<Object,Long> vertexRecids;
+    protected Map<Object,Long> edgeRecids;
+
+    public MapDBBulkLoader(Graph source, String fileName, boolean useUserIds) {
+        this.source = source;
+        this.fileName = fileName;
+        this.useUserIds = useUserIds;
+    }
+
+    /**
+     * Load the source graph into a new store in the file and open it.
+     *
+     * @throws IllegalArgumentException if the file holds a store or an edge of the source references a vertex
+     *                                  that is not a vertex of the source
+     */
+    public static MapDBGraph load(Graph source, String fileName, boolean useUserIds) {
+        return new MapDBBulkLoader(source, fileName, useUserIds).load();
+    }
+
+    public MapDBGraph load() {
+        DB recids = DBMaker.newTempFileDB().transactionDisable().deleteFilesAfterClose().make();
+        try{
+            vertexRecids = recids.createHashMap("vertices")
+                    .keySerializer(MapDBSerializers.VALUE)
+                    .valueSerializer(Serializer.LONG)
+                    .make();
+            edgeRecids = recids.createHashMap("edges")
+                    .keySerializer(MapDBSerializers.VALUE)
+                    .valueSerializer(Serializer.LONG)
+                    .make();
+            new MapDBGraph(MapDBGraph.fileDB(fileName).transactionDisable(), useUserIds, 0, 0, this).shutdown();
+        }finally{
+            recids.close();
+        }
+        return new MapDBGraph(fileName, useUserIds);
+    }
+
+    /**
+     * Writes the element records to the store of the graph, called by the graph before it creates its trees.
+     *
+     * @return the sources of the trees read from the source graph by tree name
+     */
+    protected Map<String,Iterator<?>> writeRecords(MapDBGraph records) {
+        if(records.db.exists("vertices"))
+            throw new IllegalArgumentException("bulk load requires a new store: "+fileName);
+
+        for(Vertex v:source.getVertices()){
+            Long recid = records.engine.preallocate();
+            records.writeVertex(recid, v.getId());
+            vertexRecids.put(v.getId(), recid);
+        }
+        for(Edge e:source.getEdges()){
+            // resolve the vertices first so an edge to a missing vertex fails before its record is allocated
+            long outRecid = vertexRecid(e, Direction.OUT);
+            long inRecid = vertexRecid(e, Direction.IN);
+            Long recid = records.engine.preallocate();
+            records.writeEdge(recid, e.getId(), outRecid, inRecid, e.getLabel());
+            edgeRecids.put(e.getId(), recid);
+        }
+
+        Map<String,Iterator<?>> pumps = new HashMap<String, Iterator<?>>();
+        pumps.put("vertices", vertexRecids.values().iterator());
+        pumps.put("edges", edgeRecids.values().iterator());
+
+        pumps.put("verticesProps", new Expand<Vertex,Fun.Tuple2<Fun.Tuple2<Long,String>,Object>>(source.getVertices()) {
+            @Override
+            protected void expand(Vertex v, List<Fun.Tuple2<Fun.Tuple2<Long,String>,Object>> into) {
+                properties(v, vertexRecids.get(v.getId()), into);
+            }
+        });
+        pumps.put("edgesProps", new Expand<Edge,Fun.Tuple2<Fun.Tuple2<Long,String>,Object>>(source.getEdges()) {
+            @Override
+            protected void expand(Edge e, List<Fun.Tuple2<Fun.Tuple2<Long,String>,Object>> into) {
+                properties(e, edgeRecids.get(e.getId()), into);
+            }
+        });
+        return pumps;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the vertex of the edge is not one of the vertices of the source
+     */
+    protected Long vertexRecid(Edge e, Direction direction) {
+        Object vertexId = e.getVertex(direction).getId();
+        Long recid = vertexRecids.get(vertexId);
+        if(recid==null)
+            throw new IllegalArgumentException("edge "+e.getId()+" references vertex "+vertexId+" which is not a vertex of the source graph");
+        return recid;
+    }
+
+    protected static void properties(Element element, Long recid, List<Fun.Tuple2<Fun.Tuple2<Long,String>,Object>> into) {
+        for(String key:element.getPropertyKeys()){
+            into.add(Fun.t2(Fun.t2(recid, key), element.getProperty(key)));
+        }
+    }
+
+    /** iterates the entries that each source element expands to, one element at a time*/
+    protected static abstract class Expand<E,T> implements Iterator<T> {
+        protected final Iterator<E> elements;
+        protected final List<T> entries = new ArrayList<T>();
+        protected int next = 0;
+
+        public Expand(Iterable<E> elements) {
+            this.elements = elements.iterator();
+        }
+
+        protected abstract void expand(E element, List<T> into);
+
+        @Override
+        public boolean hasNext() {
+            while(next==entries.size() && elements.hasNext()){
+                entries.clear();
+                next = 0;
+                expand(elements.next(), entries);
+            }
+            return next<entries.size();
+        }
+
+        @Override
+        public T next() {
+            if(!hasNext()) throw new NoSuchElementException();
+            return entries.get(next++);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
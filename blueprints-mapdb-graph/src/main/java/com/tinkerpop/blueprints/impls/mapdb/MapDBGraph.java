@@ -2,6 +2,7 @@ package com.tinkerpop.blueprints.impls.mapdb;
 
 import com.tinkerpop.blueprints.*;
 import com.tinkerpop.blueprints.util.*;
+import org.apache.commons.configuration.Configuration;
 import org.mapdb.*;
 
 import java.io.DataInput;
@@ -12,8 +13,16 @@ import java.util.*;
 
 /**
  * MapDB graph API
+ *
+ * Transactions map to the transactions of the MapDB store: all threads share one transaction, which
+ * commit and rollback conclude. Async writes are configured on the DBMaker the graph is made from.
+ *
+ * {@link #MapDBGraph(Configuration)} reads the blueprints.mapdb.* settings:
+ * file, storage ({@link StorageType}), user-ids, inline-properties, inline-edges,
+ * cache-type ({@link CacheType}), cache-size, async-write, async-write-queue-size,
+ * async-write-flush-delay and commit-every.
  */
-public class MapDBGraph implements IndexableGraph,KeyIndexableGraph {
+public class MapDBGraph implements IndexableGraph,KeyIndexableGraph,TransactionalGraph {
 
     protected final DB db;
     protected final Engine engine;
@@ -31,12 +40,21 @@ public class MapDBGraph implements IndexableGraph,KeyIndexableGraph {
     protected final NavigableMap<Fun.Tuple2<Long,String>,Object> edgesProps;
     protected final NavigableSet<Fun.Tuple2<String,Long>> edgesLabels;
 
+    /** (key, recid) of every property, so a lookup of an unindexed key only reads the entries of that key*/
+    protected final NavigableSet<Fun.Tuple2<String,Long>> verticesPropsKeys;
+    protected final NavigableSet<Fun.Tuple2<String,Long>> edgesPropsKeys;
+
     protected final NavigableSet<Fun.Tuple3<String,Object,Long>> verticesIndex;
     protected final NavigableSet<Fun.Tuple3<String,Object,Long>> edgesIndex;
 
     protected final NavigableSet<Fun.Tuple4<String,String,Object,Long>> verticesIndex2;
     protected final NavigableSet<Fun.Tuple4<String,String,Object,Long>> edgesIndex2;
 
+    /** key: element recid, index name, key, value; the manual index entries of each element.
+     * Not delta packed, as the values of different keys of an element can not be compared*/
+    protected final NavigableSet<Fun.Tuple4<Long,String,String,Object>> verticesIndex2Reverse;
+    protected final NavigableSet<Fun.Tuple4<Long,String,String,Object>> edgesIndex2Reverse;
+
     protected final Set<String> verticesKeys;
     protected final Set<String> edgesKeys;
 
@@ -47,38 +65,75 @@ public class MapDBGraph implements IndexableGraph,KeyIndexableGraph {
     /** key:vertice id, direction (out=true), edge label, edge id*/
     protected final NavigableSet<Fun.Tuple4<Long,Boolean,String,Long>> edges4vertice;
 
+    /** number of edges of a vertex by (vertex recid, out, label), so a vertex query counts without reading edges*/
+    protected final NavigableMap<Fun.Tuple3<Long,Boolean,String>,Long> degrees;
+
+    /** max number of properties and incident edges held inline in a vertex record, 0 keeps them in the trees only*/
+    protected final int inlineProperties;
+    protected final int inlineEdges;
+
+    /** element records write ids with {@link MapDBSerializers#VALUE} and labels packed, a store written before keeps java and UTF encodings*/
+    protected final boolean compactRecords;
+
+    /** record of a new vertex, which has no properties and edges*/
+    protected final VertexRecord emptyRecord;
+
+    /** sources of the trees a bulk load builds from its source graph, null otherwise*/
+    protected final Map<String,Iterator<?>> pumps;
+
+    /** number of elements sorted in memory by the data pump, more are merged from sorted batches on disk*/
+    protected static final int PUMP_BATCH = 100000;
+
+    /** number of index entries a graph query counts at most to pick the key index to look up*/
+    protected static final int ESTIMATE_BOUND = 1000;
+
+    /** number of mutations after which the transaction is committed, 0 leaves commits to the user*/
+    protected int commitEvery = 0;
+    protected int mutations = 0;
+
 
     public class MVertex implements Vertex{
 
 
         protected final Object id;
 
+        /** inline part of the record this vertex was read from, null if the layout is not inline*/
+        protected final VertexRecord record;
+
         public MVertex(Object id) {
+            this(id, null);
+        }
+
+        protected MVertex(Object id, VertexRecord record) {
             this.id = id;
+            this.record = record;
         }
 
+        /**
+         * Edges are deserialized one at a time as the iterator advances over the edges4vertice subsets,
+         * the subsets of several labels and directions are concatenated lazily.
+         */
         @Override
         public Iterable<Edge> getEdges(Direction direction, String... labels) {
-            List<Edge> ret = new ArrayList<Edge>();
             if(labels==null || labels.length==0) labels = new String[]{null};
             Long recid = vertexRecid(id);
             assert(recid!=null);
+            final List<Iterable<Long>> recids = new ArrayList<Iterable<Long>>();
             for(String label:labels){
+                if(Direction.IN != direction)
+                    recids.add(adjacentEdges(recid, true, label));
+                if(Direction.OUT != direction)
+                    recids.add(adjacentEdges(recid, false, label));
+            }
 
-                if(Direction.BOTH == direction){
-                    for(Long recid2 : Fun.filter( edges4vertice, recid, true, label)){
-                        ret.add(engine.get(recid2,EDGE_SERIALIZER));
-                    }
-                    for(Long recid2 : Fun.filter( edges4vertice, recid, false, label)){
-                        ret.add(engine.get(recid2,EDGE_SERIALIZER));
-                    }
-                }else{
-                    for(Long recid2 : Fun.filter( edges4vertice, recid, direction == Direction.OUT, label)){
-                        ret.add(engine.get(recid2,EDGE_SERIALIZER));
-                    }
+            return new Iterable<Edge>() {
+                @Override
+                public Iterator<Edge> iterator() {
+                    Iterator<Long> iter = recids.size()==1?
+                            recids.get(0).iterator() : new MultiIterable<Long>(recids).iterator();
+                    return new MEdgeRecidIterator(iter);
                 }
-            }
-            return ret;
+            };
         }
 
         @Override
@@ -88,7 +143,7 @@ public class MapDBGraph implements IndexableGraph,KeyIndexableGraph {
 
         @Override
         public VertexQuery query() {
-            return new DefaultVertexQuery(this);
+            return new MVertexQuery(this);
         }
 
         @Override
@@ -103,56 +158,47 @@ public class MapDBGraph implements IndexableGraph,KeyIndexableGraph {
             Long recid = vertexRecid(id);
             if(!vertices.contains(recid)) throw new IllegalStateException("vertex not found");
 
-            Iterator<Map.Entry<Fun.Tuple2<Long,String>,Object>> propsIter =
-                    ((NavigableMap)verticesProps).subMap(Fun.t2(id,null),Fun.t2(id,Fun.HI())).entrySet().iterator();
-
-            while(propsIter.hasNext()){
-                Map.Entry<Fun.Tuple2<Long,String>,Object> n = propsIter.next();
-                if(verticesKeys.contains(n.getKey().b)){
-                    verticesIndex.remove(Fun.t3(n.getKey().b,n.getValue(),n.getKey().a));
+            for(Map.Entry<String,Object> n:removeVertexProperties(recid).entrySet()){
+                if(verticesKeys.contains(n.getKey())){
+                    verticesIndex.remove(Fun.t3(n.getKey(),n.getValue(),recid));
                 }
-                propsIter.remove();
             }
 
 
             //remove all relevant recids from indexes
-            //TODO linear scan, add reverse index
-            Iterator<Fun.Tuple4<String,String,Object,Long>> indexIter = verticesIndex2.iterator();
-            while(indexIter.hasNext()){
-                if(indexIter.next().d.equals(id))
-                    indexIter.remove();
+            removeIndexEntries(verticesIndex2, verticesIndex2Reverse, recid);
+
+            //remove related edges before the record, which may hold the adjacency,
+            //collected first as removal modifies the adjacency being iterated
+            for(Direction direction:new Direction[]{Direction.OUT, Direction.IN}){
+                List<Edge> related = new ArrayList<Edge>();
+                for(Edge e:getEdges(direction)) related.add(e);
+                //removed without counting them, so the vertex is never split across commits
+                for(Edge e:related)((MEdge)e).delete();
             }
 
             engine.delete(recid,VERTEX_SERIALIZER);
             vertices.remove(recid);
-
-            //remove related edges
-            for(Edge e:getEdges(Direction.OUT))e.remove();
-            for(Edge e:getEdges(Direction.IN))e.remove();
-
+            mutated();
         }
 
         @Override
         public <T> T getProperty(String key) {
-            return (T) verticesProps.get(Fun.t2(vertexRecid(id), key));
+            return (T) vertexProperty(vertexRecid(id), key);
         }
 
         @Override
         public Set<String> getPropertyKeys() {
-            Set<String> ret = new HashSet<String>();
-            Long recid = vertexRecid(id);
-            for(String s:Fun.filter(verticesProps.navigableKeySet(), recid)){
-                ret.add(s);
-            }
-            return ret;
+            return vertexProperties(vertexRecid(id)).keySet();
         }
 
         @Override
         public void setProperty(String key, Object value) {
             if(key==null||"".equals(key)||"id".equals(key)
                     ||"label".equals(key)) throw new IllegalArgumentException();
+            if(value==null) throw ExceptionFactory.propertyValueCanNotBeNull();
             Long recid = vertexRecid(id);
-            Object oldVal = verticesProps.put(Fun.t2(recid,key),value);
+            Object oldVal = putVertexProperty(recid,key,value);
 
             if(verticesKeys.contains(key)){
                 //remove old value from index if exists
@@ -160,18 +206,19 @@ public class MapDBGraph implements IndexableGraph,KeyIndexableGraph {
                 //put new value
                 verticesIndex.add(Fun.t3(key,value,recid));
             }
+            mutated();
         }
 
         @Override
         public <T> T removeProperty(String key) {
             Long recid = vertexRecid(id);
-            T ret = (T) verticesProps.remove(Fun.t2(recid, key));
+            T ret = (T) removeVertexProperty(recid, key);
             if(verticesKeys.contains(key)){
                 //remove from index
                 //remove old value from index if exists
                 if(ret!=null) verticesIndex.remove(Fun.t3(key,ret,recid));
             }
-
+            mutated();
             return ret;
         }
 
@@ -206,13 +253,16 @@ public class MapDBGraph implements IndexableGraph,KeyIndexableGraph {
         @Override
         public void serialize(DataOutput out, MVertex value) throws IOException {
             if(value.id==null) return;
-            Serializer.BASIC.serialize(out,value.id);
+            writeId(out,value.id);
+            if(value.record!=null) value.record.serialize(out);
         }
 
         @Override
         public MVertex deserialize(DataInput in, int available) throws IOException {
             if(available==0) return VERTEX_EMPTY;
-            return new MVertex(Serializer.BASIC.deserialize(in,available));
+            Object id = readId(in,available);
+            if(emptyRecord==null) return new MVertex(id);
+            return new MVertex(id, VertexRecord.deserialize(in));
         }
 
         @Override
@@ -239,10 +289,11 @@ public class MapDBGraph implements IndexableGraph,KeyIndexableGraph {
 
         @Override
         public Vertex getVertex(Direction direction) throws IllegalArgumentException {
+            //without user ids the id of a vertex is its recid, so the record need not be read
             if (direction.equals(Direction.IN))
-                return engine.get(in,VERTEX_SERIALIZER);
+                return useUserIds? engine.get(in,VERTEX_SERIALIZER) : new MVertex(in);
             else if (direction.equals(Direction.OUT))
-                return engine.get(out,VERTEX_SERIALIZER);
+                return useUserIds? engine.get(out,VERTEX_SERIALIZER) : new MVertex(out);
             else
                 throw ExceptionFactory.bothIsNotSupported();
         }
@@ -255,14 +306,21 @@ public class MapDBGraph implements IndexableGraph,KeyIndexableGraph {
 
         @Override
         public void remove() {
+            delete();
+            mutated();
+        }
+
+        /** removes the edge without counting it as a mutation, for removals it is part of*/
+        protected void delete() {
             Long recid = edgeRecid(id);
             if(!edges.contains(recid)) throw new IllegalStateException("edge not found");
 
             Iterator<Map.Entry<Fun.Tuple2<Long,String>,Object>> propsIter =
-                    ((NavigableMap)edgesProps).subMap(Fun.t2(id,null),Fun.t2(id,Fun.HI())).entrySet().iterator();
+                    edgesProps.subMap(Fun.t2(recid,(String)null),Fun.t2(recid,Fun.<String>HI())).entrySet().iterator();
 
             while(propsIter.hasNext()){
                 Map.Entry<Fun.Tuple2<Long,String>,Object> n = propsIter.next();
+                edgesPropsKeys.remove(Fun.t2(n.getKey().b,recid));
                 if(edgesKeys.contains(n.getKey().b)){
                     edgesIndex.remove(Fun.t3(n.getKey().b,n.getValue(),n.getKey().a));
                 }
@@ -271,17 +329,12 @@ public class MapDBGraph implements IndexableGraph,KeyIndexableGraph {
 
 
             //remove all relevant recids from indexes
-            //TODO linear scan, add reverse index
-            Iterator<Fun.Tuple4<String,String,Object,Long>> indexIter = edgesIndex2.iterator();
-            while(indexIter.hasNext()){
-                if(indexIter.next().d.equals(id))
-                    indexIter.remove();
-            }
+            removeIndexEntries(edgesIndex2, edgesIndex2Reverse, recid);
 
             engine.delete(recid,EDGE_SERIALIZER);
             edges.remove(recid);
-            edges4vertice.remove(Fun.t4(out,true,label,id));
-            edges4vertice.remove(Fun.t4(in,false,label,id));
+            removeAdjacentEdge(out,true,label,recid);
+            removeAdjacentEdge(in,false,label,recid);
         }
 
 
@@ -306,6 +359,7 @@ public class MapDBGraph implements IndexableGraph,KeyIndexableGraph {
                     ||"label".equals(key)) throw new IllegalArgumentException();
             Long recid = edgeRecid(id);
             Object oldVal = edgesProps.put(Fun.t2(recid,key),value);
+            if(oldVal==null) edgesPropsKeys.add(Fun.t2(key,recid));
 
             if(edgesKeys.contains(key)){
                 //remove old value from index if exists
@@ -313,18 +367,20 @@ public class MapDBGraph implements IndexableGraph,KeyIndexableGraph {
                 //put new value
                 edgesIndex.add(Fun.t3(key,value,recid));
             }
+            mutated();
         }
 
         @Override
         public <T> T removeProperty(String key) {
             Long recid = edgeRecid(id);
             T ret = (T) edgesProps.remove(Fun.t2(recid, key));
+            if(ret!=null) edgesPropsKeys.remove(Fun.t2(key,recid));
             if(edgesKeys.contains(key)){
                 //remove from index
                 //remove old value from index if exists
                 if(ret!=null) edgesIndex.remove(Fun.t3(key,ret,recid));
             }
-
+            mutated();
             return ret;
         }
 
@@ -358,18 +414,20 @@ public class MapDBGraph implements IndexableGraph,KeyIndexableGraph {
         @Override
         public void serialize(DataOutput out, MEdge value) throws IOException {
             if(value.id==null) return;
-            Serializer.BASIC.serialize(out,value.id);
+            writeId(out,value.id);
             DataOutput2.packLong(out,value.out);
             DataOutput2.packLong(out,value.in);
-            out.writeUTF(value.getLabel());
+            if(compactRecords) MapDBSerializers.writeString(out,value.getLabel());
+            else out.writeUTF(value.getLabel());
         }
 
         @Override
         public MEdge deserialize(DataInput in, int available) throws IOException {
             if(available==0) return EDGE_EMPTY;
-            return new MEdge(
-                    Serializer.BASIC.deserialize(in,available),
-                    DataInput2.unpackLong(in),DataInput2.unpackLong(in),in.readUTF());
+            Object id = readId(in,available);
+            long out = DataInput2.unpackLong(in);
+            long inV = DataInput2.unpackLong(in);
+            return new MEdge(id, out, inV, compactRecords? MapDBSerializers.readString(in) : in.readUTF());
         }
 
         @Override
@@ -380,55 +438,198 @@ public class MapDBGraph implements IndexableGraph,KeyIndexableGraph {
 
     protected final MEdge EDGE_EMPTY = new MEdge(null,0L,0L,null);
 
+    protected void writeId(DataOutput out, Object id) throws IOException {
+        if(compactRecords) MapDBSerializers.VALUE.serialize(out,id);
+        else Serializer.BASIC.serialize(out,id);
+    }
+
+    protected Object readId(DataInput in, int available) throws IOException {
+        return compactRecords? MapDBSerializers.VALUE.deserialize(in,available) : Serializer.BASIC.deserialize(in,available);
+    }
+
+
+    /** where the store is kept*/
+    public enum StorageType {
+        /** a file accessed with random access file*/
+        FILE,
+        /** a memory mapped file*/
+        MMAP,
+        /** on heap memory, gone on shutdown*/
+        MEMORY,
+        /** direct memory outside of the heap, gone on shutdown*/
+        DIRECT
+    }
+
+    /** the instance cache of the store*/
+    public enum CacheType {
+        /** fixed size hash table, the MapDB default*/
+        HASH_TABLE,
+        LRU,
+        /** keeps every instance, for a working set that fits on heap*/
+        HARD_REF,
+        WEAK_REF,
+        SOFT_REF,
+        DISABLED
+    }
 
     public MapDBGraph(String fileName, boolean useUserIds) {
-        this( new File(fileName).getParentFile().mkdirs() || true? //always true, but necessary to mkdirts in constructor
-            DBMaker.newFileDB(new File(fileName)) :null
-            //.transactionDisable()
-        ,useUserIds);
+        this(fileDB(fileName), useUserIds);
+    }
+
+    public MapDBGraph(Configuration configuration) {
+        this(dbMaker(configuration),
+                configuration.getBoolean("blueprints.mapdb.user-ids", false),
+                configuration.getInt("blueprints.mapdb.inline-properties", 0),
+                configuration.getInt("blueprints.mapdb.inline-edges", 0));
+        setCommitEvery(configuration.getInt("blueprints.mapdb.commit-every", 0));
+    }
+
+    protected static DBMaker fileDB(String fileName){
+        File file = new File(fileName);
+        if(file.getParentFile()!=null) file.getParentFile().mkdirs();
+        return DBMaker.newFileDB(file);
+    }
+
+    protected static DBMaker dbMaker(Configuration configuration){
+        if(configuration==null) throw new IllegalArgumentException("configuration cannot be null");
+        StorageType storage = StorageType.valueOf(configuration.getString("blueprints.mapdb.storage", "FILE"));
+        String fileName = configuration.getString("blueprints.mapdb.file", null);
+        if(fileName==null && (storage==StorageType.FILE || storage==StorageType.MMAP))
+            throw new IllegalArgumentException("storage "+storage+" requires blueprints.mapdb.file");
+
+        DBMaker maker;
+        switch(storage){
+            case MMAP: maker = fileDB(fileName).mmapFileEnable(); break;
+            case MEMORY: maker = DBMaker.newMemoryDB(); break;
+            case DIRECT: maker = DBMaker.newDirectMemoryDB(); break;
+            default: maker = fileDB(fileName);
+        }
 
+        switch(CacheType.valueOf(configuration.getString("blueprints.mapdb.cache-type", "HASH_TABLE"))){
+            case LRU: maker.cacheLRUEnable(); break;
+            case HARD_REF: maker.cacheHardRefEnable(); break;
+            case WEAK_REF: maker.cacheWeakRefEnable(); break;
+            case SOFT_REF: maker.cacheSoftRefEnable(); break;
+            case DISABLED: maker.cacheDisable(); break;
+            default:
+        }
+        if(configuration.containsKey("blueprints.mapdb.cache-size"))
+            maker.cacheSize(configuration.getInt("blueprints.mapdb.cache-size"));
+
+        if(configuration.getBoolean("blueprints.mapdb.async-write", false)){
+            maker.asyncWriteEnable();
+            if(configuration.containsKey("blueprints.mapdb.async-write-queue-size"))
+                maker.asyncWriteQueueSize(configuration.getInt("blueprints.mapdb.async-write-queue-size"));
+            if(configuration.containsKey("blueprints.mapdb.async-write-flush-delay"))
+                maker.asyncWriteFlushDelay(configuration.getInt("blueprints.mapdb.async-write-flush-delay"));
+        }
+        return maker;
     }
 
     public MapDBGraph(DBMaker dbMaker, boolean useUserIds) {
+        this(dbMaker, useUserIds, 0, 0);
+    }
+
+    /**
+     * @param inlineProperties max number of properties held in a vertex record, the properties of a vertex
+     *                         with more are moved to the properties tree
+     * @param inlineEdges max number of incident edges held in a vertex record, the edges of a vertex with more
+     *                    are moved to the edges4vertice tree
+     */
+    public MapDBGraph(String fileName, boolean useUserIds, int inlineProperties, int inlineEdges) {
+        this(fileDB(fileName), useUserIds, inlineProperties, inlineEdges);
+    }
+
+    /**
+     * The inline limits are recorded in the store when it is created, a store that exists keeps its limits.
+     */
+    public MapDBGraph(DBMaker dbMaker, boolean useUserIds, int inlineProperties, int inlineEdges) {
+        this(dbMaker, useUserIds, inlineProperties, inlineEdges, null);
+    }
+
+    /**
+     * @param loader bulk load that writes the element records to the new store and gives the sources of its trees,
+     *               which are built with the data pump, see {@link MapDBBulkLoader}
+     */
+    protected MapDBGraph(DBMaker dbMaker, boolean useUserIds, int inlineProperties, int inlineEdges,
+                         MapDBBulkLoader loader) {
         db = dbMaker.make();
         engine = db.getEngine();
         this.useUserIds= useUserIds;
 
         vertices2recid = !useUserIds? null:
-                db.createHashMap("vertices2recid").<Object, Long>makeOrGet();
+                db.createHashMap("vertices2recid")
+                        .keySerializer(MapDBSerializers.VALUE)
+                        .<Object, Long>makeOrGet();
 
         edges2recid = !useUserIds? null:
-                db.createHashMap("edges2recid").<Object, Long>makeOrGet();
-
+                db.createHashMap("edges2recid")
+                        .keySerializer(MapDBSerializers.VALUE)
+                        .<Object, Long>makeOrGet();
+
+        //a store written before the layouts were recorded keeps everything in the trees
+        boolean written = db.exists("vertices") && !db.getTreeSet("vertices").isEmpty();
+        this.inlineProperties = layout("inlineProperties", inlineProperties, written);
+        this.inlineEdges = layout("inlineEdges", inlineEdges, written);
+        this.compactRecords = layout("compactRecords", 1, written)==1;
+        emptyRecord = this.inlineProperties==0 && this.inlineEdges==0? null:
+                new VertexRecord(this.inlineProperties==0, this.inlineEdges==0,
+                        new String[0], new Object[0], new boolean[0], new String[0], new long[0]);
+
+        if(loader==null) pumps = null;
+        else try{
+            pumps = loader.writeRecords(this);
+        }catch(RuntimeException e){
+            db.close();
+            throw e;
+        }
 
-        vertices = db.createTreeSet("vertices")
+        vertices = makeOrPump(db.createTreeSet("vertices")
                 .counterEnable()
-                .serializer(BTreeKeySerializer.ZERO_OR_POSITIVE_LONG)
-                .makeOrGet();
+                .serializer(BTreeKeySerializer.ZERO_OR_POSITIVE_LONG), "vertices", pump("vertices"));
 
-        edges = db.createTreeSet("edges")
+        edges = makeOrPump(db.createTreeSet("edges")
                 .counterEnable()
-                .serializer(BTreeKeySerializer.ZERO_OR_POSITIVE_LONG)
-                .makeOrGet();
+                .serializer(BTreeKeySerializer.ZERO_OR_POSITIVE_LONG), "edges", pump("edges"));
+
+        //a bulk load derives the adjacency from the edge records and the labels from the adjacency
+        edges4vertice = makeOrPump(db.createTreeSet("edges4vertice")
+                .serializer(BTreeKeySerializer.TUPLE4), "edges4vertice", pumps==null? null :
+                new MapDBBulkLoader.Expand<Long,Fun.Tuple4<Long,Boolean,String,Long>>(edges) {
+                    @Override
+                    protected void expand(Long recid, List<Fun.Tuple4<Long,Boolean,String,Long>> into) {
+                        MEdge edge = engine.get(recid, EDGE_SERIALIZER);
+                        into.add(Fun.t4(edge.out, true, edge.label, recid));
+                        into.add(Fun.t4(edge.in, false, edge.label, recid));
+                    }
+                });
+
+        edgesLabels = makeOrPump(db.createTreeSet("edgesLabels")
+                .serializer(BTreeKeySerializer.TUPLE2), "edgesLabels", pumps==null? null :
+                new MapDBBulkLoader.Expand<Fun.Tuple4<Long,Boolean,String,Long>,Fun.Tuple2<String,Long>>(edges4vertice) {
+                    @Override
+                    protected void expand(Fun.Tuple4<Long,Boolean,String,Long> t, List<Fun.Tuple2<String,Long>> into) {
+                        if(t.b) into.add(Fun.t2(t.c, t.d));
+                    }
+                });
 
-        edgesLabels = db.createTreeSet("edgesLabels")
-                .serializer(BTreeKeySerializer.TUPLE2)
-                .makeOrGet();
+        boolean degreesExist = db.exists("degrees");
+        DB.BTreeMapMaker degreesMaker = db.createTreeMap("degrees")
+                .keySerializer(BTreeKeySerializer.TUPLE3)
+                .valueSerializer(Serializer.LONG);
+        //a bulk load counts the runs of the adjacency, which the pump takes in descending order
+        degrees = pumps!=null && !degreesExist?
+                degreesMaker.pumpSource(new DegreeIterator(edges4vertice.descendingSet().iterator())).<Fun.Tuple3<Long,Boolean,String>,Long>make():
+                degreesMaker.<Fun.Tuple3<Long,Boolean,String>,Long>makeOrGet();
 
+        //the serializers are recorded in the catalog, a store that exists keeps the ones it was created with
+        edgesProps = makeOrPump(db.createTreeMap("edgesProps")
+                .keySerializer(MapDBSerializers.PROPERTY_KEY)
+                .valueSerializer(MapDBSerializers.VALUE), "edgesProps", pump("edgesProps"));
 
-        edges4vertice = db.createTreeSet("edges4vertice")
-                .serializer(BTreeKeySerializer.TUPLE4)
-                .makeOrGet();
-
-        edgesProps = db.createTreeMap("edgesProps")
-                .keySerializer(BTreeKeySerializer.TUPLE2)
-                .valuesOutsideNodesEnable()
-                .makeOrGet();
-
-        verticesProps = db.createTreeMap("verticesProps")
-                .keySerializer(BTreeKeySerializer.TUPLE2)
-                .valuesOutsideNodesEnable()
-                .makeOrGet();
+        verticesProps = makeOrPump(db.createTreeMap("verticesProps")
+                .keySerializer(MapDBSerializers.PROPERTY_KEY)
+                .valueSerializer(MapDBSerializers.VALUE), "verticesProps", pump("verticesProps"));
 
 
         verticesIndex = db.createTreeSet("verticesIndex")
@@ -464,6 +665,194 @@ public class MapDBGraph implements IndexableGraph,KeyIndexableGraph {
                 .serializer(BTreeKeySerializer.STRING)
                 .makeOrGet();
 
+        verticesIndex2Reverse = db.createTreeSet("verticesIndex2Reverse")
+                .serializer(BTreeKeySerializer.BASIC)
+                .makeOrGet();
+
+        edgesIndex2Reverse = db.createTreeSet("edgesIndex2Reverse")
+                .serializer(BTreeKeySerializer.BASIC)
+                .makeOrGet();
+
+        boolean propsKeysExist = db.exists("verticesPropsKeys");
+
+        //a bulk load derives the key entries from the properties
+        verticesPropsKeys = makeOrPump(db.createTreeSet("verticesPropsKeys")
+                .serializer(BTreeKeySerializer.TUPLE2), "verticesPropsKeys", pumps==null? null : new PropertyKeyIterator(verticesProps));
+
+        edgesPropsKeys = makeOrPump(db.createTreeSet("edgesPropsKeys")
+                .serializer(BTreeKeySerializer.TUPLE2), "edgesPropsKeys", pumps==null? null : new PropertyKeyIterator(edgesProps));
+
+        //stores created before the reverse entries existed
+        if(verticesIndex2Reverse.isEmpty()) reverseIndexEntries(verticesIndex2, verticesIndex2Reverse);
+        if(edgesIndex2Reverse.isEmpty()) reverseIndexEntries(edgesIndex2, edgesIndex2Reverse);
+
+        //stores created before the key entries existed
+        if(!propsKeysExist && pumps==null){
+            if(emptyRecord==null){
+                for(Fun.Tuple2<Long,String> t:verticesProps.keySet()) verticesPropsKeys.add(Fun.t2(t.b,t.a));
+            }else for(Long recid:vertices){
+                for(String key:vertexProperties(recid).keySet()) verticesPropsKeys.add(Fun.t2(key,recid));
+            }
+            for(Fun.Tuple2<Long,String> t:edgesProps.keySet()) edgesPropsKeys.add(Fun.t2(t.b,t.a));
+        }
+
+        //stores created before the degrees existed
+        if(!degreesExist && pumps==null){
+            for(Long recid:edges){
+                MEdge edge = engine.get(recid, EDGE_SERIALIZER);
+                addDegree(edge.out, true, edge.label, 1);
+                addDegree(edge.in, false, edge.label, 1);
+            }
+        }
+
+        //a rollback must not undo the collections of a new store
+        db.commit();
+    }
+
+    protected Iterator<?> pump(String name){
+        return pumps==null? null : pumps.get(name);
+    }
+
+    protected <E> NavigableSet<E> makeOrPump(DB.BTreeSetMaker maker, String name, Iterator<?> source){
+        if(source==null || db.exists(name)) return maker.makeOrGet();
+        return maker.pumpSource(source).pumpPresort(PUMP_BATCH).make();
+    }
+
+    /** the source of a map pump is a (key, value) tuple iterator, sorted here as map makers do not presort*/
+    protected <K,V> NavigableMap<K,V> makeOrPump(DB.BTreeMapMaker maker, String name, Iterator<?> source){
+        if(source==null || db.exists(name)) return maker.makeOrGet();
+        Comparator<Fun.Tuple2<K,V>> descendingKeys = new Comparator<Fun.Tuple2<K,V>>() {
+            @Override
+            public int compare(Fun.Tuple2<K,V> o1, Fun.Tuple2<K,V> o2) {
+                return ((Comparable) o2.a).compareTo(o1.a);
+            }
+        };
+        Iterator<Fun.Tuple2<K,V>> sorted = Pump.sort((Iterator<Fun.Tuple2<K,V>>) source, false, PUMP_BATCH, descendingKeys, db.getDefaultSerializer());
+        return maker.pumpSource(sorted).make();
+    }
+
+    /** the recids in all of the (key, value) entries of an index, found by seeking each entry to the largest recid so far*/
+    protected static class IntersectionIterator implements Iterator<Long>{
+        protected final NavigableSet<Fun.Tuple3<String,Object,Long>> index;
+        protected final Comparator<Fun.Tuple3<String,Object,Long>> comparator;
+        protected final List<Fun.Tuple3<String,Object,Long>> entries;
+        protected Long from = null;
+        protected Long next;
+
+        /** @param entries the upper bounds (key, value, HI) of the entries*/
+        public IntersectionIterator(NavigableSet<Fun.Tuple3<String,Object,Long>> index, List<Fun.Tuple3<String,Object,Long>> entries) {
+            this.index = index;
+            this.entries = entries;
+            comparator = (Comparator) index.comparator();
+            next = seek();
+        }
+
+        protected Long seek(){
+            Long target = from;
+            int agreed = 0;
+            for(int i=0;agreed<entries.size();i=(i+1)%entries.size()){
+                Fun.Tuple3<String,Object,Long> hi = entries.get(i);
+                Fun.Tuple3<String,Object,Long> t = index.ceiling(Fun.t3(hi.a,hi.b,target));
+                if(t==null || comparator.compare(t,hi)>=0) return null;
+                if(t.c.equals(target)) agreed++;
+                else{
+                    target = t.c;
+                    agreed = 1;
+                }
+            }
+            from = target+1;
+            return target;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next!=null;
+        }
+
+        @Override
+        public Long next() {
+            if(next==null) throw new NoSuchElementException();
+            Long ret = next;
+            next = seek();
+            return ret;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /** the (key, recid) entries of the keys of a properties tree*/
+    protected static class PropertyKeyIterator extends MapDBBulkLoader.Expand<Fun.Tuple2<Long,String>,Fun.Tuple2<String,Long>>{
+        public PropertyKeyIterator(NavigableMap<Fun.Tuple2<Long,String>,Object> props) {
+            super(props.keySet());
+        }
+
+        @Override
+        protected void expand(Fun.Tuple2<Long,String> t, List<Fun.Tuple2<String,Long>> into) {
+            into.add(Fun.t2(t.b, t.a));
+        }
+    }
+
+    /** counts the runs of equal (vertex recid, out, label) in the adjacency*/
+    protected static class DegreeIterator implements Iterator<Fun.Tuple2<Fun.Tuple3<Long,Boolean,String>,Long>>{
+        protected final Iterator<Fun.Tuple4<Long,Boolean,String,Long>> i;
+        protected Fun.Tuple4<Long,Boolean,String,Long> next;
+
+        public DegreeIterator(Iterator<Fun.Tuple4<Long,Boolean,String,Long>> i) {
+            this.i = i;
+            next = i.hasNext()? i.next() : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next!=null;
+        }
+
+        @Override
+        public Fun.Tuple2<Fun.Tuple3<Long,Boolean,String>,Long> next() {
+            if(next==null) throw new NoSuchElementException();
+            Fun.Tuple3<Long,Boolean,String> key = Fun.t3(next.a, next.b, next.c);
+            long count = 0;
+            while(next!=null && next.a.equals(key.a) && next.b.equals(key.b) && next.c.equals(key.c)){
+                count++;
+                next = i.hasNext()? i.next() : null;
+            }
+            return Fun.t2(key, count);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    protected int layout(String name, int requested, boolean written){
+        if(requested<0) throw new IllegalArgumentException(name);
+        if(db.exists(name)) return db.getAtomicInteger(name).get();
+        int value = written? 0 : requested;
+        db.createAtomicInteger(name, value);
+        return value;
+    }
+
+    protected static void reverseIndexEntries(NavigableSet<Fun.Tuple4<String,String,Object,Long>> index,
+                                              NavigableSet<Fun.Tuple4<Long,String,String,Object>> reverse){
+        for(Fun.Tuple4<String,String,Object,Long> t:index){
+            reverse.add(Fun.t4(t.d,t.a,t.b,t.c));
+        }
+    }
+
+    /** removes the manual index entries of an element, found through the reverse entries*/
+    protected static void removeIndexEntries(NavigableSet<Fun.Tuple4<String,String,Object,Long>> index,
+                                             NavigableSet<Fun.Tuple4<Long,String,String,Object>> reverse, Long recid){
+        Iterator<Fun.Tuple4<Long,String,String,Object>> iter =
+                reverse.subSet(Fun.t4(recid,(String)null,(String)null,null),Fun.t4(recid,Fun.<String>HI(),Fun.<String>HI(),Fun.HI())).iterator();
+        while(iter.hasNext()){
+            Fun.Tuple4<Long,String,String,Object> t = iter.next();
+            index.remove(Fun.t4(t.b,t.c,t.d,recid));
+            iter.remove();
+        }
     }
 
 
@@ -522,22 +911,408 @@ public class MapDBGraph implements IndexableGraph,KeyIndexableGraph {
 
     protected final MVertex VERTEX_EMPTY = new MVertex(null);
 
-    @Override
-    public Vertex addVertex(Object id) {
-        //preallocate recid
-        Long recid = engine.put(VERTEX_EMPTY,VERTEX_SERIALIZER);
+    /**
+     * Inline part of a vertex record: up to inlineProperties properties and up to inlineEdges incident edges.
+     * A vertex that outgrows a limit has its properties or edges moved to the trees, where they stay.
+     * Records are immutable, a change writes a new record.
+     */
+    protected static final class VertexRecord{
+        protected final boolean propsOverflow;
+        protected final boolean edgesOverflow;
+
+        protected final String[] keys;
+        protected final Object[] values;
+
+        /** direction (out=true), label and recid of the incident edges*/
+        protected final boolean[] outs;
+        protected final String[] labels;
+        protected final long[] edgeRecids;
+
+        protected VertexRecord(boolean propsOverflow, boolean edgesOverflow, String[] keys, Object[] values,
+                               boolean[] outs, String[] labels, long[] edgeRecids) {
+            this.propsOverflow = propsOverflow;
+            this.edgesOverflow = edgesOverflow;
+            this.keys = keys;
+            this.values = values;
+            this.outs = outs;
+            this.labels = labels;
+            this.edgeRecids = edgeRecids;
+        }
 
-        if(id==null) id=recid;
-        if(useUserIds){
-            vertices2recid.put(id,recid);
+        protected int indexOf(String key){
+            for(int i=0;i<keys.length;i++){
+                if(keys[i].equals(key)) return i;
+            }
+            return -1;
+        }
+
+        protected VertexRecord withProperty(String key, Object value){
+            int i = indexOf(key);
+            String[] keys2 = i<0? Arrays.copyOf(keys, keys.length+1) : keys;
+            Object[] values2 = Arrays.copyOf(values, keys2.length);
+            if(i<0) i = keys.length;
+            keys2[i] = key;
+            values2[i] = value;
+            return new VertexRecord(propsOverflow, edgesOverflow, keys2, values2, outs, labels, edgeRecids);
+        }
+
+        protected VertexRecord withoutProperty(int i){
+            String[] keys2 = new String[keys.length-1];
+            Object[] values2 = new Object[keys2.length];
+            System.arraycopy(keys,0,keys2,0,i);
+            System.arraycopy(keys,i+1,keys2,i,keys2.length-i);
+            System.arraycopy(values,0,values2,0,i);
+            System.arraycopy(values,i+1,values2,i,values2.length-i);
+            return new VertexRecord(propsOverflow, edgesOverflow, keys2, values2, outs, labels, edgeRecids);
+        }
+
+        protected VertexRecord withPropsOverflow(){
+            return new VertexRecord(true, edgesOverflow, new String[0], new Object[0], outs, labels, edgeRecids);
+        }
+
+        protected VertexRecord withEdge(boolean out, String label, long edgeRecid){
+            boolean[] outs2 = Arrays.copyOf(outs, outs.length+1);
+            String[] labels2 = Arrays.copyOf(labels, outs2.length);
+            long[] edgeRecids2 = Arrays.copyOf(edgeRecids, outs2.length);
+            outs2[outs.length] = out;
+            labels2[outs.length] = label;
+            edgeRecids2[outs.length] = edgeRecid;
+            return new VertexRecord(propsOverflow, edgesOverflow, keys, values, outs2, labels2, edgeRecids2);
+        }
+
+        protected VertexRecord withoutEdge(boolean out, long edgeRecid){
+            int i = 0;
+            while(i<outs.length && (outs[i]!=out || edgeRecids[i]!=edgeRecid)) i++;
+            if(i==outs.length) return this;
+            boolean[] outs2 = new boolean[outs.length-1];
+            String[] labels2 = new String[outs2.length];
+            long[] edgeRecids2 = new long[outs2.length];
+            System.arraycopy(outs,0,outs2,0,i);
+            System.arraycopy(outs,i+1,outs2,i,outs2.length-i);
+            System.arraycopy(labels,0,labels2,0,i);
+            System.arraycopy(labels,i+1,labels2,i,labels2.length-i);
+            System.arraycopy(edgeRecids,0,edgeRecids2,0,i);
+            System.arraycopy(edgeRecids,i+1,edgeRecids2,i,edgeRecids2.length-i);
+            return new VertexRecord(propsOverflow, edgesOverflow, keys, values, outs2, labels2, edgeRecids2);
+        }
+
+        protected VertexRecord withEdgesOverflow(){
+            return new VertexRecord(propsOverflow, true, keys, values, new boolean[0], new String[0], new long[0]);
+        }
+
+        /** the keys and labels are written once and referred to by their packed position, as an adjacency
+         * repeats a few labels many times, the values are written as in the properties trees*/
+        protected void serialize(DataOutput out) throws IOException {
+            out.writeByte((propsOverflow?1:0) | (edgesOverflow?2:0));
+            Map<String,Integer> codes = new HashMap<String,Integer>();
+            List<String> strings = new ArrayList<String>();
+            for(String key:keys) intern(codes, strings, key);
+            for(String label:labels) intern(codes, strings, label);
+            DataOutput2.packInt(out, strings.size());
+            for(String s:strings) MapDBSerializers.writeString(out, s);
+
+            DataOutput2.packInt(out, keys.length);
+            for(int i=0;i<keys.length;i++){
+                DataOutput2.packInt(out, codes.get(keys[i]));
+                MapDBSerializers.VALUE.serialize(out, values[i]);
+            }
+            DataOutput2.packInt(out, outs.length);
+            for(int i=0;i<outs.length;i++){
+                //the direction is the lowest bit of the label code
+                DataOutput2.packInt(out, codes.get(labels[i])<<1 | (outs[i]?1:0));
+                DataOutput2.packLong(out, edgeRecids[i]);
+            }
+        }
+
+        private static void intern(Map<String,Integer> codes, List<String> strings, String s){
+            if(!codes.containsKey(s)){
+                codes.put(s, strings.size());
+                strings.add(s);
+            }
+        }
+
+        protected static VertexRecord deserialize(DataInput in) throws IOException {
+            int flags = in.readByte();
+            String[] strings = new String[DataInput2.unpackInt(in)];
+            for(int i=0;i<strings.length;i++) strings[i] = MapDBSerializers.readString(in);
+
+            String[] keys = new String[DataInput2.unpackInt(in)];
+            Object[] values = new Object[keys.length];
+            for(int i=0;i<keys.length;i++){
+                keys[i] = strings[DataInput2.unpackInt(in)];
+                values[i] = MapDBSerializers.VALUE.deserialize(in, -1);
+            }
+            boolean[] outs = new boolean[DataInput2.unpackInt(in)];
+            String[] labels = new String[outs.length];
+            long[] edgeRecids = new long[outs.length];
+            for(int i=0;i<outs.length;i++){
+                int code = DataInput2.unpackInt(in);
+                outs[i] = (code&1)!=0;
+                labels[i] = strings[code>>>1];
+                edgeRecids[i] = DataInput2.unpackLong(in);
+            }
+            return new VertexRecord((flags&1)!=0, (flags&2)!=0, keys, values, outs, labels, edgeRecids);
+        }
+    }
+
+    /** the stored vertex with the inline part of its record, null if the layout is not inline*/
+    protected MVertex storedVertex(Long recid){
+        return emptyRecord==null? null : engine.get(recid, VERTEX_SERIALIZER);
+    }
+
+    protected Object vertexProperty(Long recid, String key){
+        MVertex stored = storedVertex(recid);
+        if(stored==null || stored.record.propsOverflow) return verticesProps.get(Fun.t2(recid, key));
+        int i = stored.record.indexOf(key);
+        return i<0? null : stored.record.values[i];
+    }
+
+    protected Map<String,Object> vertexProperties(Long recid){
+        Map<String,Object> ret = new HashMap<String,Object>();
+        MVertex stored = storedVertex(recid);
+        if(stored==null || stored.record.propsOverflow){
+            for(Map.Entry<Fun.Tuple2<Long,String>,Object> e:
+                    verticesProps.subMap(Fun.t2(recid,(String)null),Fun.t2(recid,Fun.<String>HI())).entrySet()){
+                ret.put(e.getKey().b, e.getValue());
+            }
         }else{
-            id = recid;
+            for(int i=0;i<stored.record.keys.length;i++){
+                ret.put(stored.record.keys[i], stored.record.values[i]);
+            }
         }
+        return ret;
+    }
 
-        //and insert real value
-        MVertex v = new MVertex(id);
-        engine.update(recid, v, VERTEX_SERIALIZER);
+    protected Object putVertexProperty(Long recid, String key, Object value){
+        Object oldVal = putVertexProperty2(recid, key, value);
+        if(oldVal==null) verticesPropsKeys.add(Fun.t2(key,recid));
+        return oldVal;
+    }
+
+    private Object putVertexProperty2(Long recid, String key, Object value){
+        MVertex stored = storedVertex(recid);
+        if(stored==null || stored.record.propsOverflow) return verticesProps.put(Fun.t2(recid,key),value);
+        VertexRecord record = stored.record;
+        int i = record.indexOf(key);
+        if(i<0 && record.keys.length>=inlineProperties){
+            //move all properties to the tree
+            for(int j=0;j<record.keys.length;j++){
+                verticesProps.put(Fun.t2(recid,record.keys[j]),record.values[j]);
+            }
+            engine.update(recid, new MVertex(stored.id, record.withPropsOverflow()), VERTEX_SERIALIZER);
+            return verticesProps.put(Fun.t2(recid,key),value);
+        }
+        engine.update(recid, new MVertex(stored.id, record.withProperty(key, value)), VERTEX_SERIALIZER);
+        return i<0? null : record.values[i];
+    }
+
+    protected Object removeVertexProperty(Long recid, String key){
+        Object ret = removeVertexProperty2(recid, key);
+        if(ret!=null) verticesPropsKeys.remove(Fun.t2(key,recid));
+        return ret;
+    }
+
+    private Object removeVertexProperty2(Long recid, String key){
+        MVertex stored = storedVertex(recid);
+        if(stored==null || stored.record.propsOverflow) return verticesProps.remove(Fun.t2(recid, key));
+        int i = stored.record.indexOf(key);
+        if(i<0) return null;
+        engine.update(recid, new MVertex(stored.id, stored.record.withoutProperty(i)), VERTEX_SERIALIZER);
+        return stored.record.values[i];
+    }
+
+    /** removes the properties of a vertex from the tree, inline properties go with the record*/
+    protected Map<String,Object> removeVertexProperties(Long recid){
+        Map<String,Object> ret = vertexProperties(recid);
+        verticesProps.subMap(Fun.t2(recid,(String)null),Fun.t2(recid,Fun.<String>HI())).clear();
+        for(String key:ret.keySet()) verticesPropsKeys.remove(Fun.t2(key,recid));
+        return ret;
+    }
+
+    /** recids of the edges of a vertex, read from the record or the tree when iterated */
+    protected Iterable<Long> adjacentEdges(final Long recid, final boolean out, final String label){
+        final Iterable<Long> tree = Fun.filter(edges4vertice, recid, out, label);
+        if(emptyRecord==null) return tree;
+        return new Iterable<Long>() {
+            @Override
+            public Iterator<Long> iterator() {
+                final MVertex stored = storedVertex(recid);
+                if(stored==null || stored.record.edgesOverflow) return tree.iterator();
+                final VertexRecord record = stored.record;
+                return new Iterator<Long>() {
+                    int next = advance(0);
+
+                    int advance(int i){
+                        while(i<record.outs.length && (record.outs[i]!=out || (label!=null && !label.equals(record.labels[i]))))
+                            i++;
+                        return i;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return next<record.outs.length;
+                    }
+
+                    @Override
+                    public Long next() {
+                        if(!hasNext()) throw new NoSuchElementException();
+                        long ret = record.edgeRecids[next];
+                        next = advance(next+1);
+                        return ret;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    protected void addAdjacentEdge(Long recid, boolean out, String label, Long edgeRecid){
+        addAdjacentEdge2(recid, out, label, edgeRecid);
+        addDegree(recid, out, label, 1);
+    }
+
+    private void addAdjacentEdge2(Long recid, boolean out, String label, Long edgeRecid){
+        MVertex stored = storedVertex(recid);
+        if(stored==null || stored.record.edgesOverflow){
+            edges4vertice.add(Fun.t4(recid,out,label,edgeRecid));
+            return;
+        }
+        VertexRecord record = stored.record;
+        if(record.outs.length>=inlineEdges){
+            //move all edges to the tree
+            for(int i=0;i<record.outs.length;i++){
+                edges4vertice.add(Fun.t4(recid,record.outs[i],record.labels[i],record.edgeRecids[i]));
+            }
+            edges4vertice.add(Fun.t4(recid,out,label,edgeRecid));
+            engine.update(recid, new MVertex(stored.id, record.withEdgesOverflow()), VERTEX_SERIALIZER);
+            return;
+        }
+        engine.update(recid, new MVertex(stored.id, record.withEdge(out, label, edgeRecid)), VERTEX_SERIALIZER);
+    }
+
+    protected void removeAdjacentEdge(Long recid, boolean out, String label, Long edgeRecid){
+        if(removeAdjacentEdge2(recid, out, label, edgeRecid))
+            addDegree(recid, out, label, -1);
+    }
+
+    private boolean removeAdjacentEdge2(Long recid, boolean out, String label, Long edgeRecid){
+        MVertex stored = storedVertex(recid);
+        if(stored==null || stored.record.edgesOverflow){
+            return edges4vertice.remove(Fun.t4(recid,out,label,edgeRecid));
+        }
+        VertexRecord record = stored.record.withoutEdge(out, edgeRecid);
+        if(record==stored.record) return false;
+        engine.update(recid, new MVertex(stored.id, record), VERTEX_SERIALIZER);
+        return true;
+    }
+
+    protected void addDegree(Long recid, boolean out, String label, long delta){
+        Fun.Tuple3<Long,Boolean,String> key = Fun.t3(recid, out, label);
+        Long degree = degrees.get(key);
+        long value = (degree==null?0:degree) + delta;
+        if(value==0) degrees.remove(key);
+        else degrees.put(key, value);
+    }
+
+    /** number of edges of a vertex in a direction, with any label if the label is null*/
+    protected long degree(Long recid, boolean out, String label){
+        if(label!=null){
+            Long degree = degrees.get(Fun.t3(recid, out, label));
+            return degree==null? 0 : degree;
+        }
+        long ret = 0;
+        for(Long degree:degrees.subMap(Fun.t3(recid,out,(String)null),Fun.t3(recid,out,Fun.<String>HI())).values()){
+            ret += degree;
+        }
+        return ret;
+    }
+
+    /**
+     * Counts from the degrees unless the query has property predicates,
+     * the degree of a vertex without labels sums the degrees of its labels.
+     */
+    protected class MVertexQuery extends DefaultVertexQuery{
+
+        public MVertexQuery(MVertex vertex) {
+            super(vertex);
+        }
+
+        @Override
+        public long count() {
+            if(!hasContainers.isEmpty()) return super.count();
+            Long recid = vertexRecid(vertex.getId());
+            String[] labels = this.labels.length==0? new String[]{null} : this.labels;
+            long ret = 0;
+            for(String label:labels){
+                if(Direction.IN != direction) ret += degree(recid, true, label);
+                if(Direction.OUT != direction) ret += degree(recid, false, label);
+            }
+            return Math.min(ret, limit);
+        }
+
+        @Override
+        public Projection properties(String... keys) {
+            return new MProjection(this, keys);
+        }
+    }
+
+    /**
+     * Reads the projected keys of an element with its recid looked up once,
+     * from the inline record the vertex was read with or from the properties trees.
+     */
+    protected class MProjection extends DefaultProjection{
+
+        public MProjection(Query query, String... keys) {
+            super(query, keys);
+        }
+
+        @Override
+        protected Map<String, Object> project(Element element) {
+            Map<String,Object> ret = new HashMap<String,Object>();
+            boolean isVertex = element instanceof MVertex;
+            Long recid = isVertex? vertexRecid(element.getId()) : edgeRecid(element.getId());
+            VertexRecord record = null;
+            if(isVertex){
+                record = ((MVertex) element).record;
+                MVertex stored = record==null? storedVertex(recid) : null;
+                if(stored!=null) record = stored.record;
+                if(record!=null && record.propsOverflow) record = null;
+            }
+            for(String key:keys){
+                Object value;
+                if(StringFactory.ID.equals(key)) value = element.getId();
+                else if(!isVertex && StringFactory.LABEL.equals(key)) value = ((Edge) element).getLabel();
+                else if(!isVertex) value = edgesProps.get(Fun.t2(recid,key));
+                else if(record==null) value = verticesProps.get(Fun.t2(recid,key));
+                else{
+                    int i = record.indexOf(key);
+                    value = i<0? null : record.values[i];
+                }
+                if(value!=null) ret.put(key,value);
+            }
+            return ret;
+        }
+    }
+
+    @Override
+    public Vertex addVertex(Object id) {
+        Long recid = engine.preallocate();
+        MVertex v = writeVertex(recid, id);
         vertices.add(recid);
+        mutated();
+        return v;
+    }
+
+    /** writes the record of a new vertex to its preallocated recid, which is its id unless user ids are used*/
+    protected MVertex writeVertex(Long recid, Object id){
+        if(id==null || !useUserIds) id = recid;
+        if(useUserIds) vertices2recid.put(id,recid);
+        MVertex v = new MVertex(id, emptyRecord);
+        engine.update(recid, v, VERTEX_SERIALIZER);
         return v;
     }
 
@@ -574,22 +1349,9 @@ public class MapDBGraph implements IndexableGraph,KeyIndexableGraph {
             @Override
             public Iterator<Vertex> iterator() {
 
-                boolean indexed = verticesKeys.contains(key);
-
-                Set<Long> longs=null;
-
-                if(!indexed){
-                    //traverse all
-                    longs = new HashSet<Long>();
-                    for(Map.Entry<Fun.Tuple2<Long,String>,Object> e:verticesProps.entrySet()){
-                        if(e.getKey().b.equals(key)&& e.getValue().equals(value))
-                            longs.add(e.getKey().a);
-                    }
-                }
-
-                final Iterator<Long> i = indexed?
-                        Fun.filter(verticesIndex,key,value).iterator():longs.iterator();
-
+                Iterator<Long> i = verticesKeys.contains(key)?
+                        Fun.filter(verticesIndex,key,value).iterator():
+                        new PropertyFilterIterator(Fun.filter(verticesPropsKeys,key).iterator(),true,key,value);
 
                 return new MVertexRecidIterator(i);
             }
@@ -599,20 +1361,22 @@ public class MapDBGraph implements IndexableGraph,KeyIndexableGraph {
 
     @Override
     public Edge addEdge(Object id, Vertex outVertex, Vertex inVertex, String label) {
-        Long recid = engine.put(EDGE_EMPTY, EDGE_SERIALIZER);
-        if(id==null) id = recid;
-        if(useUserIds){
-            edges2recid.put(id,recid);
-        }else{
-            id = recid;
-        }
-
-        MEdge edge = new MEdge(id,vertexRecid(outVertex.getId()), vertexRecid(inVertex.getId()),label);
+        Long recid = engine.preallocate();
+        MEdge edge = writeEdge(recid, id, vertexRecid(outVertex.getId()), vertexRecid(inVertex.getId()), label);
         edges.add(recid);
-        engine.update(recid,edge,EDGE_SERIALIZER);
-        edges4vertice.add(Fun.t4(edge.out,true,label,recid));
-        edges4vertice.add(Fun.t4(edge.in,false,label,recid));
+        addAdjacentEdge(edge.out,true,label,recid);
+        addAdjacentEdge(edge.in,false,label,recid);
         edgesLabels.add(Fun.t2(label, recid));
+        mutated();
+        return edge;
+    }
+
+    /** writes the record of a new edge to its preallocated recid, which is its id unless user ids are used*/
+    protected MEdge writeEdge(Long recid, Object id, long out, long in, String label){
+        if(id==null || !useUserIds) id = recid;
+        if(useUserIds) edges2recid.put(id,recid);
+        MEdge edge = new MEdge(id, out, in, label);
+        engine.update(recid, edge, EDGE_SERIALIZER);
         return edge;
     }
 
@@ -655,6 +1419,45 @@ public class MapDBGraph implements IndexableGraph,KeyIndexableGraph {
         }
     }
 
+    /** recids of the elements with a property key, filtered by the value as they are iterated*/
+    protected class PropertyFilterIterator implements Iterator<Long>{
+        protected final Iterator<Long> i;
+        protected final boolean isVertex;
+        protected final String key;
+        protected final Object value;
+        protected Long next;
+
+        public PropertyFilterIterator(Iterator<Long> i, boolean isVertex, String key, Object value) {
+            this.i = i;
+            this.isVertex = isVertex;
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while(next==null && i.hasNext()){
+                Long recid = i.next();
+                Object v = isVertex? vertexProperty(recid,key) : edgesProps.get(Fun.t2(recid,key));
+                if(value.equals(v)) next = recid;
+            }
+            return next!=null;
+        }
+
+        @Override
+        public Long next() {
+            if(!hasNext()) throw new NoSuchElementException();
+            Long ret = next;
+            next = null;
+            return ret;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
     public class MEdgeRecidIterator implements Iterator<Edge>{
         protected final Iterator<Long> i;
 
@@ -703,21 +1506,9 @@ public class MapDBGraph implements IndexableGraph,KeyIndexableGraph {
             @Override
             public Iterator<Edge> iterator() {
 
-                boolean indexed = edgesKeys.contains(key);
-
-                Set<Long> longs=null;
-
-                if(!indexed){
-                    //traverse all
-                    longs = new HashSet<Long>();
-                    for(Map.Entry<Fun.Tuple2<Long,String>,Object> e:edgesProps.entrySet()){
-                        if(e.getKey().b.equals(key)&& e.getValue().equals(value))
-                            longs.add(e.getKey().a);
-                    }
-                }
-
-                 Iterator<Long> i= indexed?
-                        Fun.filter(edgesIndex,key,value).iterator():longs.iterator();
+                Iterator<Long> i = edgesKeys.contains(key)?
+                        Fun.filter(edgesIndex,key,value).iterator():
+                        new PropertyFilterIterator(Fun.filter(edgesPropsKeys,key).iterator(),false,key,value);
 
                 return new MEdgeRecidIterator(i);
             }
@@ -726,7 +1517,156 @@ public class MapDBGraph implements IndexableGraph,KeyIndexableGraph {
 
     @Override
     public GraphQuery query() {
-        return new DefaultGraphQuery(this);
+        return new MGraphQuery();
+    }
+
+    /**
+     * Serves greater than, less than and interval predicates on an indexed key from a subset of the
+     * (key, value, recid) index. The limit is applied to the subset if the range is all the query asks for.
+     * Values of one key are all of one class, as the index can not order others, so bounds of another class
+     * are left to the filter.
+     */
+    protected class MGraphQuery extends DefaultGraphQuery{
+
+        public MGraphQuery() {
+            super(MapDBGraph.this);
+        }
+
+        @Override
+        protected AccessPath getAccessPath(Class<? extends Element> elementClass) {
+            final boolean isVertex = Vertex.class.isAssignableFrom(elementClass);
+            Set<String> keys = isVertex?verticesKeys:edgesKeys;
+
+            String rangeKey = null;
+            for(HasContainer hasContainer:hasContainers){
+                if(!keys.contains(hasContainer.key)) continue;
+                if(compare(hasContainer.predicate)==com.tinkerpop.blueprints.Compare.EQUAL) return super.getAccessPath(elementClass);
+                if(rangeKey==null && isRange(hasContainer)) rangeKey = hasContainer.key;
+            }
+            if(rangeKey==null) return super.getAccessPath(elementClass);
+
+            NavigableSet<Fun.Tuple3<String,Object,Long>> index = isVertex?verticesIndex:edgesIndex;
+            Comparator<Fun.Tuple3<String,Object,Long>> comparator = (Comparator) index.comparator();
+            Fun.Tuple3<String,Object,Long> lo = Fun.t3(rangeKey,null,null);
+            Fun.Tuple3<String,Object,Long> hi = Fun.t3(rangeKey,Fun.HI(),Fun.<Long>HI());
+            Fun.Tuple3<String,Object,Long> first = index.ceiling(lo);
+            //no element has the key, so none is in range
+            if(first==null || !rangeKey.equals(first.a)) return new AccessPath(Collections.emptyList());
+
+            boolean exact = true;
+            for(HasContainer hasContainer:hasContainers){
+                if(!hasContainer.key.equals(rangeKey) || !isRange(hasContainer)
+                        || hasContainer.value.getClass()!=first.b.getClass()){
+                    exact = false;
+                    continue;
+                }
+                com.tinkerpop.blueprints.Compare compare = compare(hasContainer.predicate);
+                //bounds after all recids of the value include it from below and exclude it from above
+                boolean after = compare==com.tinkerpop.blueprints.Compare.GREATER_THAN
+                        || compare==com.tinkerpop.blueprints.Compare.LESS_THAN_EQUAL;
+                Fun.Tuple3<String,Object,Long> bound = after?
+                        Fun.t3(rangeKey,hasContainer.value,Fun.<Long>HI()):Fun.t3(rangeKey,hasContainer.value,(Long)null);
+                if(compare==com.tinkerpop.blueprints.Compare.GREATER_THAN
+                        || compare==com.tinkerpop.blueprints.Compare.GREATER_THAN_EQUAL){
+                    if(comparator.compare(bound,lo)>0) lo = bound;
+                }else{
+                    if(comparator.compare(bound,hi)<0) hi = bound;
+                }
+            }
+            if(comparator.compare(lo,hi)>=0) return new AccessPath(Collections.emptyList());
+
+            final Set<Fun.Tuple3<String,Object,Long>> range = index.subSet(lo,hi);
+            final int max = exact? limit : Integer.MAX_VALUE;
+            final Iterable<Long> recids = new Iterable<Long>() {
+                @Override
+                public Iterator<Long> iterator() {
+                    final Iterator<Fun.Tuple3<String,Object,Long>> i = range.iterator();
+                    return new Iterator<Long>() {
+                        int count = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return count<max && i.hasNext();
+                        }
+
+                        @Override
+                        public Long next() {
+                            if(!hasNext()) throw new NoSuchElementException();
+                            count++;
+                            return i.next().c;
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+            };
+            if(isVertex) return new AccessPath(new Iterable<Vertex>() {
+                @Override
+                public Iterator<Vertex> iterator() {
+                    return new MVertexRecidIterator(recids.iterator());
+                }
+            });
+            return new AccessPath(new Iterable<Edge>() {
+                @Override
+                public Iterator<Edge> iterator() {
+                    return new MEdgeRecidIterator(recids.iterator());
+                }
+            });
+        }
+
+        /** counts the index entries of the value, up to a bound as every entry is read*/
+        @Override
+        protected long estimateCount(Class<? extends Element> elementClass, HasContainer hasContainer) {
+            NavigableSet<Fun.Tuple3<String,Object,Long>> index = Vertex.class.isAssignableFrom(elementClass)?verticesIndex:edgesIndex;
+            Iterator<Long> i = Fun.filter(index,hasContainer.key,hasContainer.value).iterator();
+            long count = 0;
+            while(count<ESTIMATE_BOUND && i.hasNext()){
+                i.next();
+                count++;
+            }
+            return count;
+        }
+
+        @Override
+        public Projection properties(String... keys) {
+            return new MProjection(this, keys);
+        }
+
+        /** leapfrogs over the index entries, whose recids are ascending, so only the common recids are read*/
+        @Override
+        protected Iterable<?> getIntersection(Class<? extends Element> elementClass, final List<HasContainer> containers) {
+            final NavigableSet<Fun.Tuple3<String,Object,Long>> index = Vertex.class.isAssignableFrom(elementClass)?verticesIndex:edgesIndex;
+            final List<Fun.Tuple3<String,Object,Long>> entries = new ArrayList<Fun.Tuple3<String,Object,Long>>();
+            for(HasContainer c:containers) entries.add(Fun.t3(c.key,c.value,Fun.<Long>HI()));
+            if(Vertex.class.isAssignableFrom(elementClass)) return new Iterable<Vertex>() {
+                @Override
+                public Iterator<Vertex> iterator() {
+                    return new MVertexRecidIterator(new IntersectionIterator(index, entries));
+                }
+            };
+            return new Iterable<Edge>() {
+                @Override
+                public Iterator<Edge> iterator() {
+                    return new MEdgeRecidIterator(new IntersectionIterator(index, entries));
+                }
+            };
+        }
+
+        protected boolean isRange(HasContainer hasContainer){
+            com.tinkerpop.blueprints.Compare compare = compare(hasContainer.predicate);
+            return hasContainer.value!=null && compare!=null && compare!=com.tinkerpop.blueprints.Compare.EQUAL
+                    && compare!=com.tinkerpop.blueprints.Compare.NOT_EQUAL;
+        }
+
+        /** Compare inside a query is the deprecated Query.Compare, which is mapped to the current one*/
+        protected com.tinkerpop.blueprints.Compare compare(Predicate predicate){
+            if(predicate instanceof com.tinkerpop.blueprints.Compare) return (com.tinkerpop.blueprints.Compare) predicate;
+            if(predicate instanceof Query.Compare) return com.tinkerpop.blueprints.Compare.valueOf(((Query.Compare) predicate).name());
+            return null;
+        }
     }
 
     @Override
@@ -736,6 +1676,48 @@ public class MapDBGraph implements IndexableGraph,KeyIndexableGraph {
         db.close();
     }
 
+    @Override
+    public void commit() {
+        mutations = 0;
+        db.commit();
+    }
+
+    @Override
+    public void rollback() {
+        mutations = 0;
+        db.rollback();
+    }
+
+    @Deprecated
+    @Override
+    public void stopTransaction(Conclusion conclusion) {
+        if(Conclusion.SUCCESS == conclusion) commit();
+        else rollback();
+    }
+
+    /**
+     * Commit the transaction every given number of mutations, so a bulk load is written in chunks
+     * and the uncommitted changes held by the store stay bounded.
+     *
+     * @param mutations number of mutations per commit, 0 to only commit when asked to
+     */
+    public void setCommitEvery(int mutations) {
+        if(mutations<0) throw new IllegalArgumentException();
+        this.commitEvery = mutations;
+    }
+
+    public int getCommitEvery() {
+        return commitEvery;
+    }
+
+    /** counts a mutation and commits if the commit batch is full, called once by every public graph operation
+     * after it is complete.
+     * Only the back-fill of a key index is split across commits, it counts each entry and the key is indexed once all
+     * of its entries are written. Entries left by a back-fill that was rolled back are cleared by the next one.*/
+    protected void mutated() {
+        if(commitEvery>0 && ++mutations>=commitEvery) commit();
+    }
+
     @Override
     public Features getFeatures() {
         Features f = new Features();
@@ -763,13 +1745,14 @@ public class MapDBGraph implements IndexableGraph,KeyIndexableGraph {
         f.supportsEdgeKeyIndex = true;
         f.supportsVertexIndex = true;
         f.supportsEdgeIndex = true;
-        f.supportsTransactions = false;
+        f.supportsTransactions = true;
         f.supportsVertexIteration = true;
         f.supportsEdgeIteration = true;
         f.supportsEdgeRetrieval = true;
         f.supportsVertexProperties = true;
         f.supportsEdgeProperties = true;
         f.supportsThreadedTransactions = false;
+        f.isThreadSafe = false;
         return f;
 
     }
@@ -782,6 +1765,7 @@ public class MapDBGraph implements IndexableGraph,KeyIndexableGraph {
         Fun.Tuple3 lo = Fun.t3(key, null, null);
         Fun.Tuple3 hi = Fun.t3(key,Fun.HI(),Fun.HI());
         (isVertex?verticesIndex:edgesIndex).subSet(lo, hi).clear();
+        mutated();
     }
 
     @Override
@@ -790,16 +1774,20 @@ public class MapDBGraph implements IndexableGraph,KeyIndexableGraph {
 
         boolean isVertex = Vertex.class.isAssignableFrom(elementClass);
 
-        for(Map.Entry<Fun.Tuple2<Long,String>,Object> e:(isVertex?verticesProps:edgesProps).entrySet()){
-            if(e.getKey().b.equals(key)){
-                (isVertex?verticesIndex:edgesIndex).add(Fun.t3(key,e.getValue(),e.getKey().a));
-            }
+        // the entries of a back-fill that was committed in part are not maintained, so they are stale
+        NavigableSet<Fun.Tuple3<String,Object,Long>> index = isVertex?verticesIndex:edgesIndex;
+        Fun.Tuple3 lo = Fun.t3(key, null, null);
+        Fun.Tuple3 hi = Fun.t3(key,Fun.HI(),Fun.HI());
+        index.subSet(lo, hi).clear();
+
+        for(Long recid:Fun.filter(isVertex?verticesPropsKeys:edgesPropsKeys,key)){
+            Object value = isVertex? vertexProperty(recid,key) : edgesProps.get(Fun.t2(recid,key));
+            index.add(Fun.t3(key,value,recid));
+            mutated();
         }
 
         (isVertex?verticesKeys:edgesKeys).add(key);
-
-
-
+        mutated();
     }
 
     @Override
@@ -831,10 +1819,16 @@ public class MapDBGraph implements IndexableGraph,KeyIndexableGraph {
 
         @Override
         public void put(String key, Object value, T element) {
-            Long recid = (Long) element.getId();
+            Long recid = elementRecid(element);
             Fun.Tuple4 t = Fun.t4(indexName,key,value,recid);
             //TODO remove old value?
             (isVertex?verticesIndex2:edgesIndex2).add(t);
+            (isVertex?verticesIndex2Reverse:edgesIndex2Reverse).add(Fun.t4(recid,indexName,key,value));
+            mutated();
+        }
+
+        protected Long elementRecid(T element){
+            return isVertex? vertexRecid(element.getId()) : edgeRecid(element.getId());
         }
 
         @Override
@@ -870,8 +1864,10 @@ public class MapDBGraph implements IndexableGraph,KeyIndexableGraph {
 
         @Override
         public void remove(String key, Object value, T element) {
-            Long recid = (Long) element.getId();
+            Long recid = elementRecid(element);
             (isVertex?verticesIndex2:edgesIndex2).remove(Fun.t4(indexName, key, value, recid));
+            (isVertex?verticesIndex2Reverse:edgesIndex2Reverse).remove(Fun.t4(recid, indexName, key, value));
+            mutated();
         }
     }
 
@@ -882,7 +1878,7 @@ public class MapDBGraph implements IndexableGraph,KeyIndexableGraph {
         boolean isVertex = Vertex.class.isAssignableFrom(indexClass);
 
         (isVertex?verticesKeys2:edgesKeys2).add(indexName);
-
+        mutated();
         return new MIndex<T>(indexName,isVertex);
     }
 
@@ -909,8 +1905,13 @@ public class MapDBGraph implements IndexableGraph,KeyIndexableGraph {
 
         Fun.Tuple4 lo = Fun.t4(indexName,null,null,null);
         Fun.Tuple4 hi = Fun.t4(indexName,Fun.HI,Fun.HI,Fun.HI);
+        for(Fun.Tuple4<String,String,Object,Long> t:(Set<Fun.Tuple4<String,String,Object,Long>>)verticesIndex2.subSet(lo,hi))
+            verticesIndex2Reverse.remove(Fun.t4(t.d,t.a,t.b,t.c));
+        for(Fun.Tuple4<String,String,Object,Long> t:(Set<Fun.Tuple4<String,String,Object,Long>>)edgesIndex2.subSet(lo,hi))
+            edgesIndex2Reverse.remove(Fun.t4(t.d,t.a,t.b,t.c));
         verticesIndex2.subSet(lo,hi).clear();
         edgesIndex2.subSet(lo,hi).clear();
+        mutated();
     }
 
     public String toString() {
@@ -0,0 +1,301 @@
+package com.tinkerpop.blueprints.impls.mapdb;
+
+import org.mapdb.BTreeKeySerializer;
+import org.mapdb.DataInput2;
+import org.mapdb.DataOutput2;
+import org.mapdb.Fun;
+import org.mapdb.Serializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact serializers for the properties of MapDBGraph.
+ *
+ * The serializers are stored in the catalog of the store with the collections they serialize,
+ * so they hold no state and a store keeps the serializers it was created with.
+ */
+public final class MapDBSerializers {
+
+    private MapDBSerializers(){
+    }
+
+    /** property values and user ids, see {@link ValueSerializer}*/
+    public static final Serializer<Object> VALUE = new ValueSerializer();
+
+    /** keys of the properties trees, see {@link PropertyKeySerializer}*/
+    public static final BTreeKeySerializer<Fun.Tuple2<Long,String>> PROPERTY_KEY = new PropertyKeySerializer();
+
+    /**
+     * Writes the common property types behind a one byte tag: integral numbers zig-zag packed,
+     * primitive arrays with packed lengths and integral elements delta packed, strings as UTF-8.
+     * Other values fall back to java serialization.
+     */
+    public static final class ValueSerializer implements Serializer<Object>, Serializable {
+
+        private static final int STRING = 0;
+        private static final int INTEGER = 1;
+        private static final int LONG = 2;
+        private static final int DOUBLE = 3;
+        private static final int FLOAT = 4;
+        private static final int TRUE = 5;
+        private static final int FALSE = 6;
+        private static final int SHORT = 7;
+        private static final int BYTE = 8;
+        private static final int INT_ARRAY = 9;
+        private static final int LONG_ARRAY = 10;
+        private static final int DOUBLE_ARRAY = 11;
+        private static final int FLOAT_ARRAY = 12;
+        private static final int BOOLEAN_ARRAY = 13;
+        private static final int OTHER = 14;
+
+        @Override
+        public void serialize(DataOutput out, Object value) throws IOException {
+            if(value instanceof String){
+                out.writeByte(STRING);
+                writeString(out, (String) value);
+            }else if(value instanceof Integer){
+                out.writeByte(INTEGER);
+                packSigned(out, (Integer) value);
+            }else if(value instanceof Long){
+                out.writeByte(LONG);
+                packSigned(out, (Long) value);
+            }else if(value instanceof Double){
+                out.writeByte(DOUBLE);
+                out.writeDouble((Double) value);
+            }else if(value instanceof Float){
+                out.writeByte(FLOAT);
+                out.writeFloat((Float) value);
+            }else if(value instanceof Boolean){
+                out.writeByte((Boolean) value? TRUE : FALSE);
+            }else if(value instanceof Short){
+                out.writeByte(SHORT);
+                out.writeShort((Short) value);
+            }else if(value instanceof Byte){
+                out.writeByte(BYTE);
+                out.writeByte((Byte) value);
+            }else if(value instanceof int[]){
+                int[] a = (int[]) value;
+                out.writeByte(INT_ARRAY);
+                DataOutput2.packInt(out, a.length);
+                long prev = 0;
+                for(int i:a){
+                    packSigned(out, i - prev);
+                    prev = i;
+                }
+            }else if(value instanceof long[]){
+                long[] a = (long[]) value;
+                out.writeByte(LONG_ARRAY);
+                DataOutput2.packInt(out, a.length);
+                long prev = 0;
+                for(long l:a){
+                    packSigned(out, l - prev);
+                    prev = l;
+                }
+            }else if(value instanceof double[]){
+                double[] a = (double[]) value;
+                out.writeByte(DOUBLE_ARRAY);
+                DataOutput2.packInt(out, a.length);
+                for(double d:a) out.writeDouble(d);
+            }else if(value instanceof float[]){
+                float[] a = (float[]) value;
+                out.writeByte(FLOAT_ARRAY);
+                DataOutput2.packInt(out, a.length);
+                for(float f:a) out.writeFloat(f);
+            }else if(value instanceof boolean[]){
+                boolean[] a = (boolean[]) value;
+                out.writeByte(BOOLEAN_ARRAY);
+                DataOutput2.packInt(out, a.length);
+                for(boolean b:a) out.writeBoolean(b);
+            }else{
+                out.writeByte(OTHER);
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                ObjectOutputStream objects = new ObjectOutputStream(bytes);
+                objects.writeObject(value);
+                objects.close();
+                DataOutput2.packInt(out, bytes.size());
+                out.write(bytes.toByteArray());
+            }
+        }
+
+        @Override
+        public Object deserialize(DataInput in, int available) throws IOException {
+            int tag = in.readUnsignedByte();
+            switch(tag){
+                case STRING: return readString(in);
+                case INTEGER: return (int) unpackSigned(in);
+                case LONG: return unpackSigned(in);
+                case DOUBLE: return in.readDouble();
+                case FLOAT: return in.readFloat();
+                case TRUE: return Boolean.TRUE;
+                case FALSE: return Boolean.FALSE;
+                case SHORT: return in.readShort();
+                case BYTE: return in.readByte();
+                case INT_ARRAY:{
+                    int[] a = new int[DataInput2.unpackInt(in)];
+                    long prev = 0;
+                    for(int i=0;i<a.length;i++){
+                        prev += unpackSigned(in);
+                        a[i] = (int) prev;
+                    }
+                    return a;
+                }
+                case LONG_ARRAY:{
+                    long[] a = new long[DataInput2.unpackInt(in)];
+                    long prev = 0;
+                    for(int i=0;i<a.length;i++){
+                        prev += unpackSigned(in);
+                        a[i] = prev;
+                    }
+                    return a;
+                }
+                case DOUBLE_ARRAY:{
+                    double[] a = new double[DataInput2.unpackInt(in)];
+                    for(int i=0;i<a.length;i++) a[i] = in.readDouble();
+                    return a;
+                }
+                case FLOAT_ARRAY:{
+                    float[] a = new float[DataInput2.unpackInt(in)];
+                    for(int i=0;i<a.length;i++) a[i] = in.readFloat();
+                    return a;
+                }
+                case BOOLEAN_ARRAY:{
+                    boolean[] a = new boolean[DataInput2.unpackInt(in)];
+                    for(int i=0;i<a.length;i++) a[i] = in.readBoolean();
+                    return a;
+                }
+                case OTHER:{
+                    byte[] bytes = new byte[DataInput2.unpackInt(in)];
+                    in.readFully(bytes);
+                    try{
+                        return new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+                    }catch(ClassNotFoundException e){
+                        throw new IOException(e.getMessage(), e);
+                    }
+                }
+                default: throw new IOException("unknown value tag "+tag);
+            }
+        }
+
+        @Override
+        public int fixedSize() {
+            return -1;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ValueSerializer;
+        }
+
+        @Override
+        public int hashCode() {
+            return ValueSerializer.class.hashCode();
+        }
+    }
+
+    /**
+     * Writes the (recid, property key) keys of a BTree node with the recids delta packed, as they are ascending
+     * within a node, and the property keys interned: every distinct key of the node is written once and the keys
+     * refer to it by its packed position.
+     */
+    public static final class PropertyKeySerializer extends BTreeKeySerializer<Fun.Tuple2<Long,String>> implements Serializable {
+
+        @Override
+        public void serialize(DataOutput out, int start, int end, Object[] keys) throws IOException {
+            Map<String,Integer> codes = new HashMap<String,Integer>();
+            List<String> strings = new ArrayList<String>();
+            for(int i=start;i<end;i++){
+                String key = ((Fun.Tuple2<Long,String>) keys[i]).b;
+                if(!codes.containsKey(key)){
+                    codes.put(key, strings.size());
+                    strings.add(key);
+                }
+            }
+            DataOutput2.packInt(out, strings.size());
+            for(String s:strings) writeString(out, s);
+
+            long prev = 0;
+            for(int i=start;i<end;i++){
+                Fun.Tuple2<Long,String> t = (Fun.Tuple2<Long,String>) keys[i];
+                DataOutput2.packLong(out, t.a - prev);
+                prev = t.a;
+                DataOutput2.packInt(out, codes.get(t.b));
+            }
+        }
+
+        @Override
+        public Object[] deserialize(DataInput in, int start, int end, int size) throws IOException {
+            String[] strings = new String[DataInput2.unpackInt(in)];
+            for(int i=0;i<strings.length;i++) strings[i] = readString(in);
+
+            Object[] ret = new Object[size];
+            long prev = 0;
+            for(int i=start;i<end;i++){
+                prev += DataInput2.unpackLong(in);
+                ret[i] = Fun.t2(prev, strings[DataInput2.unpackInt(in)]);
+            }
+            return ret;
+        }
+
+        @Override
+        public Comparator<Fun.Tuple2<Long,String>> getComparator() {
+            return (Comparator) Fun.TUPLE2_COMPARATOR;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof PropertyKeySerializer;
+        }
+
+        @Override
+        public int hashCode() {
+            return PropertyKeySerializer.class.hashCode();
+        }
+    }
+
+    /** zig-zag encoded as an unsigned varint, as {@link DataOutput2#packLong} does not take negative values*/
+    private static void packSigned(DataOutput out, long value) throws IOException {
+        long zigZag = (value << 1) ^ (value >> 63);
+        while((zigZag & ~0x7FL) != 0){
+            out.writeByte((int) ((zigZag & 0x7F) | 0x80));
+            zigZag >>>= 7;
+        }
+        out.writeByte((int) zigZag);
+    }
+
+    private static long unpackSigned(DataInput in) throws IOException {
+        long zigZag = 0;
+        for(int shift=0;;shift+=7){
+            int b = in.readUnsignedByte();
+            zigZag |= (long) (b & 0x7F) << shift;
+            if((b & 0x80)==0) break;
+        }
+        return (zigZag >>> 1) ^ -(zigZag & 1);
+    }
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    static void writeString(DataOutput out, String s) throws IOException {
+        byte[] bytes = s.getBytes(UTF8);
+        DataOutput2.packInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[DataInput2.unpackInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+}
@@ -0,0 +1,89 @@
+package com.tinkerpop.blueprints.impls.mapdb;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import org.mapdb.DataInput2;
+import org.mapdb.DataOutput2;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Runs the tests against vertex records that hold up to two properties and two edges inline,
+ * so the suites cover both inline vertices and vertices whose properties or edges moved to the trees.
+ */
+public class MapDBGraphInlineTest extends MapDBGraphTest {
+
+    @Override
+    public Graph generateGraph(final String name) {
+        return new MapDBGraph(getDirectory() + "/" + name, false, 2, 2);
+    }
+
+    public void testOverflowToTrees() {
+        deleteDirectory(new File(getDirectory()));
+        MapDBGraph graph = (MapDBGraph) generateGraph();
+        Vertex a = graph.addVertex(null);
+        Vertex b = graph.addVertex(null);
+        a.setProperty("name", "marko");
+        a.setProperty("age", 29);
+        graph.addEdge(null, a, b, "knows");
+        assertTrue(graph.verticesProps.isEmpty());
+        assertTrue(graph.edges4vertice.isEmpty());
+
+        a.setProperty("lang", "java");
+        graph.addEdge(null, a, b, "likes");
+        graph.addEdge(null, b, a, "knows");
+        assertEquals(3, graph.verticesProps.size());
+        // both vertices outgrew the two inline edges
+        assertEquals(6, count(graph.edges4vertice));
+        assertEquals("marko", a.getProperty("name"));
+        assertEquals(3, a.getPropertyKeys().size());
+        assertEquals(2, count(a.getEdges(Direction.BOTH, "knows")));
+        assertEquals(3, count(b.getEdges(Direction.BOTH)));
+        graph.shutdown();
+
+        // the limits are kept by the store
+        graph = new MapDBGraph(getDirectory() + "/graph-test.db", false);
+        assertEquals(2, graph.inlineProperties);
+        a = graph.getVertex(a.getId());
+        assertEquals(29, a.getProperty("age"));
+        assertEquals(3, count(a.getEdges(Direction.BOTH)));
+        graph.getVertex(b.getId()).remove();
+        assertEquals(0, count(a.getEdges(Direction.BOTH)));
+        assertEquals(0, count(graph.getEdges()));
+        graph.shutdown();
+    }
+
+    public void testInlineRecordEncoding() throws IOException {
+        String[] keys = {"name", "age", "weights", "born"};
+        Object[] values = {"marko", 29, new long[]{3L, -4L}, 1964L};
+        MapDBGraph.VertexRecord record = new MapDBGraph.VertexRecord(false, false, keys, values,
+                new boolean[0], new String[0], new long[0]);
+        for (int i = 0; i < 10; i++) {
+            record = record.withEdge(i % 2 == 0, "knows", 100 + i);
+        }
+
+        DataOutput2 out = new DataOutput2();
+        record.serialize(out);
+        // the label is written once, another edge only adds its label code and recid
+        assertEquals(out.pos + 3, serialized(record.withEdge(true, "knows", 200)));
+
+        MapDBGraph.VertexRecord read = MapDBGraph.VertexRecord.deserialize(new DataInput2(out.buf));
+        assertTrue(Arrays.equals(keys, read.keys));
+        assertEquals("marko", read.values[0]);
+        assertEquals(29, read.values[1]);
+        assertTrue(Arrays.equals((long[]) values[2], (long[]) read.values[2]));
+        assertEquals(1964L, read.values[3]);
+        assertTrue(Arrays.equals(record.outs, read.outs));
+        assertTrue(Arrays.equals(record.labels, read.labels));
+        assertTrue(Arrays.equals(record.edgeRecids, read.edgeRecids));
+    }
+
+    private static int serialized(MapDBGraph.VertexRecord record) throws IOException {
+        DataOutput2 out = new DataOutput2();
+        record.serialize(out);
+        return out.pos;
+    }
+}
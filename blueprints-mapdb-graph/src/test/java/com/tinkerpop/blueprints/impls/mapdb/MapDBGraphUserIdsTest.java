@@ -5,6 +5,7 @@ import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.Graph;
 import com.tinkerpop.blueprints.Vertex;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
@@ -70,4 +71,29 @@ public class MapDBGraphUserIdsTest extends MapDBGraphTest {
         printPerformance(graph.toString(), iterations, "iterations of shutdown and restart", this.stopWatch());
     }
 
+    public void testElementRecordsAfterReopen() {
+        deleteDirectory(new File(getDirectory()));
+        Graph graph = generateGraph();
+        Object[] ids = {"name", 7, -3L, Long.MAX_VALUE, 2.5d, UUID.fromString("6ba7b810-9dad-11d1-80b4-00c04fd430c8")};
+        for (Object id : ids) {
+            graph.addVertex(id);
+        }
+        for (int i = 1; i < ids.length; i++) {
+            graph.addEdge("e" + i, graph.getVertex(ids[i - 1]), graph.getVertex(ids[i]), "kn\u00f6ws");
+        }
+        graph.shutdown();
+
+        graph = generateGraph();
+        for (Object id : ids) {
+            assertEquals(id, graph.getVertex(id).getId());
+        }
+        for (int i = 1; i < ids.length; i++) {
+            Edge e = graph.getEdge("e" + i);
+            assertEquals("kn\u00f6ws", e.getLabel());
+            assertEquals(ids[i - 1], e.getVertex(Direction.OUT).getId());
+            assertEquals(ids[i], e.getVertex(Direction.IN).getId());
+        }
+        graph.shutdown();
+    }
+
 }
@@ -72,6 +72,7 @@ public class RexsterGraph implements IndexableGraph, KeyIndexableGraph, MetaGrap
         FEATURES.supportsMapProperty = true;
         FEATURES.supportsStringProperty = true;
         FEATURES.supportsThreadedTransactions = false;
+        FEATURES.isThreadSafe = true;
         FEATURES.supportsTransactions = false;
     }
 
@@ -94,6 +94,7 @@ public class SailGraph implements TransactionalGraph, MetaGraph<Sail> {
         FEATURES.supportsMapProperty = false;
         FEATURES.supportsStringProperty = false;
         FEATURES.supportsThreadedTransactions = false;
+        FEATURES.isThreadSafe = true;
     }
 
     static {
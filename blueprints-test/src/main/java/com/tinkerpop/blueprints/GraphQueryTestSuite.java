@@ -1,8 +1,10 @@
 package com.tinkerpop.blueprints;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import com.tinkerpop.blueprints.impls.GraphTest;
@@ -188,4 +190,37 @@ public class GraphQueryTestSuite extends TestSuite {
         }
         graph.shutdown();
     }
-}
\ No newline at end of file
+
+    public void testGraphQueryProjection() {
+        Graph graph = graphTest.generateGraph();
+        if (graph.getFeatures().supportsVertexProperties && graph.query() instanceof ProjectableQuery) {
+            Vertex marko = graph.addVertex(null);
+            marko.setProperty("name", "marko");
+            marko.setProperty("age", 33);
+            Vertex matthias = graph.addVertex(null);
+            matthias.setProperty("name", "matthias");
+            graph.addVertex(null);
+
+            Map<Object, Map<String, Object>> rows = new HashMap<Object, Map<String, Object>>();
+            for (Map<String, Object> row : properties(graph.query(), "id", "name", "age").vertices()) {
+                rows.put(row.get("id"), row);
+            }
+            assertEquals(rows.size(), 3);
+            assertEquals(rows.get(marko.getId()).size(), 3);
+            assertEquals(rows.get(marko.getId()).get("name"), "marko");
+            assertEquals(rows.get(marko.getId()).get("age"), 33);
+            assertEquals(rows.get(matthias.getId()).size(), 2);
+            assertEquals(rows.get(matthias.getId()).get("name"), "matthias");
+
+            Iterable<Map<String, Object>> projection = properties(graph.query().has("age", 33), "name").vertices();
+            assertEquals(count(projection), 1);
+            assertEquals(projection.iterator().next().get("name"), "marko");
+            assertEquals(count(properties(graph.query().limit(2), "name").vertices()), 2);
+        }
+        graph.shutdown();
+    }
+
+    private static Projection properties(final Query query, final String... keys) {
+        return ((ProjectableQuery) query).properties(keys);
+    }
+}
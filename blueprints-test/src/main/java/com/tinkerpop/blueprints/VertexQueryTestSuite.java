@@ -3,7 +3,11 @@ package com.tinkerpop.blueprints;
 import com.tinkerpop.blueprints.impls.GraphTest;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static com.tinkerpop.blueprints.Direction.*;
 
@@ -291,4 +295,43 @@ public class VertexQueryTestSuite extends TestSuite {
         graph.shutdown();
 
     }
-}
\ No newline at end of file
+
+    public void testProjectionVertexQuery() {
+        Graph graph = graphTest.generateGraph();
+        if (graph.getFeatures().supportsEdgeProperties) {
+            createGraph(graph);
+        }
+        if (graph.getFeatures().supportsEdgeProperties && a.query() instanceof ProjectableQuery) {
+            Map<Object, Map<String, Object>> rows = new HashMap<Object, Map<String, Object>>();
+            for (Map<String, Object> row : properties(a.query().direction(OUT).labels(graphTest.convertLabel("friend")), "id", "label", "amount", "date").edges()) {
+                rows.put(row.get("id"), row);
+            }
+            assertEquals(rows.size(), 2);
+            Map<String, Object> row = rows.get(aFriendB.getId());
+            assertEquals(row.size(), 4);
+            assertEquals(row.get("label"), graphTest.convertLabel("friend"));
+            assertEquals(row.get("amount"), 1.0);
+            assertEquals(row.get("date"), 10);
+            row = rows.get(aFriendC.getId());
+            assertEquals(row.size(), 3);
+            assertEquals(row.get("amount"), 0.5);
+            assertFalse(row.containsKey("date"));
+
+            assertEquals(count(properties(a.query().direction(OUT).has("amount", 1.0).limit(1), "amount").edges()), 1);
+            if (graph.getFeatures().supportsVertexProperties) {
+                b.setProperty("name", "b");
+                c.setProperty("name", "c");
+                Set<Object> names = new HashSet<Object>();
+                for (Map<String, Object> vertexRow : properties(a.query().direction(OUT).labels(graphTest.convertLabel("friend")), "name").vertices()) {
+                    names.add(vertexRow.get("name"));
+                }
+                assertEquals(names, new HashSet<Object>(Arrays.asList("b", "c")));
+            }
+        }
+        graph.shutdown();
+    }
+
+    private static Projection properties(final Query query, final String... keys) {
+        return ((ProjectableQuery) query).properties(keys);
+    }
+}
@@ -0,0 +1,175 @@
+package com.tinkerpop.blueprints.impls.tg;
+
+import com.tinkerpop.blueprints.Compare;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Index;
+import com.tinkerpop.blueprints.Parameter;
+import com.tinkerpop.blueprints.Vertex;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests ConcurrentTinkerGraph using the standard test suite and with multiple threads mutating one graph.
+ */
+public class ConcurrentTinkerGraphTest extends TinkerGraphTest {
+
+    @Override
+    public Graph generateGraph(final String graphDirectoryName) {
+        return new ConcurrentTinkerGraph(getDirectory() + "/" + graphDirectoryName);
+    }
+
+    public void testFeaturesReportThreadSafety() {
+        assertTrue(new ConcurrentTinkerGraph().getFeatures().isThreadSafe);
+        assertFalse(new TinkerGraph().getFeatures().isThreadSafe);
+    }
+
+    public void testConcurrentWritersAndReaders() throws Exception {
+        deleteDirectory(new File(getDirectory()));
+        final ConcurrentTinkerGraph graph = new ConcurrentTinkerGraph();
+        graph.createKeyIndex("thread", Vertex.class);
+        final Vertex hub = graph.addVertex(null);
+
+        final int threadCount = 8;
+        final int verticesPerThread = 500;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < threadCount; i++) {
+            final int thread = i;
+            threads.add(new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                        for (int j = 0; j < verticesPerThread; j++) {
+                            final Vertex vertex = graph.addVertex(null);
+                            vertex.setProperty("thread", thread);
+                            hub.addEdge("knows", vertex);
+                            // readers iterate while the other threads write
+                            count(hub.getVertices(Direction.OUT, "knows"));
+                            count(graph.getVertices("thread", thread));
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            });
+        }
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        if (null != failure.get())
+            throw new RuntimeException(failure.get());
+        assertEquals(threadCount * verticesPerThread + 1, count(graph.getVertices()));
+        assertEquals(threadCount * verticesPerThread, count(graph.getEdges()));
+        assertEquals(threadCount * verticesPerThread, count(hub.getEdges(Direction.OUT, "knows")));
+        for (int i = 0; i < threadCount; i++) {
+            assertEquals(verticesPerThread, count(graph.getVertices("thread", i)));
+        }
+        graph.shutdown();
+    }
+
+    public void testCreateKeyIndexWithConcurrentWriter() throws Exception {
+        final ConcurrentTinkerGraph graph = new ConcurrentTinkerGraph();
+        final List<Vertex> vertices = new ArrayList<Vertex>();
+        for (int i = 0; i < 5 * TinkerParallel.PARTITION_SIZE; i++) {
+            final Vertex vertex = graph.addVertex(null);
+            vertex.setProperty("name", i % 100);
+            vertices.add(vertex);
+        }
+
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final Thread writer = new Thread() {
+            public void run() {
+                try {
+                    for (int i = 0; !done.get(); i++) {
+                        final Vertex vertex = vertices.get(i % vertices.size());
+                        if (null == graph.getVertex(vertex.getId()))
+                            continue;
+                        if (i % 11 == 0)
+                            graph.removeVertex(vertex);
+                        else if (i % 5 == 0)
+                            vertex.removeProperty("name");
+                        else
+                            vertex.setProperty("name", 100 + i % 100);
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }
+        };
+        writer.start();
+        try {
+            graph.createKeyIndex("name", Vertex.class);
+        } finally {
+            done.set(true);
+            writer.join();
+        }
+
+        if (null != failure.get())
+            throw new RuntimeException(failure.get());
+        int indexed = 0;
+        for (int value = 0; value < 200; value++) {
+            for (final Vertex vertex : graph.getVertices("name", value)) {
+                assertEquals(value, vertex.getProperty("name"));
+                assertNotNull(graph.getVertex(vertex.getId()));
+                indexed++;
+            }
+        }
+        int named = 0;
+        for (final Vertex vertex : graph.getVertices()) {
+            if (null != vertex.getProperty("name"))
+                named++;
+        }
+        assertEquals(named, indexed);
+        graph.shutdown();
+    }
+
+    public void testJavaSerializationRestoresTheHashedStructures() {
+        final String directory = new File(computeTestDataRoot(), "concurrent-tinkergraph-java").getPath();
+        deleteDirectory(new File(directory));
+        ConcurrentTinkerGraph graph = new ConcurrentTinkerGraph(directory, TinkerGraph.FileType.JAVA);
+        graph.createKeyIndex("age", Vertex.class, new Parameter<String, Object>(TinkerGraph.KEY_INDEX_TYPE, TinkerGraph.KeyIndexType.SORTED));
+        Index<Vertex> index = graph.createIndex("names", Vertex.class);
+        final Vertex hub = graph.addVertex("hub");
+        for (int i = 0; i < 40; i++) {
+            final Vertex vertex = graph.addVertex(String.valueOf(i));
+            vertex.setProperty("age", i);
+            index.put("name", "v" + (i % 4), vertex);
+            hub.addEdge(i % 2 == 0 ? "knows" : "likes", vertex);
+        }
+        graph.shutdown();
+
+        graph = new ConcurrentTinkerGraph(directory, TinkerGraph.FileType.JAVA);
+        final Vertex reloaded = graph.getVertex("hub");
+        assertEquals(20, count(reloaded.getEdges(Direction.OUT, "knows")));
+        assertEquals(40, count(reloaded.getEdges(Direction.OUT)));
+        assertEquals(1, count(graph.getVertex("7").getEdges(Direction.IN, "likes")));
+        assertEquals(1, count(graph.getVertices("age", 7)));
+        assertEquals(10, count(graph.query().has("age", Compare.GREATER_THAN_EQUAL, 30).vertices()));
+        index = graph.getIndex("names", Vertex.class);
+        assertEquals(10, count(index.get("name", "v1")));
+
+        // the restored sets are the ones the graph mutates
+        final Edge edge = reloaded.getEdges(Direction.OUT, "knows").iterator().next();
+        graph.removeEdge(edge);
+        assertEquals(19, count(reloaded.getEdges(Direction.OUT, "knows")));
+        graph.removeVertex(graph.getVertex("31"));
+        assertEquals(9, count(graph.query().has("age", Compare.GREATER_THAN_EQUAL, 30).vertices()));
+        assertEquals(9, count(index.get("name", "v3")));
+        graph.shutdown();
+        deleteDirectory(new File(directory));
+    }
+}
@@ -0,0 +1,46 @@
+package com.tinkerpop.blueprints.impls.tg;
+
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+
+import java.io.File;
+
+/**
+ * Tests TinkerGraph with long identifiers using the standard test suite.
+ */
+public class LongIdTinkerGraphTest extends TinkerGraphTest {
+
+    @Override
+    public Graph generateGraph(final String graphDirectoryName) {
+        return new TinkerGraph(getDirectory() + "/" + graphDirectoryName, TinkerGraph.FileType.JAVA, TinkerGraph.IdType.LONG);
+    }
+
+    public void testSuppliedIdsAreConvertedToLong() {
+        deleteDirectory(new File(getDirectory()));
+        final TinkerGraph graph = (TinkerGraph) this.generateGraph();
+
+        final Vertex a = graph.addVertex(10);
+        final Vertex b = graph.addVertex("11");
+        final Vertex c = graph.addVertex("marko");
+        assertEquals(10l, a.getId());
+        assertEquals(11l, b.getId());
+        assertTrue(c.getId() instanceof Long);
+
+        assertEquals(a, graph.getVertex(10l));
+        assertEquals(a, graph.getVertex("10"));
+        assertEquals(b, graph.getVertex(11));
+        assertNull(graph.getVertex("marko"));
+
+        final Edge e = graph.addEdge(12, a, b, "knows");
+        assertEquals(12l, e.getId());
+        assertEquals(e, graph.getEdge("12"));
+
+        graph.removeVertex(a);
+        assertNull(graph.getVertex(10));
+        assertNull(graph.getEdge(12));
+        assertEquals(2, count(graph.getVertices()));
+
+        graph.shutdown();
+    }
+}
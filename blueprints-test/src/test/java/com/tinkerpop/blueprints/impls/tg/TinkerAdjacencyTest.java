@@ -0,0 +1,98 @@
+package com.tinkerpop.blueprints.impls.tg;
+
+import com.tinkerpop.blueprints.BaseTest;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Vertex;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+
+/**
+ * Tests the compact and the hashed layout of the edges incident to a TinkerVertex.
+ */
+public class TinkerAdjacencyTest extends BaseTest {
+
+    @Test
+    public void testEdgesAcrossTheCompactDegree() {
+        for (final TinkerGraph.IterationMode mode : TinkerGraph.IterationMode.values()) {
+            final TinkerGraph graph = new TinkerGraph();
+            graph.setIterationMode(mode);
+            final Vertex a = graph.addVertex(null);
+
+            for (int i = 0; i < TinkerAdjacency.COMPACT_DEGREE * 2; i++) {
+                a.addEdge(i % 2 == 0 ? "even" : "odd", graph.addVertex(null));
+                final int degree = i + 1;
+                Assert.assertEquals(degree, count(a.getEdges(Direction.OUT)));
+                Assert.assertEquals((degree + 1) / 2, count(a.getEdges(Direction.OUT, "even")));
+                Assert.assertEquals(degree / 2, count(a.getEdges(Direction.OUT, "odd")));
+                Assert.assertEquals(degree, count(a.getEdges(Direction.OUT, "odd", "even", "none")));
+                Assert.assertEquals(0, count(a.getEdges(Direction.OUT, "none")));
+                Assert.assertEquals(0, count(a.getEdges(Direction.IN)));
+            }
+
+            for (final Edge edge : graph.getVertex(a.getId()).query().direction(Direction.OUT).labels("odd").edges()) {
+                Assert.assertEquals("odd", edge.getLabel());
+            }
+        }
+    }
+
+    @Test
+    public void testRemoveFromCompactLayout() {
+        final TinkerGraph graph = new TinkerGraph();
+        final Vertex a = graph.addVertex(null);
+        final Vertex b = graph.addVertex(null);
+        final Edge e1 = a.addEdge("knows", b);
+        final Edge e2 = a.addEdge("knows", b);
+        final Edge e3 = a.addEdge("likes", a);
+
+        graph.removeEdge(e1);
+        Assert.assertEquals(2, count(a.getEdges(Direction.OUT)));
+        Assert.assertEquals(e2, a.getEdges(Direction.OUT, "knows").iterator().next());
+        Assert.assertEquals(e3, a.getEdges(Direction.IN).iterator().next());
+        Assert.assertEquals(1, count(b.getEdges(Direction.IN)));
+
+        graph.removeVertex(b);
+        Assert.assertEquals(2, count(a.getEdges(Direction.BOTH, "knows", "likes")));
+        Assert.assertEquals(0, count(a.getEdges(Direction.OUT, "knows")));
+    }
+
+    @Test
+    public void testLiveCompactIterationFailsFast() {
+        final TinkerGraph graph = new TinkerGraph();
+        graph.setIterationMode(TinkerGraph.IterationMode.LIVE);
+        final Vertex a = graph.addVertex(null);
+        a.addEdge("knows", a);
+        a.addEdge("knows", a);
+
+        final Iterator<Edge> itty = a.getEdges(Direction.OUT).iterator();
+        itty.next();
+        a.addEdge("knows", a);
+        try {
+            itty.next();
+            Assert.fail("A live iteration must fail once the adjacency is mutated");
+        } catch (ConcurrentModificationException e) {
+        }
+    }
+
+    @Test
+    public void testLiveIterationFailsOnceTheLayoutIsHashed() {
+        final TinkerGraph graph = new TinkerGraph();
+        graph.setIterationMode(TinkerGraph.IterationMode.LIVE);
+        final Vertex a = graph.addVertex(null);
+        for (int i = 0; i < TinkerAdjacency.COMPACT_DEGREE; i++) {
+            a.addEdge("knows", a);
+        }
+
+        final Iterator<Edge> itty = a.getEdges(Direction.OUT).iterator();
+        itty.next();
+        a.addEdge("knows", a);
+        try {
+            itty.hasNext();
+            Assert.fail("A live iteration must not end silently once the edges moved to the hashed sets");
+        } catch (ConcurrentModificationException e) {
+        }
+    }
+}
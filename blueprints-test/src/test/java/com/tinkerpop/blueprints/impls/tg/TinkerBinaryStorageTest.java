@@ -0,0 +1,139 @@
+package com.tinkerpop.blueprints.impls.tg;
+
+import com.tinkerpop.blueprints.BaseTest;
+import com.tinkerpop.blueprints.Compare;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Parameter;
+import com.tinkerpop.blueprints.Vertex;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Tests the binary layout of TinkerBinaryWriter and TinkerBinaryReader.
+ */
+public class TinkerBinaryStorageTest extends BaseTest {
+
+    private static TinkerGraph roundTrip(final TinkerGraph graph, final TinkerGraph target) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TinkerBinaryWriter.save(graph, bytes);
+        TinkerBinaryReader.load(target, new ByteArrayInputStream(bytes.toByteArray()));
+        return target;
+    }
+
+    @Test
+    public void testPropertyTypes() throws IOException {
+        final TinkerGraph graph = new TinkerGraph();
+        final Vertex vertex = graph.addVertex("a");
+        vertex.setProperty("string", "marko");
+        vertex.setProperty("int", -29);
+        vertex.setProperty("long", Long.MAX_VALUE);
+        vertex.setProperty("float", 0.5f);
+        vertex.setProperty("double", Double.MIN_VALUE);
+        vertex.setProperty("boolean", true);
+        vertex.setProperty("byte", (byte) 7);
+        vertex.setProperty("short", (short) -7);
+        vertex.setProperty("list", Arrays.asList(1, "two"));
+        vertex.setProperty("map", Collections.singletonMap("k", 1));
+        vertex.setProperty("array", new int[]{1, 2});
+
+        final Vertex copy = roundTrip(graph, new TinkerGraph()).getVertex("a");
+        for (final String key : vertex.getPropertyKeys()) {
+            if (key.equals("array"))
+                Assert.assertArrayEquals((int[]) vertex.getProperty(key), (int[]) copy.getProperty(key));
+            else
+                Assert.assertEquals(vertex.getProperty(key), copy.getProperty(key));
+        }
+        Assert.assertEquals(vertex.getPropertyKeys(), copy.getPropertyKeys());
+    }
+
+    @Test
+    public void testStructureAndIndices() throws IOException {
+        final TinkerGraph graph = TinkerGraphFactory.createTinkerGraph();
+        graph.createKeyIndex("age", Vertex.class, new Parameter<String, Object>(TinkerGraph.KEY_INDEX_TYPE, TinkerGraph.KeyIndexType.SORTED));
+        graph.createKeyIndex("weight", Edge.class);
+        graph.createIndex("names", Vertex.class).put("name", "marko", graph.getVertex(1));
+        graph.addVertex(null);
+
+        final TinkerGraph copy = roundTrip(graph, new TinkerGraph());
+        Assert.assertEquals(count(graph.getVertices()), count(copy.getVertices()));
+        Assert.assertEquals(count(graph.getEdges()), count(copy.getEdges()));
+        Assert.assertEquals(graph.currentId, copy.currentId);
+        for (final Edge edge : graph.getEdges()) {
+            final Edge copied = copy.getEdge(edge.getId());
+            Assert.assertEquals(edge.getLabel(), copied.getLabel());
+            Assert.assertEquals(edge.getVertex(Direction.OUT).getId(), copied.getVertex(Direction.OUT).getId());
+            Assert.assertEquals(edge.getVertex(Direction.IN).getId(), copied.getVertex(Direction.IN).getId());
+            Assert.assertEquals(edge.getProperty("weight"), copied.getProperty("weight"));
+        }
+        Assert.assertTrue(copy.vertexKeyIndex.isSorted("age"));
+        Assert.assertFalse(copy.edgeKeyIndex.isSorted("weight"));
+        Assert.assertEquals(2, count(copy.query().has("age", Compare.GREATER_THAN, 29).vertices()));
+        Assert.assertEquals(2, count(copy.getEdges("weight", 1.0f)));
+        Assert.assertEquals(copy.getVertex(1), copy.getIndex("names", Vertex.class).get("name", "marko").iterator().next());
+        Assert.assertEquals(1, ((TinkerVertex) copy.getVertex(1)).getPostings().size());
+    }
+
+    @Test
+    public void testLongIds() throws IOException {
+        final TinkerGraph graph = new TinkerGraph(TinkerGraph.IdType.LONG);
+        final Vertex a = graph.addVertex(-5l);
+        final Vertex b = graph.addVertex(Long.MAX_VALUE);
+        graph.addEdge(300l, a, b, "knows");
+
+        final TinkerGraph copy = roundTrip(graph, new ConcurrentTinkerGraph(TinkerGraph.IdType.LONG));
+        Assert.assertNotNull(copy.getVertex(-5l));
+        Assert.assertEquals(Long.MAX_VALUE, copy.getEdge(300l).getVertex(Direction.IN).getId());
+    }
+
+    @Test
+    public void testPartitionedElementsAndKeyIndices() throws IOException {
+        final int size = TinkerParallel.PARTITION_SIZE * 3 + 7;
+        final TinkerGraph graph = new TinkerGraph(TinkerGraph.IdType.LONG);
+        Vertex previous = graph.addVertex(null);
+        previous.setProperty("group", 0);
+        for (int i = 1; i < size; i++) {
+            final Vertex vertex = graph.addVertex(null);
+            vertex.setProperty("group", i % 10);
+            graph.addEdge(null, previous, vertex, "next").setProperty("position", i);
+            previous = vertex;
+        }
+        graph.createKeyIndex("group", Vertex.class, new Parameter<String, Object>(TinkerGraph.KEY_INDEX_TYPE, TinkerGraph.KeyIndexType.SORTED));
+        graph.createKeyIndex("position", Edge.class);
+
+        for (final TinkerGraph target : Arrays.asList(new TinkerGraph(TinkerGraph.IdType.LONG), new ConcurrentTinkerGraph(TinkerGraph.IdType.LONG))) {
+            final TinkerGraph copy = roundTrip(graph, target);
+            Assert.assertEquals(size, count(copy.getVertices()));
+            Assert.assertEquals(size - 1, count(copy.getEdges()));
+            Assert.assertEquals(count(graph.getVertices("group", 3)), count(copy.getVertices("group", 3)));
+            Assert.assertEquals(count(graph.query().has("group", Compare.LESS_THAN, 2).vertices()), count(copy.query().has("group", Compare.LESS_THAN, 2).vertices()));
+            final Edge edge = copy.getEdges("position", size / 2).iterator().next();
+            Assert.assertEquals(graph.getEdges("position", size / 2).iterator().next().getId(), edge.getId());
+            Assert.assertEquals(1, count(edge.getVertex(Direction.IN).getEdges(Direction.IN)));
+            final Vertex removed = copy.getVertex(5l);
+            final int group = count(copy.getVertices("group", removed.getProperty("group")));
+            copy.removeVertex(removed);
+            Assert.assertEquals(group - 1, count(copy.getVertices("group", removed.getProperty("group"))));
+        }
+    }
+
+    @Test
+    public void testUnsupportedVersion() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TinkerBinaryWriter.save(new TinkerGraph(), bytes);
+        final byte[] data = bytes.toByteArray();
+        data[4] = (byte) (TinkerBinaryWriter.VERSION + 1);
+        try {
+            TinkerBinaryReader.load(new TinkerGraph(), new ByteArrayInputStream(data));
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().contains("Version"));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.tinkerpop.blueprints.impls.tg;
+
+import com.tinkerpop.blueprints.BaseTest;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Vertex;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the dictionary of labels and property keys shared by the elements of a TinkerGraph.
+ */
+public class TinkerDictionaryTest extends BaseTest {
+
+    @Test
+    public void testCodesAreStable() {
+        final TinkerDictionary dictionary = new TinkerDictionary(new TinkerGraph());
+        Assert.assertEquals(TinkerDictionary.UNKNOWN, dictionary.lookup("name"));
+        Assert.assertEquals(TinkerDictionary.UNKNOWN, dictionary.lookup(null));
+
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(i, dictionary.encode("key" + i));
+        }
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(i, dictionary.encode(new String("key" + i)));
+            Assert.assertEquals(i, dictionary.lookup("key" + i));
+            Assert.assertEquals("key" + i, dictionary.decode(i));
+        }
+    }
+
+    @Test
+    public void testElementsShareTheDictionary() {
+        final TinkerGraph graph = new TinkerGraph();
+        final Vertex a = graph.addVertex(null);
+        final Vertex b = graph.addVertex(null);
+        a.setProperty(new String("name"), "marko");
+        b.setProperty(new String("name"), "peter");
+        final Edge e = a.addEdge(new String("knows"), b);
+
+        Assert.assertSame(a.getPropertyKeys().iterator().next(), b.getPropertyKeys().iterator().next());
+        Assert.assertSame(graph.dictionary.decode(graph.dictionary.lookup("knows")), e.getLabel());
+        Assert.assertEquals("knows", e.getLabel());
+        Assert.assertNull(a.getProperty("unknown"));
+        Assert.assertNull(a.removeProperty("unknown"));
+        Assert.assertEquals(0, count(a.getEdges(Direction.OUT, "unknown")));
+
+        Assert.assertEquals("marko", a.removeProperty("name"));
+        Assert.assertEquals("peter", b.getProperty("name"));
+        Assert.assertEquals(0, a.getPropertyKeys().size());
+    }
+}
@@ -0,0 +1,116 @@
+package com.tinkerpop.blueprints.impls.tg;
+
+import com.tinkerpop.blueprints.BaseTest;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Index;
+import com.tinkerpop.blueprints.Vertex;
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+
+/**
+ * Tests the SNAPSHOT and LIVE iteration modes of TinkerGraph.
+ */
+public class TinkerGraphIterationModeTest extends BaseTest {
+
+    @Test
+    public void testSnapshotIsDefault() {
+        final TinkerGraph graph = TinkerGraphFactory.createTinkerGraph();
+        Assert.assertEquals(TinkerGraph.IterationMode.SNAPSHOT, graph.getIterationMode());
+
+        final Iterable<Vertex> vertices = graph.getVertices();
+        graph.addVertex(null);
+        Assert.assertEquals(6, count(vertices));
+    }
+
+    @Test
+    public void testLiveIterablesReflectTheGraph() {
+        final TinkerGraph graph = TinkerGraphFactory.createTinkerGraph();
+        graph.setIterationMode(TinkerGraph.IterationMode.LIVE);
+
+        final Vertex marko = graph.getVertex(1);
+        final Iterable<Vertex> vertices = graph.getVertices();
+        final Iterable<Edge> edges = graph.getEdges();
+        final Iterable<Edge> knows = marko.getEdges(Direction.OUT, "knows");
+        final Iterable<Edge> out = marko.getEdges(Direction.OUT);
+
+        final Vertex v = graph.addVertex(null);
+        marko.addEdge("knows", v);
+
+        Assert.assertEquals(7, count(vertices));
+        Assert.assertEquals(7, count(edges));
+        Assert.assertEquals(3, count(knows));
+        Assert.assertEquals(4, count(out));
+        Assert.assertEquals(4, count(marko.getEdges(Direction.OUT, "knows", "created")));
+        Assert.assertEquals(0, count(marko.getEdges(Direction.IN, "knows")));
+    }
+
+    @Test
+    public void testLiveIterationFailsFast() {
+        final TinkerGraph graph = TinkerGraphFactory.createTinkerGraph();
+        graph.setIterationMode(TinkerGraph.IterationMode.LIVE);
+
+        final Iterator<Vertex> itty = graph.getVertices().iterator();
+        itty.next();
+        graph.addVertex(null);
+        try {
+            itty.next();
+            Assert.fail("A live iteration must fail once the graph is mutated");
+        } catch (ConcurrentModificationException e) {
+        }
+    }
+
+    @Test
+    public void testLiveIterablesDoNotSupportRemoval() {
+        final TinkerGraph graph = TinkerGraphFactory.createTinkerGraph();
+        graph.setIterationMode(TinkerGraph.IterationMode.LIVE);
+
+        final Iterator<Edge> itty = graph.getVertex(1).getEdges(Direction.OUT).iterator();
+        itty.next();
+        try {
+            itty.remove();
+            Assert.fail("A live iteration must not remove from the graph structures");
+        } catch (UnsupportedOperationException e) {
+        }
+        Assert.assertEquals(3, count(graph.getVertex(1).getEdges(Direction.OUT)));
+    }
+
+    @Test
+    public void testLiveIndexResults() {
+        final TinkerGraph graph = TinkerGraphFactory.createTinkerGraph();
+        graph.setIterationMode(TinkerGraph.IterationMode.LIVE);
+        graph.createKeyIndex("lang", Vertex.class);
+        final Index<Vertex> index = graph.createIndex("names", Vertex.class);
+        index.put("name", "marko", graph.getVertex(1));
+
+        final Iterable<Vertex> java = graph.getVertices("lang", "java");
+        final Iterable<Vertex> names = index.get("name", "marko");
+        graph.addVertex(null).setProperty("lang", "java");
+        index.put("name", "marko", graph.getVertex(2));
+
+        Assert.assertEquals(3, count(java));
+        Assert.assertEquals(2, count(names));
+    }
+
+    @Test
+    public void testRemoveVertexInLiveMode() {
+        final TinkerGraph graph = TinkerGraphFactory.createTinkerGraph();
+        graph.setIterationMode(TinkerGraph.IterationMode.LIVE);
+
+        graph.removeVertex(graph.getVertex(1));
+        Assert.assertEquals(5, count(graph.getVertices()));
+        Assert.assertEquals(3, count(graph.getEdges()));
+    }
+
+    @Test
+    public void testIterationModeFromConfiguration() {
+        final Configuration conf = new BaseConfiguration();
+        conf.setProperty("blueprints.tg.iteration-mode", "LIVE");
+        Assert.assertEquals(TinkerGraph.IterationMode.LIVE, new TinkerGraph(conf).getIterationMode());
+    }
+}
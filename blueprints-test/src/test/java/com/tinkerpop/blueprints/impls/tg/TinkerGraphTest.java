@@ -213,6 +213,10 @@ public class TinkerGraphTest extends GraphTest {
         testGraphFileType("graph-test-graphson", TinkerGraph.FileType.GRAPHSON);
     }
 
+    public void testGraphFileTypeBinary() {
+        testGraphFileType("graph-test-binary", TinkerGraph.FileType.BINARY);
+    }
+
     private void testGraphFileType(final String directory, final TinkerGraph.FileType fileType) {
         final String path = getDirectory() + "/" + directory;
         deleteDirectory(new File(path));
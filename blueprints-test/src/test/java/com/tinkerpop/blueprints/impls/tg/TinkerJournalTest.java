@@ -0,0 +1,230 @@
+package com.tinkerpop.blueprints.impls.tg;
+
+import com.tinkerpop.blueprints.BaseTest;
+import com.tinkerpop.blueprints.Compare;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Parameter;
+import com.tinkerpop.blueprints.Vertex;
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tests that a journaled TinkerGraph recovers its mutations from the log of the last checkpoint.
+ */
+public class TinkerJournalTest extends BaseTest {
+
+    private static Configuration configuration(final String directory, final TinkerGraph.FileType fileType, final long checkpointInterval) {
+        final Configuration configuration = new BaseConfiguration();
+        configuration.setProperty("blueprints.tg.directory", directory);
+        configuration.setProperty("blueprints.tg.file-type", fileType.name());
+        configuration.setProperty("blueprints.tg.journal", true);
+        configuration.setProperty("blueprints.tg.checkpoint-interval", checkpointInterval);
+        return configuration;
+    }
+
+    private String createDirectory(final String name) {
+        final File directory = new File(computeTestDataRoot(), name);
+        deleteDirectory(directory);
+        return directory.getPath();
+    }
+
+    private static void populate(final TinkerGraph graph) {
+        graph.createKeyIndex("age", Vertex.class, new Parameter<String, Object>(TinkerGraph.KEY_INDEX_TYPE, TinkerGraph.KeyIndexType.SORTED));
+        final Vertex marko = graph.addVertex("1");
+        marko.setProperty("name", "marko");
+        marko.setProperty("age", 29);
+        marko.setProperty("langs", Arrays.asList("java", "groovy"));
+        final Vertex peter = graph.addVertex("2");
+        peter.setProperty("name", "peter");
+        peter.setProperty("age", 35);
+        final Vertex josh = graph.addVertex("3");
+        final Edge knows = graph.addEdge("4", marko, peter, "knows");
+        knows.setProperty("weight", 0.5f);
+        graph.addEdge("5", marko, josh, "knows");
+        graph.createIndex("people", Vertex.class).put("type", "person", peter);
+
+        marko.setProperty("age", 30);
+        peter.removeProperty("name");
+        graph.removeVertex(josh);
+    }
+
+    private static void assertPopulated(final TinkerGraph graph) {
+        Assert.assertNotNull(graph.getVertex("2"));
+        Assert.assertEquals(1, count(graph.getEdges()));
+        final Vertex marko = graph.getVertex("1");
+        Assert.assertEquals("marko", marko.getProperty("name"));
+        Assert.assertEquals(30, marko.getProperty("age"));
+        Assert.assertEquals(Arrays.asList("java", "groovy"), marko.getProperty("langs"));
+        Assert.assertNull(graph.getVertex("2").getProperty("name"));
+        Assert.assertNull(graph.getVertex("3"));
+        Assert.assertEquals(0.5f, graph.getEdge("4").getProperty("weight"));
+        Assert.assertEquals("knows", graph.getEdge("4").getLabel());
+        Assert.assertEquals(1, count(marko.getEdges(com.tinkerpop.blueprints.Direction.OUT, "knows")));
+        Assert.assertTrue(graph.vertexKeyIndex.isSorted("age"));
+        Assert.assertEquals(1, count(graph.query().has("age", Compare.GREATER_THAN, 29).has("age", Compare.LESS_THAN, 35).vertices()));
+        Assert.assertEquals(1, count(graph.getIndex("people", Vertex.class).get("type", "person")));
+    }
+
+    @Test
+    public void testReplayWithoutShutdown() throws Exception {
+        for (final TinkerGraph.FileType fileType : TinkerGraph.FileType.values()) {
+            final String directory = createDirectory("tinkergraph-journal-" + fileType);
+            final TinkerGraph graph = new TinkerGraph(configuration(directory, fileType, 0));
+            populate(graph);
+            Assert.assertTrue(new File(directory + TinkerJournal.GRAPH_FILE_LOG).length() > 0);
+
+            // the graph is abandoned as if the process had crashed
+            graph.journal.abandon();
+            final TinkerGraph recovered = new TinkerGraph(configuration(directory, fileType, 0));
+            assertPopulated(recovered);
+            recovered.shutdown();
+            deleteDirectory(new File(directory));
+        }
+    }
+
+    @Test
+    public void testCheckpoint() throws Exception {
+        final String directory = createDirectory("tinkergraph-journal-checkpoint");
+        final TinkerGraph graph = new TinkerGraph(configuration(directory, TinkerGraph.FileType.JAVA, 0));
+        populate(graph);
+        graph.journal.checkpoint();
+        Assert.assertEquals(0, new File(directory + TinkerJournal.GRAPH_FILE_LOG).length());
+
+        graph.addVertex("6");
+        TinkerGraph recovered = new TinkerGraph(configuration(directory, TinkerGraph.FileType.JAVA, 0));
+        assertPopulated(recovered);
+        Assert.assertNotNull(recovered.getVertex("6"));
+
+        // after the shutdown the graph is saved whole and no longer journaled
+        graph.shutdown();
+        Assert.assertNull(graph.journal);
+        Assert.assertFalse(new File(directory + "/checkpoint").exists());
+        recovered = new TinkerGraph(configuration(directory, TinkerGraph.FileType.JAVA, 0));
+        assertPopulated(recovered);
+        recovered.shutdown();
+        deleteDirectory(new File(directory));
+    }
+
+    @Test
+    public void testBackgroundCheckpoint() throws Exception {
+        final String directory = createDirectory("tinkergraph-journal-background");
+        final TinkerGraph graph = new ConcurrentTinkerGraph(configuration(directory, TinkerGraph.FileType.JAVA, 10));
+        populate(graph);
+        final File log = new File(directory + TinkerJournal.GRAPH_FILE_LOG);
+        for (int i = 0; i < 500 && log.length() > 0; i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(0, log.length());
+        graph.shutdown();
+
+        final TinkerGraph recovered = new ConcurrentTinkerGraph(configuration(directory, TinkerGraph.FileType.JAVA, 0));
+        assertPopulated(recovered);
+        recovered.shutdown();
+        deleteDirectory(new File(directory));
+    }
+
+    @Test
+    public void testFailedBackgroundCheckpointIsReported() throws Exception {
+        final String directory = createDirectory("tinkergraph-journal-failure");
+        final AtomicBoolean failing = new AtomicBoolean(false);
+        final TinkerStorage storage = new TinkerStorage() {
+            public void load(final TinkerGraph graph, final String directory) {
+            }
+
+            public void save(final TinkerGraph graph, final String directory) throws IOException {
+                if (failing.compareAndSet(true, false))
+                    throw new IOException("No space left on device");
+            }
+        };
+        final TinkerJournal journal = new TinkerJournal(new TinkerGraph(), directory, storage, 10);
+        failing.set(true);
+        journal.addVertex("1");
+
+        // the next background checkpoint retries and succeeds
+        final File log = new File(directory + TinkerJournal.GRAPH_FILE_LOG);
+        for (int i = 0; i < 500 && (failing.get() || log.length() > 0); i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(0, log.length());
+
+        try {
+            journal.checkpoint();
+            Assert.fail("A failed background checkpoint must be reported");
+        } catch (IOException e) {
+            Assert.assertEquals("No space left on device", e.getCause().getMessage());
+        }
+        journal.checkpoint();
+        journal.close();
+        deleteDirectory(new File(directory));
+    }
+
+    @Test
+    public void testTornRecordIsIgnored() throws Exception {
+        final String directory = createDirectory("tinkergraph-journal-torn");
+        final TinkerGraph graph = new TinkerGraph(configuration(directory, TinkerGraph.FileType.JAVA, 0));
+        populate(graph);
+        graph.journal.abandon();
+        final File log = new File(directory + TinkerJournal.GRAPH_FILE_LOG);
+        final long length = log.length();
+        final FileOutputStream out = new FileOutputStream(log, true);
+        out.write(new byte[]{0, 0, 0, 100, 1, 2, 3});
+        out.close();
+
+        final TinkerGraph recovered = new TinkerGraph(configuration(directory, TinkerGraph.FileType.JAVA, 0));
+        assertPopulated(recovered);
+        Assert.assertEquals(length, log.length());
+        recovered.addVertex("7");
+        recovered.shutdown();
+
+        final TinkerGraph reopened = new TinkerGraph(configuration(directory, TinkerGraph.FileType.JAVA, 0));
+        assertPopulated(reopened);
+        Assert.assertNotNull(reopened.getVertex("7"));
+        reopened.shutdown();
+        deleteDirectory(new File(directory));
+    }
+
+    @Test
+    public void testInterruptedCheckpointIsDiscarded() throws Exception {
+        final String directory = createDirectory("tinkergraph-journal-interrupted");
+        final TinkerGraph graph = new TinkerGraph(configuration(directory, TinkerGraph.FileType.JAVA, 0));
+        populate(graph);
+        graph.journal.abandon();
+        final File checkpoint = new File(directory + "/checkpoint");
+        Assert.assertTrue(checkpoint.mkdirs());
+        new FileOutputStream(new File(checkpoint, "tinkergraph.dat")).close();
+
+        final TinkerGraph recovered = new TinkerGraph(configuration(directory, TinkerGraph.FileType.JAVA, 0));
+        assertPopulated(recovered);
+        Assert.assertFalse(checkpoint.exists());
+        recovered.shutdown();
+        deleteDirectory(new File(directory));
+    }
+
+    @Test
+    public void testClearAndLongIds() throws Exception {
+        final String directory = createDirectory("tinkergraph-journal-clear");
+        final Configuration configuration = configuration(directory, TinkerGraph.FileType.JAVA, 0);
+        configuration.setProperty("blueprints.tg.id-type", "LONG");
+        final TinkerGraph graph = new TinkerGraph(configuration);
+        graph.addVertex(null);
+        graph.clear();
+        final Vertex a = graph.addVertex(10l);
+        final Vertex b = graph.addVertex(null);
+        graph.addEdge(null, a, b, "knows");
+        graph.journal.abandon();
+
+        final TinkerGraph recovered = new TinkerGraph(configuration);
+        Assert.assertEquals(2, count(recovered.getVertices()));
+        Assert.assertEquals(1, count(recovered.getVertex(10l).getEdges(com.tinkerpop.blueprints.Direction.OUT)));
+        recovered.shutdown();
+        deleteDirectory(new File(directory));
+    }
+}
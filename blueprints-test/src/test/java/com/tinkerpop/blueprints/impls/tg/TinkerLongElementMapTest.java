@@ -0,0 +1,62 @@
+package com.tinkerpop.blueprints.impls.tg;
+
+import com.tinkerpop.blueprints.Vertex;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+
+public class TinkerLongElementMapTest {
+
+    @Test
+    public void putGetAndRemoveMatchHashMap() {
+        final TinkerGraph graph = new TinkerGraph(TinkerGraph.IdType.LONG);
+        final TinkerLongElementMap<Vertex> map = new TinkerLongElementMap<Vertex>();
+        final Map<Long, Vertex> expected = new HashMap<Long, Vertex>();
+        final Random random = new Random(42);
+
+        for (int i = 0; i < 20000; i++) {
+            // a small key range forces long probe sequences and frequent removals within them
+            final long key = random.nextInt(512) * 1024l;
+            if (random.nextBoolean()) {
+                final Vertex vertex = new TinkerVertex(key, graph);
+                map.put(key, vertex);
+                expected.put(key, vertex);
+            } else {
+                Assert.assertEquals(expected.remove(key), map.remove(key));
+            }
+            Assert.assertEquals(expected.size(), map.size());
+        }
+
+        for (long key = 0; key < 512 * 1024l; key += 1024) {
+            Assert.assertEquals(expected.get(key), map.get(key));
+        }
+        Assert.assertEquals(new HashSet<Vertex>(expected.values()), new HashSet<Vertex>(map.values()));
+    }
+
+    @Test
+    public void convertIdOnlyAcceptsIntegralValues() {
+        Assert.assertEquals(Long.valueOf(1), TinkerLongElementMap.toLong(1));
+        Assert.assertEquals(Long.valueOf(1), TinkerLongElementMap.toLong("1"));
+        Assert.assertEquals(Long.valueOf(-7), TinkerLongElementMap.toLong((short) -7));
+        Assert.assertNull(TinkerLongElementMap.toLong("a"));
+        Assert.assertNull(TinkerLongElementMap.toLong(1.5d));
+    }
+
+    @Test
+    public void clearRemovesAllElements() {
+        final TinkerGraph graph = new TinkerGraph(TinkerGraph.IdType.LONG);
+        final TinkerLongElementMap<Vertex> map = new TinkerLongElementMap<Vertex>();
+        for (long key = 0; key < 100; key++) {
+            map.put(key, new TinkerVertex(key, graph));
+        }
+        Assert.assertEquals(100, map.size());
+        map.clear();
+        Assert.assertEquals(0, map.size());
+        Assert.assertNull(map.get(1l));
+        Assert.assertFalse(map.values().iterator().hasNext());
+    }
+}
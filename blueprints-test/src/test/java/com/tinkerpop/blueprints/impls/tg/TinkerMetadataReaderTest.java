@@ -63,6 +63,24 @@ public class TinkerMetadataReaderTest {
         Assert.assertEquals(1, getIterableCount(graph.getEdges("weight", 0.5f)));
     }
 
+    @Test
+    public void exampleMetadataGetsCorrectSortedKeyIndices() throws IOException {
+        TinkerMetadataReader.load(this.graph, TinkerMetadataReaderTest.class.getResourceAsStream("example-tinkergraph-metadata-sorted.dat"));
+
+        Assert.assertTrue(this.graph.vertexKeyIndex.isSorted("name"));
+        Assert.assertFalse(this.graph.edgeKeyIndex.isSorted("weight"));
+        Assert.assertEquals(1, this.graph.edgeKeyIndex.index.size());
+        Assert.assertEquals(1, getIterableCount(graph.getVertices("name", "marko")));
+    }
+
+    @Test
+    public void earlierMetadataGetsHashKeyIndices() throws IOException {
+        TinkerMetadataReader.load(this.graph, TinkerMetadataReaderTest.class.getResourceAsStream("example-tinkergraph-metadata.dat"));
+
+        Assert.assertFalse(this.graph.vertexKeyIndex.isSorted("name"));
+        Assert.assertFalse(this.graph.edgeKeyIndex.isSorted("weight"));
+    }
+
     private int getIterableCount(Iterable<?> elements) {
         int counter = 0;
 
@@ -2,6 +2,7 @@ package com.tinkerpop.blueprints.impls.tg;
 
 import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.Index;
+import com.tinkerpop.blueprints.Parameter;
 import com.tinkerpop.blueprints.Vertex;
 import junit.framework.TestCase;
 
@@ -22,7 +23,7 @@ public class TinkerMetadataWriterTest extends TestCase {
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
         TinkerMetadataWriter.save(g, bos);
 
-        byte[] expected = streamToByteArray(TinkerMetadataWriterTest.class.getResourceAsStream("example-tinkergraph-metadata.dat"));
+        byte[] expected = streamToByteArray(TinkerMetadataWriterTest.class.getResourceAsStream("example-tinkergraph-metadata-sorted.dat"));
         byte[] actual = bos.toByteArray();
 
         assertEquals(expected.length, actual.length);
@@ -33,7 +34,7 @@ public class TinkerMetadataWriterTest extends TestCase {
     }
 
     private void createKeyIndices(final TinkerGraph g) {
-        g.createKeyIndex("name", Vertex.class);
+        g.createKeyIndex("name", Vertex.class, new Parameter<String, Object>(TinkerGraph.KEY_INDEX_TYPE, TinkerGraph.KeyIndexType.SORTED));
         g.createKeyIndex("weight", Edge.class);
     }
 
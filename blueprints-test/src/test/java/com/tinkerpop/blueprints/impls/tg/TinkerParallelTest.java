@@ -0,0 +1,73 @@
+package com.tinkerpop.blueprints.impls.tg;
+
+import com.tinkerpop.blueprints.BaseTest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Tests that TinkerParallel hands the results back in order on workers that are shared between runs.
+ */
+public class TinkerParallelTest extends BaseTest {
+
+    private static Set<Thread> partition(final int size, final List<Integer> results) throws IOException {
+        final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+        TinkerParallel.partition(size, new TinkerParallel.Partitioner<Integer>() {
+            public Callable<Integer> create(final int from, final int to) {
+                return new Callable<Integer>() {
+                    public Integer call() {
+                        threads.add(Thread.currentThread());
+                        return from;
+                    }
+                };
+            }
+        }, new TinkerParallel.Sink<Integer>() {
+            public void accept(final Integer from) {
+                results.add(from);
+            }
+        });
+        return threads;
+    }
+
+    public void testResultsAreHandedBackInOrder() throws IOException {
+        final List<Integer> results = new ArrayList<Integer>();
+        partition(20 * TinkerParallel.PARTITION_SIZE + 1, results);
+        assertEquals(21, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i * TinkerParallel.PARTITION_SIZE, results.get(i).intValue());
+        }
+    }
+
+    public void testWorkersAreShared() throws IOException {
+        final int processors = Runtime.getRuntime().availableProcessors();
+        final Set<Thread> threads = new HashSet<Thread>();
+        for (int i = 0; i < 10; i++) {
+            threads.addAll(partition(4 * TinkerParallel.PARTITION_SIZE, new ArrayList<Integer>()));
+        }
+        if (processors == 1)
+            assertEquals(Collections.singleton(Thread.currentThread()), threads);
+        else
+            assertTrue(threads.size() <= processors);
+    }
+
+    public void testRunsOfAWorkerStayOnTheWorker() throws IOException {
+        final Set<Thread> nested = Collections.synchronizedSet(new HashSet<Thread>());
+        TinkerParallel.all(new Callable<Object>() {
+            public Object call() throws IOException {
+                nested.addAll(partition(4 * TinkerParallel.PARTITION_SIZE, new ArrayList<Integer>()));
+                nested.add(Thread.currentThread());
+                return null;
+            }
+        }, new Callable<Object>() {
+            public Object call() {
+                return null;
+            }
+        });
+        assertEquals(1, nested.size());
+    }
+}
@@ -0,0 +1,93 @@
+package com.tinkerpop.blueprints.impls.tg;
+
+import com.tinkerpop.blueprints.BaseTest;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Index;
+import com.tinkerpop.blueprints.Vertex;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+
+/**
+ * Tests that the elements of a TinkerGraph record the manual index entries they are held in.
+ */
+public class TinkerPostingTest extends BaseTest {
+
+    @Test
+    public void testPostingsFollowTheIndices() {
+        final TinkerGraph graph = new TinkerGraph();
+        graph.createKeyIndex("name", Vertex.class);
+        final Index<Vertex> index = graph.createIndex("people", Vertex.class);
+
+        final TinkerVertex marko = (TinkerVertex) graph.addVertex(null);
+        marko.setProperty("name", "marko");
+        marko.setProperty("age", 29);
+        index.put("name", "marko", marko);
+        index.put("name", "marko", marko);
+        index.put("type", "person", marko);
+        // the key index entry follows from the property and is not recorded
+        Assert.assertEquals(2, marko.getPostings().size());
+
+        marko.setProperty("name", "m");
+        Assert.assertEquals(2, marko.getPostings().size());
+        Assert.assertEquals(0, count(graph.getVertices("name", "marko")));
+        Assert.assertEquals(1, count(graph.getVertices("name", "m")));
+
+        index.remove("type", "person", marko);
+        Assert.assertEquals(1, marko.getPostings().size());
+
+        graph.dropKeyIndex("name", Vertex.class);
+        Assert.assertEquals(1, marko.getPostings().size());
+
+        graph.dropIndex("people");
+        Assert.assertEquals(0, marko.getPostings().size());
+    }
+
+    @Test
+    public void testPostingsAreRestoredWhenRead() {
+        final String directory = new File(computeTestDataRoot(), "tinkergraph-postings").getPath();
+        deleteDirectory(new File(directory));
+        TinkerGraph graph = new TinkerGraph(directory, TinkerGraph.FileType.JAVA);
+        graph.createKeyIndex("name", Vertex.class);
+        graph.createIndex("people", Vertex.class).put("type", "person", graph.addVertex(1));
+        graph.getVertex(1).setProperty("name", "marko");
+        graph.shutdown();
+
+        graph = new TinkerGraph(directory, TinkerGraph.FileType.JAVA);
+        Assert.assertEquals(1, ((TinkerVertex) graph.getVertex(1)).getPostings().size());
+        graph.removeVertex(graph.getVertex(1));
+        Assert.assertEquals(0, count(graph.getVertices("name", "marko")));
+        Assert.assertEquals(0, count(graph.getIndex("people", Vertex.class).get("type", "person")));
+        deleteDirectory(new File(directory));
+    }
+
+    @Test
+    public void testRemovalOnlyTouchesPostings() {
+        final TinkerGraph graph = new TinkerGraph();
+        graph.createKeyIndex("name", Vertex.class);
+        graph.createKeyIndex("weight", Edge.class);
+        final Index<Vertex> vertexIndex = graph.createIndex("vertices", Vertex.class);
+        final Index<Edge> edgeIndex = graph.createIndex("edges", Edge.class);
+
+        final Vertex a = graph.addVertex(null);
+        final Vertex b = graph.addVertex(null);
+        a.setProperty("name", "a");
+        b.setProperty("name", "b");
+        vertexIndex.put("name", "a", a);
+        vertexIndex.put("name", "b", b);
+        final Edge e = a.addEdge("knows", b);
+        e.setProperty("weight", 1.0d);
+        edgeIndex.put("weight", 1.0d, e);
+
+        graph.removeVertex(a);
+        Assert.assertEquals(0, count(graph.getVertices("name", "a")));
+        Assert.assertEquals(0, count(vertexIndex.get("name", "a")));
+        Assert.assertEquals(0, count(graph.getEdges("weight", 1.0d)));
+        Assert.assertEquals(0, count(edgeIndex.get("weight", 1.0d)));
+        Assert.assertEquals(1, count(graph.getVertices("name", "b")));
+        Assert.assertEquals(1, count(vertexIndex.get("name", "b")));
+        Assert.assertEquals(0, ((TinkerVertex) a).getPostings().size());
+        Assert.assertEquals(0, ((TinkerEdge) e).getPostings().size());
+    }
+}
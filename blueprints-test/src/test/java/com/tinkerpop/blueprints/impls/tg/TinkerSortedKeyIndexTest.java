@@ -0,0 +1,196 @@
+package com.tinkerpop.blueprints.impls.tg;
+
+import com.tinkerpop.blueprints.BaseTest;
+import com.tinkerpop.blueprints.Compare;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Parameter;
+import com.tinkerpop.blueprints.Query;
+import com.tinkerpop.blueprints.Vertex;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+
+/**
+ * Tests the sorted key indices of TinkerGraph and the range queries they serve.
+ */
+public class TinkerSortedKeyIndexTest extends BaseTest {
+
+    private static TinkerGraph createGraph(final TinkerGraph graph) {
+        graph.createKeyIndex("age", Vertex.class, new Parameter<String, Object>(TinkerGraph.KEY_INDEX_TYPE, TinkerGraph.KeyIndexType.SORTED));
+        for (int i = 0; i < 100; i++) {
+            graph.addVertex(null).setProperty("age", i);
+        }
+        return graph;
+    }
+
+    @Test
+    public void testRangeQueries() {
+        final TinkerGraph graph = createGraph(new TinkerGraph());
+        Assert.assertTrue(graph.vertexKeyIndex.isSorted("age"));
+
+        Assert.assertEquals(10, count(graph.vertexKeyIndex.range("age", 10, true, 20, false)));
+        Assert.assertEquals(10, count(graph.query().interval("age", 10, 20).vertices()));
+        Assert.assertEquals(9, count(graph.query().has("age", Compare.GREATER_THAN, 10).has("age", Compare.LESS_THAN, 20).vertices()));
+        Assert.assertEquals(11, count(graph.query().has("age", Compare.GREATER_THAN_EQUAL, 10).has("age", Compare.LESS_THAN_EQUAL, 20).vertices()));
+        Assert.assertEquals(10, count(graph.query().has("age", Compare.GREATER_THAN_EQUAL, 90).vertices()));
+        Assert.assertEquals(5, count(graph.query().has("age", Compare.LESS_THAN, 5).vertices()));
+        Assert.assertEquals(0, count(graph.query().interval("age", 20, 10).vertices()));
+        Assert.assertEquals(0, count(graph.query().has("age", Compare.GREATER_THAN, 10).has("age", Compare.LESS_THAN, 10).vertices()));
+
+        // the tightest of several bounds is used
+        Assert.assertEquals(4, count(graph.query().has("age", Compare.GREATER_THAN, 10).has("age", Compare.GREATER_THAN, 95).vertices()));
+        Assert.assertEquals(5, count(graph.query().has("age", Compare.GREATER_THAN_EQUAL, 95).has("age", Compare.GREATER_THAN, 10).vertices()));
+    }
+
+    @Test
+    public void testRangesAreServedFromTheIndex() {
+        final TinkerGraph graph = createGraph(new TinkerGraph());
+        // the sorted index returns the vertices in the order of their values, a scan does not
+        assertAscending(graph.query().has("age", Compare.GREATER_THAN_EQUAL, 0).vertices());
+        assertAscending(graph.query().interval("age", 0, 100).vertices());
+        assertAscending(graph.query().has("age", 0, Query.Compare.GREATER_THAN_EQUAL).vertices());
+    }
+
+    private static void assertAscending(final Iterable<Vertex> vertices) {
+        int last = -1;
+        int count = 0;
+        for (final Vertex vertex : vertices) {
+            final int age = vertex.<Integer>getProperty("age");
+            Assert.assertTrue(age > last);
+            last = age;
+            count++;
+        }
+        Assert.assertEquals(100, count);
+    }
+
+    @Test
+    public void testRangesFollowUpdates() {
+        final TinkerGraph graph = createGraph(new TinkerGraph());
+        for (final Vertex vertex : graph.query().interval("age", 0, 10).vertices()) {
+            vertex.setProperty("age", 1000);
+        }
+        Assert.assertEquals(0, count(graph.query().interval("age", 0, 10).vertices()));
+        Assert.assertEquals(10, count(graph.query().has("age", Compare.GREATER_THAN, 999).vertices()));
+
+        for (final Vertex vertex : graph.query().has("age", Compare.GREATER_THAN, 999).vertices()) {
+            graph.removeVertex(vertex);
+        }
+        Assert.assertEquals(0, count(graph.query().has("age", Compare.GREATER_THAN, 999).vertices()));
+        Assert.assertEquals(90, count(graph.query().has("age", Compare.GREATER_THAN_EQUAL, 0).vertices()));
+
+        graph.dropKeyIndex("age", Vertex.class);
+        Assert.assertFalse(graph.vertexKeyIndex.isSorted("age"));
+        Assert.assertNull(graph.vertexKeyIndex.range("age", 10, true, 20, false));
+        Assert.assertEquals(10, count(graph.query().interval("age", 10, 20).vertices()));
+    }
+
+    @Test
+    public void testValuesOfOtherClasses() {
+        final TinkerGraph graph = createGraph(new TinkerGraph());
+        graph.addVertex(null).setProperty("age", 15l);
+        graph.addVertex(null).setProperty("age", "15");
+
+        // a range over one class would silently leave out the values of the others
+        Assert.assertNull(graph.vertexKeyIndex.range("age", 10, true, 20, false));
+        Assert.assertNull(graph.vertexKeyIndex.range("age", 10l, true, 20l, false));
+        Assert.assertNull(graph.vertexKeyIndex.range("age", "1", true, "2", false));
+        Assert.assertNull(graph.vertexKeyIndex.range("age", 10, true, 20l, false));
+        Assert.assertEquals(2, count(graph.getVertices("age", 15)) + count(graph.getVertices("age", 15l)));
+    }
+
+    @Test
+    public void testMixedIntegerAndLongValues() {
+        final TinkerGraph graph = createGraph(new TinkerGraph());
+        final Vertex vertex = graph.addVertex(null);
+        vertex.setProperty("age", 50l);
+        Assert.assertNull(graph.vertexKeyIndex.range("age", 10l, false, null, true));
+
+        // the index answers as the unindexed query does
+        final TinkerGraph unindexed = new TinkerGraph();
+        for (int i = 0; i < 100; i++) {
+            unindexed.addVertex(null).setProperty("age", i);
+        }
+        unindexed.addVertex(null).setProperty("age", 50l);
+        Assert.assertTrue(throwsClassCast(unindexed));
+        Assert.assertTrue(throwsClassCast(graph));
+
+        // once the Long value is gone the Integer range is served again
+        vertex.setProperty("age", 50);
+        Assert.assertEquals(90, count(graph.vertexKeyIndex.range("age", 10, false, null, true)));
+        Assert.assertEquals(90, count(graph.query().has("age", Compare.GREATER_THAN, 10).vertices()));
+    }
+
+    private static boolean throwsClassCast(final TinkerGraph graph) {
+        try {
+            count(graph.query().has("age", Compare.GREATER_THAN, 10l).vertices());
+            return false;
+        } catch (ClassCastException e) {
+            return true;
+        }
+    }
+
+    @Test
+    public void testSortedKeysSurviveReopening() {
+        for (final TinkerGraph.FileType fileType : new TinkerGraph.FileType[]{TinkerGraph.FileType.GML, TinkerGraph.FileType.GRAPHML, TinkerGraph.FileType.GRAPHSON}) {
+            final String directory = computeTestDataRoot().getAbsolutePath() + "/sorted-" + fileType;
+            deleteDirectory(new File(directory));
+            TinkerGraph graph = createGraph(new TinkerGraph(directory, fileType));
+            graph.createKeyIndex("name", Vertex.class);
+            graph.shutdown();
+
+            graph = new TinkerGraph(directory, fileType);
+            Assert.assertTrue(graph.vertexKeyIndex.isSorted("age"));
+            Assert.assertFalse(graph.vertexKeyIndex.isSorted("name"));
+            Assert.assertEquals(2, graph.getIndexedKeys(Vertex.class).size());
+            Assert.assertEquals(10, count(graph.vertexKeyIndex.range("age", 10, true, 20, false)));
+            graph.shutdown();
+            deleteDirectory(new File(directory));
+        }
+    }
+
+    @Test
+    public void testTypeParameterAsString() {
+        final TinkerGraph graph = new TinkerGraph();
+        graph.createKeyIndex("weight", Edge.class, new Parameter<String, Object>(TinkerGraph.KEY_INDEX_TYPE, "sorted"));
+        graph.createKeyIndex("name", Vertex.class);
+        Assert.assertTrue(graph.edgeKeyIndex.isSorted("weight"));
+        Assert.assertFalse(graph.vertexKeyIndex.isSorted("name"));
+
+        final Vertex a = graph.addVertex(null);
+        final Vertex b = graph.addVertex(null);
+        graph.addEdge(null, a, b, "knows").setProperty("weight", 0.5f);
+        graph.addEdge(null, a, b, "knows").setProperty("weight", 1.0f);
+        Assert.assertEquals(1, count(graph.query().has("weight", Compare.GREATER_THAN, 0.5f).edges()));
+        Assert.assertEquals(2, count(graph.query().has("weight", Compare.LESS_THAN_EQUAL, 1.0f).edges()));
+    }
+
+    @Test
+    public void testLiveRanges() {
+        final TinkerGraph graph = createGraph(new TinkerGraph());
+        graph.setIterationMode(TinkerGraph.IterationMode.LIVE);
+        Assert.assertEquals(10, count(graph.query().interval("age", 10, 20).vertices()));
+        Assert.assertEquals(50, count(graph.query().has("age", Compare.GREATER_THAN_EQUAL, 50).vertices()));
+    }
+
+    @Test
+    public void testConcurrentRanges() throws Exception {
+        final TinkerGraph graph = createGraph(new ConcurrentTinkerGraph());
+        final Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                public void run() {
+                    for (int i = 0; i < 100; i++) {
+                        graph.addVertex(null).setProperty("age", 200 + i);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(400, count(graph.query().has("age", Compare.GREATER_THAN_EQUAL, 200).vertices()));
+        Assert.assertEquals(40, count(graph.query().interval("age", 200, 210).vertices()));
+    }
+}
@@ -70,6 +70,19 @@ public class TinkerStorageFactoryTest extends BaseTest {
         Assert.assertEquals(1, findFilesByExt(path, "dat").length);
     }
 
+    @Test
+    public void testBinaryStorageFactory() throws IOException {
+        final String path = getDirectory() + "/" + "storage-test-binary";
+        createDirectory(new File(path));
+
+        TinkerStorage storage = TinkerStorageFactory.getInstance().getTinkerStorage(TinkerGraph.FileType.BINARY);
+        TinkerGraph graph = TinkerGraphFactory.createTinkerGraph();
+        storage.save(graph, path);
+
+        Assert.assertEquals(1, findFilesByExt(path, "bin").length);
+        Assert.assertEquals(0, findFilesByExt(path, "dat").length);
+    }
+
     private void createDirectory(File dir) {
         if (dir.exists()) {
             deleteDirectory(dir);
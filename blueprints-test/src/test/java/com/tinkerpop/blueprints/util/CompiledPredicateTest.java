@@ -0,0 +1,68 @@
+package com.tinkerpop.blueprints.util;
+
+import com.tinkerpop.blueprints.BaseTest;
+import com.tinkerpop.blueprints.Compare;
+import com.tinkerpop.blueprints.Contains;
+import com.tinkerpop.blueprints.Predicate;
+import com.tinkerpop.blueprints.Query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeSet;
+
+public class CompiledPredicateTest extends BaseTest {
+
+    private static final Object[] VALUES = {null, -1, 0, 1, Integer.MAX_VALUE, -2L, 0L, 7L, -0.5d, 0.0d, 1.5d, Double.NaN,
+            2.5f, "", "a", "ab", "b", true, (short) 3};
+
+    public void testComparesAsThePredicate() {
+        final List<Predicate> predicates = new ArrayList<Predicate>();
+        predicates.addAll(Arrays.asList(Compare.values()));
+        predicates.addAll(Arrays.asList(Query.Compare.values()));
+        for (final Predicate predicate : predicates) {
+            for (final Object value : VALUES) {
+                final CompiledPredicate compiled = CompiledPredicate.compile(predicate, value);
+                for (final Object first : VALUES) {
+                    assertSame(predicate, first, value, compiled);
+                }
+            }
+        }
+    }
+
+    public void testContainsAsThePredicate() {
+        final List<Object> values = Arrays.asList(VALUES);
+        final List<Object> collections = Arrays.<Object>asList(values, values.subList(2, 6), Collections.emptyList(),
+                new HashSet<Object>(values), new TreeSet<Object>(Arrays.asList("a", "b")), Arrays.asList(1, 1, 2));
+        for (final Contains contains : Contains.values()) {
+            for (final Object collection : collections) {
+                final CompiledPredicate compiled = CompiledPredicate.compile(contains, collection);
+                for (final Object first : Arrays.asList("a", "c", 1, 1L, 2)) {
+                    assertSame(contains, first, collection, compiled);
+                }
+            }
+            try {
+                CompiledPredicate.compile(contains, "a").evaluate("a");
+                fail("the second argument must be a collection");
+            } catch (IllegalArgumentException e) {
+            }
+        }
+    }
+
+    private static void assertSame(final Predicate predicate, final Object first, final Object value, final CompiledPredicate compiled) {
+        Object expected, actual;
+        try {
+            expected = predicate.evaluate(first, value);
+        } catch (RuntimeException e) {
+            expected = e.getClass();
+        }
+        try {
+            actual = compiled.evaluate(first);
+        } catch (RuntimeException e) {
+            actual = e.getClass();
+        }
+        assertEquals(predicate + " " + first + " " + value, expected, actual);
+    }
+}
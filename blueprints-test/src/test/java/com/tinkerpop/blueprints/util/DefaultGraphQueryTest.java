@@ -0,0 +1,138 @@
+package com.tinkerpop.blueprints.util;
+
+import com.tinkerpop.blueprints.BaseTest;
+import com.tinkerpop.blueprints.Compare;
+import com.tinkerpop.blueprints.Contains;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests the choice of the key index and the order of the has containers of DefaultGraphQuery.
+ */
+public class DefaultGraphQueryTest extends BaseTest {
+
+    private static TinkerGraph createGraph() {
+        final TinkerGraph graph = new TinkerGraph();
+        graph.createKeyIndex("country", Vertex.class);
+        graph.createKeyIndex("tier", Vertex.class);
+        for (int i = 0; i < 100; i++) {
+            final Vertex vertex = graph.addVertex(null);
+            vertex.setProperty("country", i < 90 ? "DE" : "FR");
+            vertex.setProperty("tier", i % 50 == 0 ? "gold" : "silver");
+            vertex.setProperty("age", i);
+        }
+        return graph;
+    }
+
+    public void testTheLookupWithTheLowestEstimateIsUsed() {
+        final TinkerGraph graph = createGraph();
+        CountingQuery query = new CountingQuery(graph);
+        query.has("country", "DE").has("tier", "gold");
+        assertEquals("tier", query.getIndexContainers(Vertex.class).get(0).key);
+        assertEquals(2, count(query.vertices()));
+
+        query = new CountingQuery(graph);
+        query.has("tier", "silver").has("country", "FR");
+        assertEquals("country", query.getIndexContainers(Vertex.class).get(0).key);
+        assertEquals(10, count(query.vertices()));
+
+        // no element has the value, so the lookup returns nothing
+        query = new CountingQuery(graph);
+        query.has("country", "DE").has("tier", "bronze");
+        assertEquals(1, query.getIndexContainers(Vertex.class).size());
+        assertEquals("tier", query.getIndexContainers(Vertex.class).get(0).key);
+        assertEquals(0, count(query.vertices()));
+
+        // only indexed keys are looked up
+        query = new CountingQuery(graph);
+        query.has("age", 10).has("country", "DE");
+        assertEquals("country", query.getIndexContainers(Vertex.class).get(0).key);
+        assertEquals(1, count(query.vertices()));
+
+        assertEquals(2, count(graph.query().has("country", "DE").has("tier", "gold").vertices()));
+        assertEquals(5, count(graph.query().has("country", "FR").has("tier", "silver").limit(5).vertices()));
+    }
+
+    public void testIndexLookupsAreIntersected() {
+        final TinkerGraph graph = createGraph();
+        graph.createKeyIndex("age", Vertex.class);
+        final CountingQuery query = new CountingQuery(graph);
+        query.has("country", "DE").has("age", Compare.LESS_THAN, 60).has("tier", "gold").has("age", 50);
+        assertEquals(3, query.getIndexContainers(Vertex.class).size());
+        assertEquals(1, count(query.vertices()));
+        assertEquals(50, query.vertices().iterator().next().getProperty("age"));
+
+        // the intersected has containers are not evaluated again
+        final DefaultGraphQuery.AccessPath path = query.getAccessPath(Vertex.class);
+        assertEquals(3, path.consumed.size());
+        final List<DefaultQuery.HasContainer> filters = query.getFilters(path.consumed);
+        assertEquals(1, filters.size());
+        assertEquals(Compare.LESS_THAN, filters.get(0).predicate);
+        // the choice of the access path leaves the query as it was
+        assertEquals(4, query.getFilters(query.getAccessPath(Edge.class).consumed).size());
+
+        assertEquals(0, count(graph.query().has("country", "FR").has("tier", "gold").vertices()));
+        assertEquals(10, count(graph.query().has("country", "FR").has("tier", "silver").vertices()));
+        assertEquals(3, count(graph.query().has("country", "FR").has("tier", "silver").limit(3).vertices()));
+        assertEquals(0, count(graph.query().has("country", "DE").has("country", "FR").vertices()));
+    }
+
+    public void testWithoutEstimatesTheFirstLookupIsUsed() {
+        final DefaultGraphQuery query = new DefaultGraphQuery(createGraph());
+        query.has("country", "DE").has("tier", "gold");
+        assertEquals("country", query.getIndexContainers(Vertex.class).get(0).key);
+        assertEquals(2, count(query.vertices()));
+    }
+
+    public void testFiltersAreOrderedBySelectivityAndCost() {
+        final DefaultGraphQuery query = new DefaultGraphQuery(createGraph());
+        query.has("age", Compare.NOT_EQUAL, 3).has("tier", Contains.IN, Arrays.asList("gold")).has("age", Compare.GREATER_THAN, 3)
+                .has("country", "DE").has(StringFactory.ID, "1");
+
+        final List<DefaultQuery.HasContainer> filters = query.getFilters(query.getAccessPath(Vertex.class).consumed);
+        assertEquals(5, filters.size());
+        assertEquals(StringFactory.ID, filters.get(0).key);
+        assertEquals("country", filters.get(1).key);
+        assertEquals(Contains.IN, filters.get(2).predicate);
+        assertEquals(Compare.GREATER_THAN, filters.get(3).predicate);
+        assertEquals(Compare.NOT_EQUAL, filters.get(4).predicate);
+        assertEquals(5, query.hasContainers.size());
+        assertEquals(Compare.NOT_EQUAL, query.hasContainers.get(0).predicate);
+    }
+
+    private static class CountingQuery extends DefaultGraphQuery {
+
+        public CountingQuery(final Graph graph) {
+            super(graph);
+        }
+
+        @Override
+        protected long estimateCount(final Class<? extends Element> elementClass, final HasContainer hasContainer) {
+            return count(graph.getVertices(hasContainer.key, hasContainer.value));
+        }
+
+        @Override
+        protected Iterable<?> getIntersection(final Class<? extends Element> elementClass, final List<HasContainer> containers) {
+            final Set<Vertex> intersection = new HashSet<Vertex>();
+            for (final Vertex vertex : graph.getVertices(containers.get(0).key, containers.get(0).value)) {
+                intersection.add(vertex);
+            }
+            for (final HasContainer hasContainer : containers.subList(1, containers.size())) {
+                final Set<Vertex> vertices = new HashSet<Vertex>();
+                for (final Vertex vertex : graph.getVertices(hasContainer.key, hasContainer.value)) {
+                    vertices.add(vertex);
+                }
+                intersection.retainAll(vertices);
+            }
+            return intersection;
+        }
+    }
+}
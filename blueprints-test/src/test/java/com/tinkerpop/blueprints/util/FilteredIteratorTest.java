@@ -0,0 +1,90 @@
+package com.tinkerpop.blueprints.util;
+
+import com.tinkerpop.blueprints.BaseTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+public class FilteredIteratorTest extends BaseTest {
+
+    private static final FilteredIterator.Filter<Integer> EVEN = new FilteredIterator.Filter<Integer>() {
+        public boolean isLegal(final Integer element) {
+            return element % 2 == 0;
+        }
+    };
+
+    private static final FilteredIterator.Filter<Integer> SMALL = new FilteredIterator.Filter<Integer>() {
+        public boolean isLegal(final Integer element) {
+            return element < 7;
+        }
+    };
+
+    public void testFilters() {
+        final List<Integer> numbers = Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8);
+        assertEquals(Arrays.asList(2, 4, 6), list(new FilteredIterator<Integer>(numbers.iterator(), Arrays.asList(EVEN, SMALL))));
+        assertEquals(Arrays.asList(2, 4, 6, 8), list(new FilteredIterator<Integer>(numbers.iterator(), Collections.singletonList(EVEN))));
+        assertEquals(numbers, list(new FilteredIterator<Integer>(numbers.iterator(), Collections.<FilteredIterator.Filter<Integer>>emptyList())));
+        assertEquals(0, count(new FilteredIterator<Integer>(Collections.<Integer>emptyList().iterator(), Collections.singletonList(EVEN))));
+
+        final Iterator<Integer> itty = new FilteredIterator<Integer>(Arrays.asList(1, 3).iterator(), Collections.singletonList(EVEN));
+        assertFalse(itty.hasNext());
+        assertFalse(itty.hasNext());
+        try {
+            itty.next();
+            fail();
+        } catch (NoSuchElementException e) {
+        }
+    }
+
+    public void testLimitStopsReading() {
+        final List<Integer> read = new ArrayList<Integer>();
+        final Iterator<Integer> numbers = new Iterator<Integer>() {
+            int next = 0;
+
+            public boolean hasNext() {
+                return next < 100;
+            }
+
+            public Integer next() {
+                read.add(next);
+                return next++;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+        final Iterator<Integer> itty = new FilteredIterator<Integer>(numbers, Collections.singletonList(EVEN), 3);
+        assertEquals(Arrays.asList(0, 2, 4), list(itty));
+        assertFalse(itty.hasNext());
+        assertEquals(5, read.size());
+        assertEquals(0, count(new FilteredIterator<Integer>(numbers, Collections.singletonList(EVEN), 0)));
+        assertEquals(5, read.size());
+    }
+
+    public void testRemove() {
+        final List<Integer> numbers = new ArrayList<Integer>(Arrays.asList(1, 2, 3, 4));
+        final Iterator<Integer> itty = new FilteredIterator<Integer>(numbers.iterator(), Collections.singletonList(EVEN));
+        assertEquals(2, (int) itty.next());
+        itty.remove();
+        assertEquals(Arrays.asList(1, 3, 4), numbers);
+        assertTrue(itty.hasNext());
+        try {
+            itty.remove();
+            fail();
+        } catch (IllegalStateException e) {
+        }
+    }
+
+    private static List<Integer> list(final Iterator<Integer> itty) {
+        final List<Integer> list = new ArrayList<Integer>();
+        while (itty.hasNext()) {
+            list.add(itty.next());
+        }
+        return list;
+    }
+}
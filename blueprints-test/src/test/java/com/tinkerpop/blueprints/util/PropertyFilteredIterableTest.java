@@ -1,6 +1,7 @@
 package com.tinkerpop.blueprints.util;
 
 import com.tinkerpop.blueprints.BaseTest;
+import com.tinkerpop.blueprints.Compare;
 import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
 
@@ -45,4 +46,23 @@ public class PropertyFilteredIterableTest extends BaseTest {
         assertEquals(count(iterable), 0);
     }
 
+    public void testReassignedHasFilterIsRecompiled() {
+        TinkerGraph graph = new TinkerGraph();
+        Vertex a = graph.addVertex("a");
+        a.setProperty("age", 29);
+        Vertex b = graph.addVertex("b");
+        b.setProperty("name", "peter");
+
+        HasFilter filter = new HasFilter("age", Compare.EQUAL, 29);
+        assertTrue(filter.isLegal(a));
+        filter.value = 30;
+        assertFalse(filter.isLegal(a));
+        filter.predicate = Compare.LESS_THAN;
+        assertTrue(filter.isLegal(a));
+        filter.key = "name";
+        filter.predicate = Compare.EQUAL;
+        filter.value = "peter";
+        assertFalse(filter.isLegal(a));
+        assertTrue(filter.isLegal(b));
+    }
 }